@@ -2,7 +2,15 @@
 set -eu
 
 : ${JAVA_HOME:=/usr/lib/jvm/jre-22}
+: ${STARTUP_ARCHIVE:=target/validator.jsa}
 
-exec "${JAVA_HOME}"/bin/java --enable-native-access ALL-UNNAMED -jar 'target/validator.jar' "${@}"
+# Use the class data sharing archive created by --create-startup-archive, if present
+if [ -f "${STARTUP_ARCHIVE}" ]; then
+    set -- -XX:SharedArchiveFile="${STARTUP_ARCHIVE}" -Xshare:auto -jar 'target/validator.jar' "${@}"
+else
+    set -- -jar 'target/validator.jar' "${@}"
+fi
+
+exec "${JAVA_HOME}"/bin/java --enable-native-access ALL-UNNAMED "${@}"
 
 # exec "${JAVA_HOME}"/bin/java --enable-native-access ALL-UNNAMED -cp "target/classes$(find target/dependency -type f -printf ':%p')" org.fedoraproject.javapackages.validator.Main "${@}"
@@ -0,0 +1,67 @@
+package org.fedoraproject.javapackages.validator;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.file.PathUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of a whole validation run with the default validators over a
+ * generated repository.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "--enable-native-access=ALL-UNNAMED")
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class ExecuteBenchmark {
+    @Param({"gzip", "xz", "zstd"})
+    String compression;
+
+    @Param({"200"})
+    int packages;
+
+    @Param({"5"})
+    int jarsPerPackage;
+
+    @Param({"200"})
+    int classesPerJar;
+
+    Path workDir;
+    Path rpms;
+
+    @Setup(Level.Trial)
+    public void generate() throws Exception {
+        workDir = Files.createTempDirectory("validator-benchmark");
+        rpms = Files.createDirectory(workDir.resolve("rpms"));
+        RpmFixture.generateRepository(rpms, new RpmFixture.Scale(packages, jarsPerPackage, classesPerJar, 1000,
+                RpmFixture.Compression.valueOf(compression), 1));
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws Exception {
+        PathUtils.deleteDirectory(workDir);
+    }
+
+    @Benchmark
+    public int execute() throws Exception {
+        var tmtTestData = Files.createTempDirectory(workDir, "data");
+        return MainTmt.create(tmtTestData, workDir).run(new String[] {"-f", rpms.toString(),
+                "org.fedoraproject.javapackages.validator.validators.DefaultValidatorFactory"});
+    }
+}
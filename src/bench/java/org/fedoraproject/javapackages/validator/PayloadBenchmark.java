@@ -0,0 +1,101 @@
+package org.fedoraproject.javapackages.validator;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.file.PathUtils;
+import org.fedoraproject.javapackages.validator.util.Common;
+import org.fedoraproject.javapackages.validator.util.PayloadDecoder;
+import org.fedoraproject.javapackages.validator.util.PayloadFacts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.kojan.javadeptools.rpm.RpmArchiveInputStream;
+import io.kojan.javadeptools.rpm.RpmPackage;
+
+/**
+ * Benchmark of reading the payload of a single large RPM file with many files
+ * and a fat JAR file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "--enable-native-access=ALL-UNNAMED")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class PayloadBenchmark {
+    @Param({"gzip", "xz", "zstd"})
+    String compression;
+
+    @Param({"100000"})
+    int files;
+
+    @Param({"20000"})
+    int classes;
+
+    /**
+     * The uncompressed size of payload blocks, 0 for a single block.
+     */
+    @Param({"0", "4194304"})
+    int blockSize;
+
+    Path workDir;
+    RpmPackage rpm;
+
+    @Setup(Level.Trial)
+    public void generate() throws Exception {
+        workDir = Files.createTempDirectory("validator-benchmark");
+        var fixture = new RpmFixture("large", "1", "1")
+                .compression(RpmFixture.Compression.valueOf(compression))
+                .blockSize(blockSize)
+                .jar("/usr/share/java/large.jar", new RpmFixture.Jar().classes(classes).resourceBytes(1 << 24));
+        for (int i = 0; i != files; ++i) {
+            fixture.file("/usr/share/large/%03d/f%06d".formatted(i % 1000, i), ("file " + i).getBytes(StandardCharsets.UTF_8));
+        }
+        rpm = new RpmPackage(fixture.write(workDir));
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws Exception {
+        PathUtils.deleteDirectory(workDir);
+    }
+
+    @Benchmark
+    public void forEachEntry(Blackhole blackhole) throws Exception {
+        Common.forEachEntry(rpm, entry -> blackhole.consume(entry.getName()));
+    }
+
+    @Benchmark
+    public void serialDecoder(Blackhole blackhole) throws Exception {
+        try (var is = new RpmArchiveInputStream(rpm.getPath())) {
+            blackhole.consume(is.transferTo(OutputStream.nullOutputStream()));
+        }
+    }
+
+    @Benchmark
+    public void payloadDecoder(Blackhole blackhole) throws Exception {
+        try (var is = PayloadDecoder.open(rpm.getPath())) {
+            blackhole.consume(is.transferTo(OutputStream.nullOutputStream()));
+        }
+    }
+
+    @Benchmark
+    public PayloadFacts extractFacts() throws Exception {
+        return PayloadFacts.extract(rpm);
+    }
+}
@@ -0,0 +1,282 @@
+package org.fedoraproject.javapackages.validator;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.BooleanSupplier;
+
+import io.kojan.javadeptools.rpm.RpmPackage;
+
+/**
+ * Limits the RPM files processed by all tests at once by the sizes of the RPM
+ * files and of their uncompressed payloads. A test holds the RPM package its
+ * iterator returned last until it asks for the next one, an RPM package is
+ * returned only when the sum of the sizes of the held RPM packages stays
+ * within the budgets, otherwise the test waits. The {@link RpmPackageList}
+ * keeps a package in memory only while some test holds it.
+ * <p>
+ * An RPM package larger than a budget is admitted alone. A test which already
+ * holds an RPM package, for example by iterating the packages in a nested
+ * loop, never waits, the budgets may be exceeded by such tests but they can
+ * not deadlock.
+ * <p>
+ * The iterators of a cancelled test end immediately, they release the RPM
+ * package they hold and leave the barrier between source groups, so that the
+ * remaining RPM packages are neither admitted nor read.
+ */
+class AdmissionController {
+    /**
+     * Waits and peak usage of the budgets during the run.
+     * @param admitted The number of admitted RPM packages.
+     * @param waits The number of RPM packages which were admitted only after
+     * waiting.
+     * @param waitNanos The total time spent waiting.
+     * @param peakFileBytes The largest size of the RPM files held at once.
+     * @param peakPayloadBytes The largest size of the payloads held at once.
+     */
+    static record Statistics(long admitted, long waits, long waitNanos, long peakFileBytes, long peakPayloadBytes) {
+    }
+
+    private final long maxFileBytes;
+    private final long maxPayloadBytes;
+    private long fileBytes = 0;
+    private long payloadBytes = 0;
+    private int held = 0;
+
+    private long admitted = 0;
+    private long waits = 0;
+    private long waitNanos = 0;
+    private long peakFileBytes = 0;
+    private long peakPayloadBytes = 0;
+
+    /**
+     * @param maxFileBytes The budget of the sizes of RPM files.
+     * @param maxPayloadBytes The budget of the sizes of uncompressed payloads.
+     */
+    AdmissionController(long maxFileBytes, long maxPayloadBytes) {
+        this.maxFileBytes = maxFileBytes;
+        this.maxPayloadBytes = maxPayloadBytes;
+    }
+
+    private synchronized void acquire(long fileSize, long payloadSize, boolean nested) throws InterruptedException {
+        long start = 0;
+        while (held != 0 && !nested && (fileBytes + fileSize > maxFileBytes || payloadBytes + payloadSize > maxPayloadBytes)) {
+            if (start == 0) {
+                start = System.nanoTime();
+                ++waits;
+            }
+            wait();
+        }
+        if (start != 0) {
+            waitNanos += System.nanoTime() - start;
+        }
+        ++admitted;
+        ++held;
+        fileBytes += fileSize;
+        payloadBytes += payloadSize;
+        peakFileBytes = Math.max(peakFileBytes, fileBytes);
+        peakPayloadBytes = Math.max(peakPayloadBytes, payloadBytes);
+    }
+
+    private synchronized void release(long fileSize, long payloadSize) {
+        --held;
+        fileBytes -= fileSize;
+        payloadBytes -= payloadSize;
+        notifyAll();
+    }
+
+    synchronized Statistics getStatistics() {
+        return new Statistics(admitted, waits, waitNanos, peakFileBytes, peakPayloadBytes);
+    }
+
+    /**
+     * The RPM packages held by a single test.
+     */
+    class Session implements AutoCloseable {
+        /**
+         * An RPM package held by an iterator, compared by identity.
+         */
+        private static final class Held {
+            final RpmPackageList rpms;
+            final int index;
+
+            Held(RpmPackageList rpms, int index) {
+                this.rpms = rpms;
+                this.index = index;
+            }
+
+            RpmSummary summary() {
+                return rpms.getSummary(index);
+            }
+        }
+
+        private final boolean payload;
+        private final SourceGroups groups;
+        private final BooleanSupplier cancelled;
+        private final List<Held> held = new ArrayList<>();
+        private SourceGroups.Member member = null;
+
+        private Session(boolean payload, SourceGroups groups, BooleanSupplier cancelled) {
+            this.payload = payload;
+            this.groups = groups;
+            this.cancelled = cancelled;
+        }
+
+        /**
+         * @return The member of the barrier between source groups for the
+         * first iterator of the test, nested iterators do not wait.
+         */
+        private synchronized SourceGroups.Member join() {
+            if (groups == null || member != null) {
+                return null;
+            }
+            member = groups.join();
+            return member;
+        }
+
+        private long payloadSize(RpmSummary summary) {
+            return payload ? summary.payloadSize() : 0;
+        }
+
+        private RpmPackage acquire(Held rpm) {
+            var summary = rpm.summary();
+            boolean nested;
+            synchronized (this) {
+                nested = !held.isEmpty();
+            }
+            try {
+                AdmissionController.this.acquire(summary.fileSize(), payloadSize(summary), nested);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for RPM file " + summary.path(), ex);
+            }
+            RpmPackage result;
+            try {
+                result = rpm.rpms.acquire(rpm.index);
+            } catch (RuntimeException ex) {
+                AdmissionController.this.release(summary.fileSize(), payloadSize(summary));
+                throw ex;
+            }
+            synchronized (this) {
+                held.add(rpm);
+            }
+            return result;
+        }
+
+        private void release(Held rpm) {
+            synchronized (this) {
+                if (!held.remove(rpm)) {
+                    return;
+                }
+            }
+            rpm.rpms.release(rpm.index);
+            var summary = rpm.summary();
+            AdmissionController.this.release(summary.fileSize(), payloadSize(summary));
+        }
+
+        /**
+         * @param rpms The RPM packages.
+         * @return The RPM packages, each is read only after it is admitted.
+         * The iteration ends early when the test is cancelled.
+         */
+        Iterable<RpmPackage> admit(RpmPackageList rpms) {
+            return () -> new Iterator<RpmPackage>() {
+                private final SourceGroups.Member member = join();
+                private int index = 0;
+                private Held current = null;
+
+                private void releaseCurrent() {
+                    if (current != null) {
+                        release(current);
+                        current = null;
+                    }
+                }
+
+                private boolean finish() {
+                    if (index < rpms.size() && !cancelled.getAsBoolean()) {
+                        return false;
+                    }
+                    releaseCurrent();
+                    if (member != null) {
+                        member.leave();
+                    }
+                    return true;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return !finish();
+                }
+
+                @Override
+                public RpmPackage next() {
+                    if (finish()) {
+                        throw new NoSuchElementException();
+                    }
+                    releaseCurrent();
+                    if (member != null) {
+                        member.enter(index);
+                    }
+                    var rpm = new Held(rpms, index);
+                    var result = acquire(rpm);
+                    current = rpm;
+                    ++index;
+                    return result;
+                }
+            };
+        }
+
+        /**
+         * Release the RPM packages still held and leave the barrier between
+         * source groups, by tests which did not iterate to the end.
+         */
+        @Override
+        public void close() {
+            List<Held> remaining;
+            SourceGroups.Member joined;
+            synchronized (this) {
+                remaining = new ArrayList<>(held);
+                joined = member;
+            }
+            remaining.forEach(this::release);
+            if (joined != null) {
+                joined.leave();
+            }
+        }
+    }
+
+    /**
+     * @param payload Whether the test reads payloads, only then the payload
+     * budget applies to it.
+     * @return A new session for a single test.
+     */
+    Session open(boolean payload) {
+        return open(payload, null, () -> false);
+    }
+
+    /**
+     * @param payload Whether the test reads payloads, only then the payload
+     * budget applies to it.
+     * @param groups The source groups of the RPM packages the test iterates,
+     * the test proceeds to the next group only together with the other tests,
+     * or {@code null}.
+     * @return A new session for a single test.
+     */
+    Session open(boolean payload, SourceGroups groups) {
+        return open(payload, groups, () -> false);
+    }
+
+    /**
+     * @param payload Whether the test reads payloads, only then the payload
+     * budget applies to it.
+     * @param groups The source groups of the RPM packages the test iterates,
+     * the test proceeds to the next group only together with the other tests,
+     * or {@code null}.
+     * @param cancelled Whether the test is cancelled, its iterators then end.
+     * @return A new session for a single test.
+     */
+    Session open(boolean payload, SourceGroups groups, BooleanSupplier cancelled) {
+        return new Session(payload, groups, cancelled);
+    }
+}
@@ -2,23 +2,55 @@ package org.fedoraproject.javapackages.validator;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.nio.file.FileSystemLoopException;
-import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
-import java.util.Arrays;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
 
 import io.kojan.javadeptools.rpm.RpmPackage;
 
+/**
+ * Iterates over the RPM files given as arguments or found in the directories
+ * given as arguments. Every file is returned only once, even if it is
+ * reachable through several paths, files are identified by their file keys
+ * (device and inode) or by their real paths if file keys are not supported.
+ * Files rejected by the path filter are not opened.
+ */
 class ArgFileIterator implements Iterator<RpmPackage> {
     private Iterator<Path> argIterator;
     private Iterator<Path> pathIterator = null;
+    private Set<Object> seenKeys = new HashSet<>();
+    private int duplicates = 0;
+    private Predicate<Path> filter = path -> true;
+    private int filtered = 0;
+
+    private static record Discovered(Path path, Object key) {
+    }
 
     public static ArgFileIterator create(Iterable<Path> args) {
+        return create(args, path -> true);
+    }
+
+    /**
+     * @param args The files and directories given as arguments.
+     * @param filter Which of the found RPM files to open.
+     * @return The iterator.
+     */
+    public static ArgFileIterator create(Iterable<Path> args, Predicate<Path> filter) {
         var result = new ArgFileIterator();
         result.argIterator = args.iterator();
+        result.filter = filter;
         result.pathIterator = result.advance();
 
         if (result.pathIterator == null) {
@@ -28,6 +60,88 @@ class ArgFileIterator implements Iterator<RpmPackage> {
         return result;
     }
 
+    /**
+     * @return The number of files skipped so far because they were already
+     * returned through another path.
+     */
+    public int getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * @return The number of files skipped so far because they were rejected
+     * by the filter.
+     */
+    public int getFiltered() {
+        return filtered;
+    }
+
+    private static BasicFileAttributes readAttributes(Path path) throws IOException {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException ex) {
+            // Dangling symlink
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        }
+    }
+
+    private static Object fileKey(Path path, BasicFileAttributes attributes) throws IOException {
+        if (attributes.isSymbolicLink()) {
+            // Only dangling symlinks have attributes of the link itself, they
+            // are reported as errors when opened
+            return path;
+        }
+        var key = attributes.fileKey();
+        return key != null ? key : path.toRealPath();
+    }
+
+    /**
+     * Recursive walk of a directory tree, subdirectories are listed in
+     * parallel. Symlinks are followed, directories which are their own
+     * ancestors are skipped to avoid loops.
+     */
+    private static class DirectoryWalk extends RecursiveTask<List<Discovered>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+        private final List<Object> ancestors;
+
+        DirectoryWalk(Path directory, List<Object> ancestors) {
+            this.directory = directory;
+            this.ancestors = ancestors;
+        }
+
+        @Override
+        protected List<Discovered> compute() {
+            var result = new ArrayList<Discovered>();
+            var subtasks = new ArrayList<DirectoryWalk>();
+
+            try (var stream = Files.newDirectoryStream(directory)) {
+                for (var path : stream) {
+                    var attributes = readAttributes(path);
+                    var key = fileKey(path, attributes);
+                    if (attributes.isDirectory()) {
+                        if (!ancestors.contains(key)) {
+                            var chain = new ArrayList<>(ancestors);
+                            chain.add(key);
+                            subtasks.add(new DirectoryWalk(path, chain));
+                        }
+                    } else if (path.toString().endsWith(".rpm")) {
+                        result.add(new Discovered(path, key));
+                    }
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+
+            for (var subtask : ForkJoinTask.invokeAll(subtasks)) {
+                result.addAll(subtask.join());
+            }
+
+            return result;
+        }
+    }
+
     private Iterator<Path> advance() {
         while (argIterator.hasNext()) {
             Path argPath = argIterator.next().resolve(".").toAbsolutePath().normalize();
@@ -40,11 +154,14 @@ class ArgFileIterator implements Iterator<RpmPackage> {
                 if (Files.notExists(argPath)) {
                     throw new RuntimeException("File " + argPath + " does not exist");
                 } else if (Files.isRegularFile(argPath)) {
-                    return Arrays.asList(argPath).iterator();
+                    return unseen(List.of(new Discovered(argPath, fileKey(argPath, readAttributes(argPath)))));
                 } else if (Files.isDirectory(argPath)) {
-                    return Files.find(argPath, Integer.MAX_VALUE, (path, attributes) ->
-                            !attributes.isDirectory() && path.toString().endsWith(".rpm"),
-                            FileVisitOption.FOLLOW_LINKS).iterator();
+                    var key = fileKey(argPath, readAttributes(argPath));
+                    var discovered = new DirectoryWalk(argPath, List.of(key)).invoke();
+                    // Sort to make the result of a parallel walk and the
+                    // choice among duplicate paths deterministic
+                    discovered.sort(Comparator.comparing(Discovered::path));
+                    return unseen(discovered);
                 } else {
                     throw new IllegalStateException("File " + argPath + " of unknown type");
                 }
@@ -56,34 +173,47 @@ class ArgFileIterator implements Iterator<RpmPackage> {
         return null;
     }
 
+    private Iterator<Path> unseen(List<Discovered> discovered) {
+        var result = new ArrayList<Path>(discovered.size());
+        for (var file : discovered) {
+            if (!seenKeys.add(file.key())) {
+                ++duplicates;
+            } else if (filter.test(file.path())) {
+                result.add(file.path());
+            } else {
+                ++filtered;
+            }
+        }
+        return result.iterator();
+    }
+
     @Override
     public boolean hasNext() {
-        try {
-            if (pathIterator.hasNext()) {
-                return true;
-            }
-        } catch (Exception ex) {
-            // Ignore loops
-            if (ex.getCause() instanceof FileSystemLoopException) {
-                return hasNext();
-            } else {
-                throw ex;
+        while (!pathIterator.hasNext()) {
+            var nextIterator = advance();
+            if (nextIterator == null) {
+                return false;
             }
+            pathIterator = nextIterator;
         }
 
-        pathIterator = advance();
+        return true;
+    }
 
-        if (pathIterator != null) {
-            return true;
+    /**
+     * @return The path of the next RPM file, without opening it.
+     */
+    public Path nextPath() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
         }
-
-        return false;
+        return pathIterator.next();
     }
 
     @Override
     public RpmPackage next() {
         try {
-            return new RpmPackage(pathIterator.next());
+            return new RpmPackage(nextPath());
         } catch (Exception ex) {
             throw new RuntimeException(ex);
         }
@@ -0,0 +1,222 @@
+package org.fedoraproject.javapackages.validator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+import org.fedoraproject.javapackages.validator.spi.Decorated;
+import org.yaml.snakeyaml.Yaml;
+
+/**
+ * Runs the jobs of a manifest in a single process, each job as a separate
+ * invocation of {@link Main} or {@link MainTmt} would. The jobs share the
+ * class loaders of the validators, so that the validators are compiled and
+ * their classes loaded only once, and the pools of threads running the tests.
+ * The validators are instantiated again for each job, they hold the results
+ * of the job.
+ * <p>
+ * The manifest is a YAML file:
+ * <pre>
+ * args: [-sp, tests/src, -d, classes]
+ * jobs:
+ *   - name: ant
+ *     files: [rpms/ant]
+ *     tests:
+ *       /java/bytecode-version: ['-', '17']
+ *       /java/maven-metadata:
+ *     output: results/ant
+ *     tmt-tree: tests
+ * </pre>
+ * The arguments under the top-level key {@code args} precede the arguments of
+ * each job, optional key {@code args} of a job adds more arguments. Key
+ * {@code tests} is a list of test names or a map of test names to their
+ * arguments. The standard output of a job, including the stack trace of a
+ * job which failed with an exception, is written to file {@code stdout} in
+ * its output directory, jobs with key {@code tmt-tree} also write the tmt
+ * results to the output directory. A failed job does not stop the batch.
+ * The paths of files, output directories and tmt trees are relative to the
+ * directory of the manifest.
+ */
+class Batch implements AutoCloseable {
+    /**
+     * @param name The name of the job.
+     * @param args The arguments of the job.
+     * @param output The output directory of the job.
+     * @param tmtTree The tmt tree of the job or null if the job is not run as
+     * a tmt test.
+     */
+    static record Job(String name, List<String> args, Path output, Path tmtTree) {
+    }
+
+    /**
+     * The arguments determining the classes of the validators.
+     */
+    static record ClassesKey(Path sourcePath, Path outputDir, Path classCache, List<Path> classPaths) {
+    }
+
+    /**
+     * @param classLoader The class loader of the validators.
+     * @param classPaths The class path including the resolved dependencies of
+     * the compiled validators.
+     */
+    static record Classes(ClassLoader classLoader, List<Path> classPaths) {
+    }
+
+    private final Map<ClassesKey, Classes> classes = new HashMap<>();
+    private final Map<Integer, ForkJoinPool> pools = new HashMap<>();
+
+    private static List<String> strings(Object value, String key) {
+        if (value == null) {
+            return List.of();
+        }
+        if (!(value instanceof List<?> list) || !list.stream().allMatch(String.class::isInstance)) {
+            throw new RuntimeException("Batch manifest: " + key + " must be a list of strings");
+        }
+        return list.stream().map(String.class::cast).toList();
+    }
+
+    /**
+     * @param manifest The path of the manifest.
+     * @param is The content of the manifest.
+     * @return The jobs of the manifest.
+     */
+    static List<Job> readManifest(Path manifest, InputStream is) {
+        var base = Objects.requireNonNullElse(manifest.toAbsolutePath().getParent(), manifest.toAbsolutePath());
+        if (!(new Yaml().load(is) instanceof Map<?, ?> root)) {
+            throw new RuntimeException("Batch manifest " + manifest + " must be a map");
+        }
+        var commonArgs = strings(root.get("args"), "args");
+        if (!(root.get("jobs") instanceof List<?> jobList)) {
+            throw new RuntimeException("Batch manifest " + manifest + " must contain a list of jobs");
+        }
+
+        var jobs = new ArrayList<Job>();
+        for (var item : jobList) {
+            if (!(item instanceof Map<?, ?> job) || !(job.get("name") instanceof String name)) {
+                throw new RuntimeException("Batch manifest " + manifest + ": each job must be a map with a name");
+            }
+            if (!(job.get("output") instanceof String output)) {
+                throw new RuntimeException("Batch manifest " + manifest + ": job " + name + " has no output directory");
+            }
+            var args = new ArrayList<String>(commonArgs);
+            args.addAll(strings(job.get("args"), name + ": args"));
+            for (var file : strings(job.get("files"), name + ": files")) {
+                args.add("-f");
+                args.add(base.resolve(file).toString());
+            }
+            switch (job.get("tests")) {
+                case null -> {}
+                case List<?> tests -> args.addAll(strings(tests, name + ": tests"));
+                case Map<?, ?> tests -> {
+                    for (var test : tests.entrySet()) {
+                        args.add(String.valueOf(test.getKey()));
+                        if (test.getValue() != null) {
+                            args.add("[");
+                            args.addAll(strings(test.getValue(), name + ": " + test.getKey()));
+                            args.add("]");
+                        }
+                    }
+                }
+                default -> throw new RuntimeException("Batch manifest " + manifest + ": tests of job " + name
+                        + " must be a list or a map");
+            }
+            var tmtTree = job.get("tmt-tree") instanceof String tree ? base.resolve(tree) : null;
+            jobs.add(new Job(name, args, base.resolve(output), tmtTree));
+        }
+        return jobs;
+    }
+
+    static List<Job> readManifest(Path manifest) throws IOException {
+        try (var is = Files.newInputStream(manifest)) {
+            return readManifest(manifest, is);
+        }
+    }
+
+    /**
+     * @param key The arguments determining the classes.
+     * @param loader Compiles the validators and creates their class loader.
+     * @return The classes shared by all jobs with the same arguments.
+     * @throws Exception If creating the class loader failed.
+     */
+    synchronized Classes getClasses(ClassesKey key, Callable<Classes> loader) throws Exception {
+        var result = classes.get(key);
+        if (result == null) {
+            result = loader.call();
+            classes.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * @param threads The parallelism of the pool.
+     * @return The pool shared by all jobs with the same parallelism.
+     */
+    synchronized ForkJoinPool getPool(int threads) {
+        return pools.computeIfAbsent(threads, ForkJoinPool::new);
+    }
+
+    private int run(Job job) throws Exception {
+        Files.createDirectories(job.output());
+        var args = job.args().toArray(String[]::new);
+        Main main;
+        if (job.tmtTree() != null) {
+            main = MainTmt.create(job.output(), job.tmtTree());
+        } else {
+            main = new Main();
+        }
+        main.setBatch(this);
+
+        var stdout = System.out;
+        try (var ps = new PrintStream(Files.newOutputStream(job.output().resolve("stdout")), true, StandardCharsets.UTF_8)) {
+            System.setOut(ps);
+            try {
+                return main.run(args);
+            } catch (Exception ex) {
+                // A separate invocation would terminate with the exception
+                ex.printStackTrace(ps);
+                return 1;
+            }
+        } finally {
+            System.setOut(stdout);
+        }
+    }
+
+    /**
+     * Run the jobs one after another.
+     * @param jobs The jobs.
+     * @param logger The logger which reports the exit code of each job.
+     * @return The highest exit code of the jobs.
+     * @throws Exception If writing the output of a job failed.
+     */
+    int run(List<Job> jobs, Logger logger) throws Exception {
+        int exitcode = 0;
+        for (var job : jobs) {
+            var jobExitcode = run(job);
+            logger.info("Job {0}: exit code {1}", Decorated.actual(job.name()), Decorated.plain(jobExitcode));
+            exitcode = Math.max(exitcode, jobExitcode);
+        }
+        return exitcode;
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (var pool : pools.values()) {
+            pool.shutdown();
+        }
+        for (var loaded : classes.values()) {
+            if (loaded.classLoader() instanceof AutoCloseable ac) {
+                ac.close();
+            }
+        }
+    }
+}
@@ -3,16 +3,56 @@ package org.fedoraproject.javapackages.validator;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
+import org.fedoraproject.javapackages.validator.spi.Decorated;
+import org.fedoraproject.javapackages.validator.spi.LogEntry;
+import org.fedoraproject.javapackages.validator.spi.LogEvent;
 import org.fedoraproject.javapackages.validator.spi.Result;
 import org.fedoraproject.javapackages.validator.spi.ResultBuilder;
+import org.fedoraproject.javapackages.validator.spi.TestResult;
 import org.fedoraproject.javapackages.validator.spi.Validator;
+import org.fedoraproject.javapackages.validator.util.PayloadFacts;
+import org.fedoraproject.javapackages.validator.util.PayloadNeeds;
+import org.fedoraproject.javapackages.validator.util.RpmFileName;
 
 import io.kojan.javadeptools.rpm.RpmPackage;
 
 public abstract class DefaultValidator extends ResultBuilder implements Validator {
     private List<String> args = null;
 
+    private int maxFailures = 0;
+    private int failures = 0;
+    private boolean stoppedEarly = false;
+    private BooleanSupplier cancelled = () -> false;
+    private Runnable failureListener = () -> {};
+
+    private boolean debugEnabled = false;
+
+    private ResultCache resultCache = null;
+    private PayloadIndex payloadIndex = null;
+    private FactStore factStore = null;
+    private boolean groupedBySource = false;
+    private Consumer<LogEntry> logStream = null;
+    private List<LogEntry> recording = null;
+    private TestResult recordedResult = null;
+
+    /**
+     * Configure early termination of this validator.
+     * @param maxFailures The number of failures after which the validator
+     * stops, 0 means unlimited.
+     * @param cancelled Supplier signalling that the whole run was cancelled.
+     * @param failureListener Called whenever a failure or an error is recorded.
+     */
+    void setFailureLimits(int maxFailures, BooleanSupplier cancelled, Runnable failureListener) {
+        this.maxFailures = maxFailures;
+        this.cancelled = cancelled;
+        this.failureListener = failureListener;
+    }
+
     @Override
     public Result validate(Iterable<RpmPackage> rpms, List<String> args) {
         if (args != null) {
@@ -24,6 +64,14 @@ public abstract class DefaultValidator extends ResultBuilder implements Validato
             error(ex);
         }
 
+        if (maxFailures > 0 && failures > maxFailures) {
+            skip("{0} more failures were not reported, the limit is {1}",
+                    Decorated.plain(failures - maxFailures), Decorated.plain(maxFailures));
+        }
+        if (stoppedEarly) {
+            skip("Validation was stopped early, the results are incomplete");
+        }
+
         return build();
     }
 
@@ -31,5 +79,315 @@ public abstract class DefaultValidator extends ResultBuilder implements Validato
         return args;
     }
 
+    /**
+     * Validators which iterate over large inputs, such as RPM payloads, should
+     * query this function periodically and stop the iteration when it returns
+     * true.
+     * @return Whether the validator should stop processing further input.
+     */
+    public boolean isCancelled() {
+        if (cancelled.getAsBoolean() || (maxFailures > 0 && failures >= maxFailures)) {
+            stoppedEarly = true;
+        }
+        return stoppedEarly;
+    }
+
+    void setDebugEnabled(boolean debugEnabled) {
+        this.debugEnabled = debugEnabled;
+    }
+
+    /**
+     * @return Whether debugging output was requested. Validators can use this
+     * to skip collecting detail which is only reported as debug entries.
+     */
+    protected boolean isDebugEnabled() {
+        return debugEnabled;
+    }
+
+    /**
+     * Pass every log entry to the consumer as it is produced instead of
+     * keeping it in the result.
+     * @param logStream The consumer of log entries.
+     */
+    void setLogStream(Consumer<LogEntry> logStream) {
+        this.logStream = logStream;
+    }
+
+    void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * @return The cache of results of previous runs or null if results are not
+     * cached.
+     */
+    protected ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    void setPayloadIndex(PayloadIndex payloadIndex) {
+        this.payloadIndex = payloadIndex;
+    }
+
+    /**
+     * @return The shared index of payload facts or null if it is not enabled.
+     */
+    protected PayloadIndex getPayloadIndex() {
+        return payloadIndex;
+    }
+
+    void setFactStore(FactStore factStore) {
+        this.factStore = factStore;
+    }
+
+    /**
+     * @return The store of facts shared by all validators of the run or null
+     * if the validator runs alone.
+     */
+    protected FactStore getFactStore() {
+        return factStore;
+    }
+
+    void setGroupedBySource(boolean groupedBySource) {
+        this.groupedBySource = groupedBySource;
+    }
+
+    /**
+     * @return Whether the RPM packages are iterated grouped by their source
+     * packages, packages built from the same source package are adjacent.
+     * Validators which collect the packages of a source package can then
+     * validate each group when it ends instead of holding all packages until
+     * the end of the iteration.
+     */
+    protected boolean isGroupedBySource() {
+        return groupedBySource;
+    }
+
+    /**
+     * Get a fact from the shared fact store, computing it only if no other
+     * validator computed it before. Without a fact store the fact is computed
+     * every time.
+     * @param <T> The type of the value.
+     * @param rpm The RPM package.
+     * @param entry The name of the payload entry as stored in the payload, an
+     * empty string for facts about the whole RPM package.
+     * @param type The type of the fact.
+     * @param computation Computes the value of the fact.
+     * @return The value of the fact.
+     * @throws Exception If the computation failed.
+     */
+    protected <T> T getFact(RpmPackage rpm, String entry, FactStore.Type<T> type, Callable<T> computation) throws Exception {
+        return factStore == null ? computation.call() : factStore.get(rpm, entry, type, computation);
+    }
+
+    /**
+     * Validators which read less than the whole payload should declare it, so
+     * that the payload is not read when no selected validator needs it.
+     * @return The parts of the RPM packages this validator reads.
+     */
+    public PayloadNeeds getPayloadNeeds() {
+        return PayloadNeeds.ALL;
+    }
+
+    /**
+     * RPM files are not opened at all when the file name filters of all
+     * selected validators reject them.
+     * @return A necessary condition on the file names of the RPM files this
+     * validator processes.
+     */
+    public Predicate<RpmFileName> getFileNameFilter() {
+        return fileName -> true;
+    }
+
+    /**
+     * @param rpm The RPM package.
+     * @return The facts about the payload of the RPM package or null if the
+     * payload index is not enabled, in which case the payload needs to be
+     * read.
+     * @throws Exception If the facts could not be extracted.
+     */
+    public PayloadFacts getPayloadFacts(RpmPackage rpm) throws Exception {
+        return payloadIndex == null ? null : payloadIndex.get(rpm);
+    }
+
+    /**
+     * @param rpms The RPM packages from which a result is computed.
+     * @return A fingerprint identifying the implementation of this validator,
+     * the RPM packages and the arguments of this validator or null if some of
+     * the RPM packages have no fingerprint.
+     */
+    protected String getCacheFingerprint(Iterable<RpmPackage> rpms) {
+        if (resultCache == null) {
+            return null;
+        }
+        var result = new StringBuilder();
+        result.append(resultCache.implementationFingerprint(getClass())).append(':');
+        // Validators may produce different detail with debugging output
+        result.append(debugEnabled ? 'D' : '-');
+        if (args != null) {
+            result.append(String.join("\0", args));
+        }
+        for (var rpm : rpms) {
+            var fingerprint = resultCache.fingerprint(rpm);
+            if (fingerprint == null) {
+                return null;
+            }
+            result.append(':').append(fingerprint);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Start collecting the log entries and the result produced by this
+     * validator, until {@link #stopRecording()} is called.
+     */
+    protected void startRecording() {
+        recording = new ArrayList<>();
+        recordedResult = TestResult.skip;
+    }
+
+    protected ResultCache.Entry stopRecording() {
+        var result = new ResultCache.Entry(recordedResult, List.copyOf(recording));
+        recording = null;
+        return result;
+    }
+
+    /**
+     * Add a previously recorded result to the result of this validator.
+     * Replayed failures and errors count towards the failure limits.
+     * @param entry The recorded result.
+     */
+    protected void replay(ResultCache.Entry entry) {
+        mergeResult(entry.result());
+        for (var logEntry : entry.log()) {
+            if (LogEvent.fail.equals(logEntry.kind())) {
+                addFailure(logEntry);
+            } else if (LogEvent.error.equals(logEntry.kind())) {
+                addLog(logEntry);
+                failureListener.run();
+            } else {
+                addLog(logEntry);
+            }
+        }
+    }
+
+    protected static interface ValidationStep {
+        void run() throws Exception;
+    }
+
+    /**
+     * Run a part of the validation, or replay its result from the result cache
+     * if the inputs of this part did not change since the previous run.
+     * @param key The key identifying the part of the validation.
+     * @param rpms The RPM packages the part of the validation depends on.
+     * @param step The validation to run.
+     * @throws Exception If the validation step throws.
+     */
+    protected void validateCached(String key, Iterable<RpmPackage> rpms, ValidationStep step) throws Exception {
+        var fingerprint = getCacheFingerprint(rpms);
+        if (fingerprint == null) {
+            step.run();
+            return;
+        }
+
+        var cached = resultCache.getResult(getTestName(), key, fingerprint);
+        if (cached.isPresent()) {
+            replay(cached.get());
+            return;
+        }
+
+        startRecording();
+        try {
+            step.run();
+        } catch (Exception ex) {
+            stopRecording();
+            throw ex;
+        }
+        var entry = stopRecording();
+        // Do not store incomplete results
+        if (!stoppedEarly) {
+            resultCache.putResult(getTestName(), key, fingerprint, entry);
+        }
+    }
+
+    @Override
+    public void addLog(LogEntry entry) {
+        if (logStream != null) {
+            logStream.accept(entry);
+        } else {
+            super.addLog(entry);
+        }
+        if (recording != null) {
+            recording.add(entry);
+        }
+    }
+
+    @Override
+    public void mergeResult(TestResult result) {
+        super.mergeResult(result);
+        if (recording != null && recordedResult.compareTo(result) < 0) {
+            recordedResult = result;
+        }
+    }
+
+    // All log functions are implemented using addLog and mergeResult so that
+    // every produced entry can be observed
+
+    @Override
+    public void debug(String pattern, Decorated... objects) {
+        addLog(LogEntry.debug(pattern, objects));
+    }
+
+    @Override
+    public void skip(String pattern, Decorated... objects) {
+        mergeResult(TestResult.skip);
+        addLog(LogEntry.skip(pattern, objects));
+    }
+
+    @Override
+    public void pass(String pattern, Decorated... objects) {
+        mergeResult(TestResult.pass);
+        addLog(LogEntry.pass(pattern, objects));
+    }
+
+    @Override
+    public void info(String pattern, Decorated... objects) {
+        mergeResult(TestResult.info);
+        addLog(LogEntry.info(pattern, objects));
+    }
+
+    @Override
+    public void warn(String pattern, Decorated... objects) {
+        mergeResult(TestResult.warn);
+        addLog(LogEntry.warn(pattern, objects));
+    }
+
+    private void addFailure(LogEntry entry) {
+        ++failures;
+        if (maxFailures == 0 || failures <= maxFailures) {
+            addLog(entry);
+            failureListener.run();
+        }
+    }
+
+    @Override
+    public void fail(String pattern, Decorated... objects) {
+        mergeResult(TestResult.fail);
+        addFailure(LogEntry.fail(pattern, objects));
+    }
+
+    @Override
+    public void error(String pattern, Decorated... objects) {
+        mergeResult(TestResult.error);
+        addLog(LogEntry.error(pattern, objects));
+        failureListener.run();
+    }
+
+    @Override
+    public void error(Throwable ex) {
+        super.error(ex);
+        failureListener.run();
+    }
+
     protected abstract void validate(Iterable<RpmPackage> rpms) throws Exception;
 }
@@ -0,0 +1,209 @@
+package org.fedoraproject.javapackages.validator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.kojan.javadeptools.rpm.RpmPackage;
+
+/**
+ * Result cache persisted in a directory, used to implement delta validation.
+ * <p>
+ * The directory contains a manifest of the RPM files of the last run with
+ * their sizes, modification times and header digests, and the cached results
+ * and indexes of the validators. Only entries used by the current run are
+ * persisted again, so the cache does not grow with removed RPM files.
+ */
+class DeltaCache implements ResultCache {
+    private static final int VERSION = 1;
+    private static final String MANIFEST = "manifest.tsv";
+    private static final String RESULTS = "results.bin";
+
+    private static record ManifestEntry(long size, long mtime, String digest) {
+    }
+
+    private static record Stored<T>(String fingerprint, T value) {
+    }
+
+    private final Path directory;
+    private final Map<String, ManifestEntry> manifest = new ConcurrentHashMap<>();
+    private final Map<String, ManifestEntry> nextManifest = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Stored<Entry>>> results = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Stored<Entry>>> nextResults = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, List<String>>> indexes = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, List<String>>> nextIndexes = new ConcurrentHashMap<>();
+    private final Map<Path, String> fingerprints = new ConcurrentHashMap<>();
+    private final Map<Class<?>, String> implementations = new ConcurrentHashMap<>();
+    private final ImplementationDigest implementationDigest = new ImplementationDigest();
+
+    private DeltaCache(Path directory) {
+        this.directory = directory;
+    }
+
+    public static DeltaCache load(Path directory) throws IOException {
+        var result = new DeltaCache(directory);
+        Files.createDirectories(directory);
+
+        var manifestPath = directory.resolve(MANIFEST);
+        if (Files.isRegularFile(manifestPath)) {
+            for (var line : Files.readAllLines(manifestPath, StandardCharsets.UTF_8)) {
+                var fields = line.split("\t", 4);
+                if (fields.length == 4) {
+                    result.manifest.put(fields[3], new ManifestEntry(Long.parseLong(fields[1]),
+                            Long.parseLong(fields[2]), fields[0]));
+                }
+            }
+        }
+
+        var resultsPath = directory.resolve(RESULTS);
+        if (Files.isRegularFile(resultsPath)) {
+            try (var is = new DataInputStream(new BufferedInputStream(Files.newInputStream(resultsPath)))) {
+                if (is.readInt() == VERSION) {
+                    for (int tests = is.readInt(); tests != 0; --tests) {
+                        var testResults = result.results.computeIfAbsent(ResultCodec.readString(is), k -> new ConcurrentHashMap<>());
+                        for (int count = is.readInt(); count != 0; --count) {
+                            var key = ResultCodec.readString(is);
+                            var fingerprint = ResultCodec.readString(is);
+                            testResults.put(key, new Stored<>(fingerprint, ResultCodec.readResult(is)));
+                        }
+                    }
+                    for (int tests = is.readInt(); tests != 0; --tests) {
+                        var testIndexes = result.indexes.computeIfAbsent(ResultCodec.readString(is), k -> new ConcurrentHashMap<>());
+                        for (int count = is.readInt(); count != 0; --count) {
+                            var fingerprint = ResultCodec.readString(is);
+                            testIndexes.put(fingerprint, ResultCodec.readStrings(is));
+                        }
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Compute fingerprints of the RPM files. The header digest is only
+     * recomputed if the size or the modification time of the file differ from
+     * the manifest of the previous run.
+     * @param rpmPaths The RPM files of this run.
+     * @return The number of RPM files which are new or have changed.
+     */
+    public int update(Collection<Path> rpmPaths) {
+        return (int) rpmPaths.parallelStream().filter(rpmPath -> {
+            try {
+                var path = rpmPath.toAbsolutePath();
+                var size = Files.size(path);
+                var mtime = Files.getLastModifiedTime(path).toMillis();
+                var previous = manifest.get(path.toString());
+                String digest;
+                if (previous != null && previous.size() == size && previous.mtime() == mtime) {
+                    digest = previous.digest();
+                } else {
+                    digest = RpmHeaderDigest.compute(path);
+                }
+                nextManifest.put(path.toString(), new ManifestEntry(size, mtime, digest));
+                fingerprints.put(rpmPath, digest);
+                return previous == null || !previous.digest().equals(digest);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }).count();
+    }
+
+    @Override
+    public String fingerprint(RpmPackage rpm) {
+        return fingerprints.get(rpm.getPath());
+    }
+
+    @Override
+    public String implementationFingerprint(Class<?> validatorClass) {
+        return implementations.computeIfAbsent(validatorClass, cls -> {
+            try {
+                return cls.getName() + "@" + implementationDigest.compute(cls);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+    }
+
+    @Override
+    public Optional<Entry> getResult(String testName, String key, String fingerprint) {
+        var stored = results.getOrDefault(testName, Map.of()).get(key);
+        if (stored == null || !stored.fingerprint().equals(fingerprint)) {
+            return Optional.empty();
+        }
+        nextResults.computeIfAbsent(testName, k -> new ConcurrentHashMap<>()).put(key, stored);
+        return Optional.of(stored.value());
+    }
+
+    @Override
+    public void putResult(String testName, String key, String fingerprint, Entry entry) {
+        nextResults.computeIfAbsent(testName, k -> new ConcurrentHashMap<>()).put(key, new Stored<>(fingerprint, entry));
+    }
+
+    @Override
+    public Optional<List<String>> getIndex(String testName, String fingerprint) {
+        var values = indexes.getOrDefault(testName, Map.of()).get(fingerprint);
+        if (values != null) {
+            putIndex(testName, fingerprint, values);
+        }
+        return Optional.ofNullable(values);
+    }
+
+    @Override
+    public void putIndex(String testName, String fingerprint, List<String> values) {
+        nextIndexes.computeIfAbsent(testName, k -> new ConcurrentHashMap<>()).put(fingerprint, List.copyOf(values));
+    }
+
+    public void save() throws IOException {
+        var manifestTmp = directory.resolve(MANIFEST + ".tmp");
+        try (var writer = Files.newBufferedWriter(manifestTmp, StandardCharsets.UTF_8)) {
+            for (var entry : new TreeMap<>(nextManifest).entrySet()) {
+                writer.append(entry.getValue().digest()).append('\t')
+                        .append(String.valueOf(entry.getValue().size())).append('\t')
+                        .append(String.valueOf(entry.getValue().mtime())).append('\t')
+                        .append(entry.getKey()).append('\n');
+            }
+        }
+
+        var resultsTmp = directory.resolve(RESULTS + ".tmp");
+        try (var os = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(resultsTmp)))) {
+            os.writeInt(VERSION);
+            os.writeInt(nextResults.size());
+            for (var test : nextResults.entrySet()) {
+                ResultCodec.writeString(os, test.getKey());
+                os.writeInt(test.getValue().size());
+                for (var stored : test.getValue().entrySet()) {
+                    ResultCodec.writeString(os, stored.getKey());
+                    ResultCodec.writeString(os, stored.getValue().fingerprint());
+                    ResultCodec.writeResult(os, stored.getValue().value());
+                }
+            }
+            os.writeInt(nextIndexes.size());
+            for (var test : nextIndexes.entrySet()) {
+                ResultCodec.writeString(os, test.getKey());
+                os.writeInt(test.getValue().size());
+                for (var stored : test.getValue().entrySet()) {
+                    ResultCodec.writeString(os, stored.getKey());
+                    ResultCodec.writeStrings(os, stored.getValue());
+                }
+            }
+        }
+
+        Files.move(manifestTmp, directory.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING);
+        Files.move(resultsTmp, directory.resolve(RESULTS), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
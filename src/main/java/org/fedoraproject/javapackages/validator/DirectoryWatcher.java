@@ -0,0 +1,182 @@
+package org.fedoraproject.javapackages.validator;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.fedoraproject.javapackages.validator.util.RpmHeader;
+
+/**
+ * Waits for changes in directory trees. The directories are watched by a
+ * {@link WatchService}, subdirectories created later are watched as soon as
+ * they are noticed. When the file system does not support watching, for
+ * example on some network file systems, waiting degrades to polling, the
+ * caller then scans the directories again after each timeout.
+ * <p>
+ * RPM files appear in the directories while they are being written, a scan
+ * returns only the complete ones, whose signature header records the size of
+ * the whole file.
+ */
+class DirectoryWatcher implements AutoCloseable {
+    /**
+     * The state of a file, a file whose state differs from that of the
+     * previous scan was written again.
+     */
+    static record FileState(long size, FileTime modified) {
+    }
+
+    /**
+     * @param complete The complete RPM files and their states.
+     * @param incomplete The number of RPM files being written.
+     */
+    static record Scan(Map<Path, FileState> complete, int incomplete) {
+    }
+
+    private WatchService service = null;
+    private final Map<WatchKey, Path> keys = new HashMap<>();
+
+    /**
+     * @param paths The files and directories given as arguments, only the
+     * directories are watched.
+     */
+    DirectoryWatcher(Iterable<Path> paths) {
+        try {
+            for (var path : paths) {
+                if (Files.isDirectory(path)) {
+                    if (service == null) {
+                        service = path.getFileSystem().newWatchService();
+                    }
+                    registerTree(path);
+                }
+            }
+        } catch (IOException | UnsupportedOperationException ex) {
+            close();
+        }
+    }
+
+    private void registerTree(Path directory) throws IOException {
+        try (var stream = Files.walk(directory, FileVisitOption.FOLLOW_LINKS)) {
+            for (var path : (Iterable<Path>) stream.filter(Files::isDirectory)::iterator) {
+                keys.put(path.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE), path);
+            }
+        }
+    }
+
+    /**
+     * Find the RPM files as the validation does.
+     * @param paths The files and directories given as arguments.
+     * @return The RPM files found.
+     * @throws IOException If reading the attributes of a file failed.
+     */
+    static Scan scan(Iterable<Path> paths) throws IOException {
+        var complete = new TreeMap<Path, FileState>();
+        int incomplete = 0;
+        var it = ArgFileIterator.create(paths);
+        while (it.hasNext()) {
+            var path = it.nextPath();
+            try {
+                if (!RpmHeader.read(path).isComplete()) {
+                    ++incomplete;
+                    continue;
+                }
+            } catch (NoSuchFileException ex) {
+                // Removed or renamed since it was found
+                continue;
+            } catch (IOException ex) {
+                // Not even the header was written yet
+                ++incomplete;
+                continue;
+            }
+            var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            complete.put(path, new FileState(attributes.size(), attributes.lastModifiedTime()));
+        }
+        return new Scan(complete, incomplete);
+    }
+
+    /**
+     * @param previous The complete RPM files of the previous scan.
+     * @param current The complete RPM files of the current scan.
+     * @return The RPM files which are new or were written again since the
+     * previous scan, in the order of the current scan.
+     */
+    static List<Path> changed(Map<Path, FileState> previous, Map<Path, FileState> current) {
+        var result = new ArrayList<Path>();
+        for (var entry : current.entrySet()) {
+            if (!entry.getValue().equals(previous.get(entry.getKey()))) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Whether the directories are polled instead of being watched.
+     */
+    boolean isPolling() {
+        return service == null;
+    }
+
+    /**
+     * Wait until a file in the directories changes or the timeout elapses.
+     * @param timeoutMillis The timeout.
+     * @return Whether a change was noticed, always false when polling.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    boolean await(long timeoutMillis) throws InterruptedException {
+        if (service == null) {
+            Thread.sleep(timeoutMillis);
+            return false;
+        }
+        var key = service.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        if (key == null) {
+            return false;
+        }
+        // Collect all pending events, a file being written produces many
+        while (key != null) {
+            var directory = keys.get(key);
+            for (var event : key.pollEvents()) {
+                if (directory != null && event.context() instanceof Path name
+                        && Files.isDirectory(directory.resolve(name))) {
+                    try {
+                        registerTree(directory.resolve(name));
+                    } catch (IOException ex) {
+                        // The directory is scanned anyway, only its changes
+                        // are noticed later
+                    }
+                }
+            }
+            if (!key.reset()) {
+                keys.remove(key);
+            }
+            key = service.poll();
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        if (service != null) {
+            try {
+                service.close();
+            } catch (IOException ex) {
+                // Nothing is watched anymore
+            }
+            service = null;
+        }
+        keys.clear();
+    }
+}
@@ -0,0 +1,102 @@
+package org.fedoraproject.javapackages.validator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.fedoraproject.javapackages.validator.util.PayloadFacts;
+
+import io.kojan.javadeptools.rpm.RpmPackage;
+
+/**
+ * Payload index stored in a directory, with one file per RPM package named by
+ * the digest of its main header. Unchanged RPM files are therefore recognized
+ * regardless of their location.
+ */
+class DiskPayloadIndex implements PayloadIndex {
+    private final Path directory;
+    private final Map<Path, String> digests = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<PayloadFacts>> extracting = new ConcurrentHashMap<>();
+
+    DiskPayloadIndex(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    private String digest(RpmPackage rpm) {
+        return digests.computeIfAbsent(rpm.getPath(), path -> {
+            try {
+                return RpmHeaderDigest.compute(path);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+    }
+
+    private static PayloadFacts read(Path path) throws IOException {
+        try (var is = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            return PayloadFacts.read(is);
+        }
+    }
+
+    private static void write(Path path, PayloadFacts facts) throws IOException {
+        var tmp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (var os = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                facts.write(os);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Override
+    public PayloadFacts get(RpmPackage rpm) throws Exception {
+        var digest = digest(rpm);
+        var path = directory.resolve(digest + ".facts");
+
+        if (Files.isRegularFile(path)) {
+            var facts = read(path);
+            if (facts != null) {
+                return facts;
+            }
+        }
+
+        // Only one thread extracts the facts of an RPM package, other threads
+        // requesting the same package wait for the result
+        var future = new CompletableFuture<PayloadFacts>();
+        var running = extracting.putIfAbsent(digest, future);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof Exception cause) {
+                    throw cause;
+                }
+                throw ex;
+            }
+        }
+
+        try {
+            var facts = PayloadFacts.extract(rpm);
+            write(path, facts);
+            future.complete(facts);
+            return facts;
+        } catch (Exception ex) {
+            future.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            extracting.remove(digest);
+        }
+    }
+}
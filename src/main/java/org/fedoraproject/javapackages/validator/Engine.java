@@ -0,0 +1,280 @@
+package org.fedoraproject.javapackages.validator;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+import org.fedoraproject.javapackages.validator.spi.Validator;
+
+/**
+ * Validation embedded in another application, such as a build tool plugin,
+ * without the command line. The engine keeps no global state, several
+ * validations can run at once in the same process. Each run discovers the
+ * validators anew, or runs the validators supplied by the configuration.
+ * <pre>
+ * var results = new Engine(new Engine.Configuration()
+ *         .file(Path.of("rpms"))
+ *         .factory(DefaultValidatorFactory.class.getName())
+ *         .test("/java/bytecode-version", List.of("-", "17")))
+ *         .run(result -&gt; System.out.println(result.getTestName() + ": " + result.getResult()));
+ * </pre>
+ */
+public class Engine {
+    /**
+     * The configuration of a validation, corresponding to the command line
+     * options of {@link Main}.
+     */
+    public static class Configuration {
+        private final List<Path> files = new ArrayList<>();
+        private final Map<String, Optional<List<String>>> tests = new LinkedHashMap<>();
+        private final List<String> factories = new ArrayList<>();
+        private final List<Validator> validators = new ArrayList<>();
+        private final List<Path> classPaths = new ArrayList<>();
+        private Path sourcePath = null;
+        private Path outputDirectory = null;
+        private Path classCache = null;
+        private boolean failFast = false;
+        private int maxFailures = 0;
+        private Path deltaDirectory = null;
+        private Path cacheDirectory = null;
+        private boolean groupBySource = false;
+        private long maxRpmBytes = 0;
+        private long maxPayloadBytes = 0;
+        private int threads = 0;
+        private PrintStream debugOutputStream = null;
+
+        /**
+         * @param file An RPM file or a directory searched for RPM files.
+         * @return This configuration.
+         */
+        public Configuration file(Path file) {
+            files.add(file);
+            return this;
+        }
+
+        /**
+         * Select a test, all tests run when none is selected.
+         * @param testName The name of the test.
+         * @return This configuration.
+         */
+        public Configuration test(String testName) {
+            tests.put(testName, Optional.empty());
+            return this;
+        }
+
+        /**
+         * @param testName The name of the test.
+         * @param args The arguments of the test.
+         * @return This configuration.
+         */
+        public Configuration test(String testName, List<String> args) {
+            tests.put(testName, Optional.of(List.copyOf(args)));
+            return this;
+        }
+
+        /**
+         * Restrict the discovery to a factory, validators of all factories are
+         * discovered when none is given.
+         * @param factoryClass The fully qualified name of a
+         * {@code ValidatorFactory}.
+         * @return This configuration.
+         */
+        public Configuration factory(String factoryClass) {
+            factories.add(factoryClass);
+            return this;
+        }
+
+        /**
+         * Run the given validator instead of discovering the validators. A
+         * validator instance holds its results and must not be used by more
+         * than one run.
+         * @param validator The validator.
+         * @return This configuration.
+         */
+        public Configuration validator(Validator validator) {
+            validators.add(validator);
+            return this;
+        }
+
+        /**
+         * @param sourcePath A source file or directory of validators to compile.
+         * @return This configuration.
+         */
+        public Configuration sourcePath(Path sourcePath) {
+            this.sourcePath = sourcePath;
+            return this;
+        }
+
+        /**
+         * @param outputDirectory The output directory of the compiled
+         * validators, they are compiled in memory if not given.
+         * @return This configuration.
+         */
+        public Configuration outputDirectory(Path outputDirectory) {
+            this.outputDirectory = outputDirectory;
+            return this;
+        }
+
+        /**
+         * @param classPath An additional class path entry of the validators.
+         * @return This configuration.
+         */
+        public Configuration classPath(Path classPath) {
+            classPaths.add(classPath);
+            return this;
+        }
+
+        /**
+         * @param classCache The file caching the classes compiled in memory.
+         * @return This configuration.
+         */
+        public Configuration classCache(Path classCache) {
+            this.classCache = classCache;
+            return this;
+        }
+
+        /**
+         * @param failFast Whether to stop all tests after the first failure.
+         * @return This configuration.
+         */
+        public Configuration failFast(boolean failFast) {
+            this.failFast = failFast;
+            return this;
+        }
+
+        /**
+         * @param maxFailures The number of failures after which each test
+         * stops, 0 means unlimited.
+         * @return This configuration.
+         */
+        public Configuration maxFailures(int maxFailures) {
+            this.maxFailures = maxFailures;
+            return this;
+        }
+
+        /**
+         * @param deltaDirectory The directory storing the results of the
+         * previous run for delta validation.
+         * @return This configuration.
+         */
+        public Configuration deltaDirectory(Path deltaDirectory) {
+            this.deltaDirectory = deltaDirectory;
+            return this;
+        }
+
+        /**
+         * @param cacheDirectory The directory storing facts extracted from
+         * payloads for the next runs.
+         * @return This configuration.
+         */
+        public Configuration cacheDirectory(Path cacheDirectory) {
+            this.cacheDirectory = cacheDirectory;
+            return this;
+        }
+
+        /**
+         * @param groupBySource Whether to validate the RPM files of one source
+         * package at a time.
+         * @return This configuration.
+         */
+        public Configuration groupBySource(boolean groupBySource) {
+            this.groupBySource = groupBySource;
+            return this;
+        }
+
+        /**
+         * @param maxRpmBytes The maximum total size of the RPM files processed
+         * at once, 0 derives it from the available memory.
+         * @return This configuration.
+         */
+        public Configuration maxRpmBytes(long maxRpmBytes) {
+            this.maxRpmBytes = maxRpmBytes;
+            return this;
+        }
+
+        /**
+         * @param maxPayloadBytes The maximum total size of the uncompressed
+         * payloads processed at once, 0 derives it from the available memory.
+         * @return This configuration.
+         */
+        public Configuration maxPayloadBytes(long maxPayloadBytes) {
+            this.maxPayloadBytes = maxPayloadBytes;
+            return this;
+        }
+
+        /**
+         * @param threads The number of tests run in parallel, 0 means the
+         * number of available CPUs.
+         * @return This configuration.
+         */
+        public Configuration threads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * @param debugOutputStream The stream receiving debugging output and
+         * warnings, none is written if null.
+         * @return This configuration.
+         */
+        public Configuration debugOutputStream(PrintStream debugOutputStream) {
+            this.debugOutputStream = debugOutputStream;
+            return this;
+        }
+
+        private Main.Parameters toParameters() {
+            var parameters = new Main.Parameters();
+            parameters.argPaths = new ArrayList<>(files);
+            parameters.validatorArgs = new LinkedHashMap<>(tests);
+            parameters.factories = new TreeSet<>(factories);
+            parameters.classPaths = new ArrayList<>(classPaths);
+            parameters.sourcePath = sourcePath;
+            parameters.outputDir = outputDirectory;
+            parameters.classCache = classCache;
+            parameters.failFast = failFast;
+            parameters.maxFailures = maxFailures;
+            parameters.deltaDir = deltaDirectory;
+            parameters.cacheDir = cacheDirectory;
+            parameters.groupBySource = groupBySource;
+            parameters.maxRpmBytes = maxRpmBytes;
+            parameters.maxPayloadBytes = maxPayloadBytes;
+            parameters.threads = threads;
+            return parameters;
+        }
+    }
+
+    private final Configuration configuration;
+
+    public Engine(Configuration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * Run the validation.
+     * @param listener Receives the result of each test as soon as the test
+     * finishes, it may be called from several threads at once.
+     * @return The results of all tests.
+     * @throws Exception If the validation could not run, for example when
+     * compiling the validators failed or a selected test was not found.
+     */
+    public List<NamedResult> run(Consumer<? super NamedResult> listener) throws Exception {
+        // Each run has its own state, the configuration is copied
+        return new Main().run(configuration.toParameters(), configuration.debugOutputStream,
+                List.copyOf(configuration.validators), listener::accept);
+    }
+
+    /**
+     * Run the validation.
+     * @return The results of all tests.
+     * @throws Exception If the validation could not run.
+     */
+    public List<NamedResult> run() throws Exception {
+        return run(result -> {});
+    }
+}
@@ -0,0 +1,189 @@
+package org.fedoraproject.javapackages.validator;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.ToLongFunction;
+
+import io.kojan.javadeptools.rpm.RpmPackage;
+
+/**
+ * Facts derived from RPM packages shared by all validators during a run, such
+ * as parsed manifests or Maven metadata. A fact is identified by the RPM
+ * package, the payload entry it was derived from and its type. Each fact is
+ * computed at most once at a time, validators requesting a fact which is
+ * being computed by another validator wait for its value.
+ * <p>
+ * The store holds the facts within a memory budget, estimated by the weigher
+ * of the type of each fact. When the budget is exceeded, the least recently
+ * used facts are evicted and computed again when they are requested later.
+ * A computation must not request the fact it computes.
+ */
+public class FactStore {
+    // Estimated size of the key and the map entry of a fact
+    private static final long ENTRY_WEIGHT = 128;
+
+    /**
+     * The type of a fact. Types are compared by identity, validators sharing
+     * a fact need to use the same instance, usually a constant.
+     * @param <T> The type of the values of the fact.
+     */
+    public static final class Type<T> {
+        private final String name;
+        private final ToLongFunction<? super T> weigher;
+
+        /**
+         * @param name The name of the type, used only for debugging.
+         * @param weigher The estimate of the memory used by a value in bytes.
+         */
+        public Type(String name, ToLongFunction<? super T> weigher) {
+            this.name = name;
+            this.weigher = weigher;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * @param hits The number of requests for facts which were already known or
+     * being computed.
+     * @param misses The number of computed facts.
+     * @param evictions The number of facts evicted to stay within the budget.
+     */
+    public static record Statistics(long hits, long misses, long evictions) {
+    }
+
+    private static record Key(Path rpm, String entry, Type<?> type) {
+    }
+
+    private static final class Fact {
+        final CompletableFuture<Object> value = new CompletableFuture<>();
+        long weight = 0;
+    }
+
+    private final long maxWeight;
+    private final LinkedHashMap<Key, Fact> facts = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * @param maxWeight The memory budget in bytes.
+     */
+    public FactStore(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * @param <T> The type of the value.
+     * @param rpm The RPM package.
+     * @param entry The name of the payload entry as stored in the payload, an
+     * empty string for facts about the whole RPM package.
+     * @param type The type of the fact.
+     * @param computation Computes the value of the fact when it is not known.
+     * @return The value of the fact.
+     * @throws Exception If the computation failed, also in the validators
+     * which waited for it.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(RpmPackage rpm, String entry, Type<T> type, Callable<T> computation) throws Exception {
+        var key = new Key(rpm.getPath(), entry, type);
+        Fact fact;
+        Fact running;
+        synchronized (this) {
+            running = facts.get(key);
+            if (running != null) {
+                ++hits;
+                fact = null;
+            } else {
+                ++misses;
+                fact = new Fact();
+                facts.put(key, fact);
+            }
+        }
+
+        if (running != null) {
+            try {
+                return (T) running.value.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof Exception cause) {
+                    throw cause;
+                }
+                throw ex;
+            }
+        }
+
+        T value;
+        try {
+            value = computation.call();
+        } catch (Exception | Error ex) {
+            // Failed computations are not kept, the next request retries
+            synchronized (this) {
+                facts.remove(key, fact);
+            }
+            fact.value.completeExceptionally(ex);
+            throw ex;
+        }
+        fact.value.complete(value);
+
+        synchronized (this) {
+            if (facts.get(key) == fact) {
+                fact.weight = ENTRY_WEIGHT + (value != null ? type.weigher.applyAsLong(value) : 0);
+                weight += fact.weight;
+                evict();
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Store a fact computed outside of the store, replacing the previous value
+     * unless it is being computed.
+     * @param <T> The type of the value.
+     * @param rpm The RPM package.
+     * @param entry The name of the payload entry as stored in the payload.
+     * @param type The type of the fact.
+     * @param value The value of the fact.
+     */
+    public <T> void put(RpmPackage rpm, String entry, Type<T> type, T value) {
+        var key = new Key(rpm.getPath(), entry, type);
+        var fact = new Fact();
+        fact.value.complete(value);
+        fact.weight = ENTRY_WEIGHT + (value != null ? type.weigher.applyAsLong(value) : 0);
+        synchronized (this) {
+            var previous = facts.get(key);
+            if (previous != null && !previous.value.isDone()) {
+                return;
+            }
+            if (previous != null) {
+                weight -= previous.weight;
+            }
+            facts.put(key, fact);
+            weight += fact.weight;
+            evict();
+        }
+    }
+
+    private void evict() {
+        var it = facts.values().iterator();
+        while (weight > maxWeight && it.hasNext()) {
+            var fact = it.next();
+            // Facts being computed have no weight yet and stay
+            if (fact.value.isDone()) {
+                it.remove();
+                weight -= fact.weight;
+                ++evictions;
+            }
+        }
+    }
+
+    public synchronized Statistics getStatistics() {
+        return new Statistics(hits, misses, evictions);
+    }
+}
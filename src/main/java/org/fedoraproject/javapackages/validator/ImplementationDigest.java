@@ -0,0 +1,117 @@
+package org.fedoraproject.javapackages.validator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Computes digests identifying the implementation of validator classes, so
+ * that cached results are not reused after the implementation changed.
+ * <p>
+ * Classes compiled in memory are identified by all compiled resources, classes
+ * loaded from a JAR file or a directory by the content of the JAR file or of
+ * all files in the directory. Digests of JAR files and directories are computed
+ * once and shared by all classes loaded from them.
+ */
+class ImplementationDigest {
+    private final Map<Path, String> locations = new ConcurrentHashMap<>();
+
+    /**
+     * @param cls The validator class.
+     * @return Hexadecimal SHA-256 digest of the implementation of the class.
+     * @throws IOException If the implementation could not be read.
+     */
+    public String compute(Class<?> cls) throws IOException {
+        if (cls.getClassLoader() instanceof MemoryClassLoader loader) {
+            return digest(os -> {
+                for (var entry : new TreeMap<>(loader.getResources()).entrySet()) {
+                    update(os, entry.getKey(), entry.getValue());
+                }
+            });
+        }
+
+        var location = getLocation(cls);
+        if (location != null && (Files.isRegularFile(location) || Files.isDirectory(location))) {
+            var result = locations.get(location);
+            if (result == null) {
+                result = digestLocation(location);
+                locations.put(location, result);
+            }
+            return result;
+        }
+
+        // Unknown origin, use the class files of the class and its superclasses
+        return digest(os -> {
+            for (var c = cls; c != null && c.getClassLoader() != null; c = c.getSuperclass()) {
+                var name = c.getName().replace('.', '/') + ".class";
+                try (var is = c.getClassLoader().getResourceAsStream(name)) {
+                    if (is != null) {
+                        update(os, name, is.readAllBytes());
+                    }
+                }
+            }
+        });
+    }
+
+    private static Path getLocation(Class<?> cls) {
+        var source = cls.getProtectionDomain().getCodeSource();
+        if (source == null || source.getLocation() == null || !"file".equals(source.getLocation().getProtocol())) {
+            return null;
+        }
+        try {
+            return Path.of(source.getLocation().toURI());
+        } catch (URISyntaxException | IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    private static String digestLocation(Path location) throws IOException {
+        if (Files.isRegularFile(location)) {
+            return digest(os -> {
+                try (var is = Files.newInputStream(location)) {
+                    is.transferTo(os);
+                }
+            });
+        }
+        return digest(os -> {
+            try (var files = Files.walk(location)) {
+                for (var file : files.filter(Files::isRegularFile).sorted().toList()) {
+                    update(os, location.relativize(file).toString(), Files.readAllBytes(file));
+                }
+            }
+        });
+    }
+
+    private static void update(OutputStream os, String name, byte[] content) throws IOException {
+        os.write(name.getBytes(StandardCharsets.UTF_8));
+        os.write(0);
+        os.write(content);
+    }
+
+    private static interface DigestWriter {
+        void write(OutputStream os) throws IOException;
+    }
+
+    private static String digest(DigestWriter writer) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+        try (var os = new DigestOutputStream(OutputStream.nullOutputStream(), digest)) {
+            writer.write(os);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -0,0 +1,191 @@
+package org.fedoraproject.javapackages.validator;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON support for the records written and read by the validator.
+ * Objects are parsed as {@link Map}, arrays as {@link List}, numbers as
+ * {@link Long} or {@link Double}.
+ */
+class Json {
+    private final String text;
+    private int pos = 0;
+
+    private Json(String text) {
+        this.text = text;
+    }
+
+    static StringBuilder appendString(StringBuilder result, String value) {
+        result.append('"');
+        for (int i = 0; i != value.length(); ++i) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> result.append("\\\"");
+                case '\\' -> result.append("\\\\");
+                case '\n' -> result.append("\\n");
+                case '\r' -> result.append("\\r");
+                case '\t' -> result.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        result.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        result.append(c);
+                    }
+                }
+            }
+        }
+        return result.append('"');
+    }
+
+    /**
+     * @param text A JSON value.
+     * @return The parsed value.
+     * @throws IllegalArgumentException If the text is not valid JSON.
+     */
+    static Object parse(String text) {
+        var parser = new Json(text);
+        var result = parser.value();
+        parser.skipWhitespace();
+        if (parser.pos != text.length()) {
+            throw parser.error("Unexpected trailing characters");
+        }
+        return result;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + pos + " of JSON: " + text);
+    }
+
+    private void skipWhitespace() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            ++pos;
+        }
+    }
+
+    private void expect(char c) {
+        skipWhitespace();
+        if (pos == text.length() || text.charAt(pos) != c) {
+            throw error("Expected '" + c + "'");
+        }
+        ++pos;
+    }
+
+    private boolean consume(char c) {
+        skipWhitespace();
+        if (pos < text.length() && text.charAt(pos) == c) {
+            ++pos;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean consume(String literal) {
+        if (text.startsWith(literal, pos)) {
+            pos += literal.length();
+            return true;
+        }
+        return false;
+    }
+
+    private Object value() {
+        skipWhitespace();
+        if (pos == text.length()) {
+            throw error("Unexpected end");
+        }
+        char c = text.charAt(pos);
+        if (c == '{') {
+            ++pos;
+            var result = new LinkedHashMap<String, Object>();
+            if (!consume('}')) {
+                do {
+                    skipWhitespace();
+                    var key = string();
+                    expect(':');
+                    result.put(key, value());
+                } while (consume(','));
+                expect('}');
+            }
+            return result;
+        } else if (c == '[') {
+            ++pos;
+            var result = new ArrayList<Object>();
+            if (!consume(']')) {
+                do {
+                    result.add(value());
+                } while (consume(','));
+                expect(']');
+            }
+            return result;
+        } else if (c == '"') {
+            return string();
+        } else if (consume("true")) {
+            return Boolean.TRUE;
+        } else if (consume("false")) {
+            return Boolean.FALSE;
+        } else if (consume("null")) {
+            return null;
+        }
+        return number();
+    }
+
+    private String string() {
+        if (pos == text.length() || text.charAt(pos) != '"') {
+            throw error("Expected string");
+        }
+        ++pos;
+        var result = new StringBuilder();
+        while (true) {
+            if (pos == text.length()) {
+                throw error("Unterminated string");
+            }
+            char c = text.charAt(pos++);
+            if (c == '"') {
+                return result.toString();
+            } else if (c != '\\') {
+                result.append(c);
+                continue;
+            }
+            if (pos == text.length()) {
+                throw error("Unterminated string");
+            }
+            c = text.charAt(pos++);
+            switch (c) {
+                case 'b' -> result.append('\b');
+                case 'f' -> result.append('\f');
+                case 'n' -> result.append('\n');
+                case 'r' -> result.append('\r');
+                case 't' -> result.append('\t');
+                case 'u' -> {
+                    if (pos + 4 > text.length()) {
+                        throw error("Invalid escape");
+                    }
+                    result.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                    pos += 4;
+                }
+                default -> result.append(c);
+            }
+        }
+    }
+
+    private Object number() {
+        int start = pos;
+        while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) != -1) {
+            ++pos;
+        }
+        var number = text.substring(start, pos);
+        if (number.isEmpty()) {
+            throw error("Unexpected character");
+        }
+        try {
+            if (number.contains(".") || number.contains("e") || number.contains("E")) {
+                return Double.valueOf(number);
+            }
+            return Long.valueOf(number);
+        } catch (NumberFormatException ex) {
+            throw error("Invalid number");
+        }
+    }
+}
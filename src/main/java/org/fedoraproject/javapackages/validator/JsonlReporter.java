@@ -0,0 +1,275 @@
+package org.fedoraproject.javapackages.validator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import org.fedoraproject.javapackages.validator.spi.Decorated;
+import org.fedoraproject.javapackages.validator.spi.Decoration;
+import org.fedoraproject.javapackages.validator.spi.LogEntry;
+import org.fedoraproject.javapackages.validator.spi.LogEvent;
+import org.fedoraproject.javapackages.validator.spi.TestResult;
+
+import io.kojan.javadeptools.rpm.RpmInfo;
+import io.kojan.javadeptools.rpm.RpmPackage;
+
+/**
+ * Reporter writing the results as JSON Lines, one record per line. Log
+ * entries are written as soon as they are produced, they are not kept in
+ * memory. Records are of three types:
+ * <ul>
+ * <li>{@code entry} - a single log entry of a test,
+ * <li>{@code result} - the result of a test, written after all its entries,
+ * <li>{@code summary} - the last record, with counts of results and entries
+ * and the waits of the admission control.
+ * </ul>
+ * The output can be merged in the same way as the shard result files.
+ */
+class JsonlReporter {
+    private final PrintStream out;
+    private final boolean debug;
+    private final Map<LogEvent, Integer> entryCounts = new EnumMap<>(LogEvent.class);
+    private final Map<TestResult, Integer> resultCounts = new EnumMap<>(TestResult.class);
+    private AdmissionController.Statistics admissionStatistics = null;
+
+    /**
+     * @param out The output stream.
+     * @param debug Whether to write debug entries.
+     */
+    JsonlReporter(PrintStream out, boolean debug) {
+        this.out = out;
+        this.debug = debug;
+    }
+
+    private static void appendTime(StringBuilder record, String key, LocalDateTime time) {
+        if (time != null) {
+            record.append(",\"").append(key).append("\":");
+            Json.appendString(record, time.toString());
+        }
+    }
+
+    private static void appendDecorated(StringBuilder record, Decorated decorated) {
+        record.append("{\"value\":");
+        Json.appendString(record, Objects.toString(decorated.getObject()));
+        var decoration = decorated.getDecoration();
+        if (decoration.color().isPresent()) {
+            record.append(",\"color\":\"").append(decoration.color().get()).append('"');
+            if (decoration.modifiers().length != 0) {
+                record.append(",\"modifiers\":[");
+                for (int i = 0; i != decoration.modifiers().length; ++i) {
+                    record.append(i == 0 ? "\"" : ",\"").append(decoration.modifiers()[i]).append('"');
+                }
+                record.append(']');
+            }
+        }
+        record.append('}');
+    }
+
+    /**
+     * Write a log entry of a test. Thread-safe.
+     * @param testName The test name.
+     * @param entry The log entry.
+     */
+    void entry(String testName, LogEntry entry) {
+        if (LogEvent.debug.equals(entry.kind()) && !debug) {
+            return;
+        }
+        var record = new StringBuilder(256);
+        record.append("{\"type\":\"entry\",\"test\":");
+        Json.appendString(record, testName);
+        record.append(",\"kind\":\"").append(entry.kind()).append("\",\"pattern\":");
+        Json.appendString(record, entry.pattern());
+        record.append(",\"objects\":[");
+        String rpm = null;
+        for (int i = 0; i != entry.objects().length; ++i) {
+            var object = entry.objects()[i];
+            if (i != 0) {
+                record.append(',');
+            }
+            appendDecorated(record, object);
+            if (rpm == null && (object.getObject() instanceof RpmPackage || object.getObject() instanceof RpmInfo)) {
+                rpm = Objects.toString(object.getObject());
+            }
+        }
+        record.append(']');
+        if (rpm != null) {
+            record.append(",\"rpm\":");
+            Json.appendString(record, rpm);
+        }
+        record.append('}');
+        synchronized (this) {
+            entryCounts.merge(entry.kind(), 1, Integer::sum);
+            out.println(record);
+        }
+    }
+
+    /**
+     * Write the remaining log entries held by a result, followed by the
+     * result record. Thread-safe.
+     * @param result The result of a test.
+     * @param partial The partial index of a {@link MergeableValidator} or null.
+     */
+    void result(NamedResult result, List<String> partial) {
+        for (var entry : result) {
+            entry(result.getTestName(), entry);
+        }
+        var record = new StringBuilder(128);
+        record.append("{\"type\":\"result\",\"test\":");
+        Json.appendString(record, result.getTestName());
+        record.append(",\"result\":\"").append(result.getResult()).append('"');
+        appendTime(record, "start", result.getStartTime());
+        appendTime(record, "end", result.getEndTime());
+        if (partial != null) {
+            record.append(",\"partial\":[");
+            for (int i = 0; i != partial.size(); ++i) {
+                if (i != 0) {
+                    record.append(',');
+                }
+                Json.appendString(record, partial.get(i));
+            }
+            record.append(']');
+        }
+        record.append('}');
+        synchronized (this) {
+            resultCounts.merge(result.getResult(), 1, Integer::sum);
+            out.println(record);
+            out.flush();
+        }
+    }
+
+    /**
+     * Set the statistics of the admission controller to include in the
+     * summary record.
+     * @param admissionStatistics The statistics or null if the run did not
+     * use an admission controller.
+     */
+    synchronized void setAdmissionStatistics(AdmissionController.Statistics admissionStatistics) {
+        this.admissionStatistics = admissionStatistics;
+    }
+
+    /**
+     * Write the summary record.
+     * @return The exit code of the run.
+     */
+    synchronized int finish() {
+        int exitCode = 0;
+        if (entryCounts.getOrDefault(LogEvent.error, 0) != 0) {
+            exitCode = 2;
+        } else if (entryCounts.getOrDefault(LogEvent.fail, 0) != 0) {
+            exitCode = 1;
+        }
+
+        var record = new StringBuilder(256);
+        record.append("{\"type\":\"summary\",\"results\":{");
+        var separator = "";
+        for (var result : TestResult.values()) {
+            record.append(separator).append('"').append(result).append("\":").append(resultCounts.getOrDefault(result, 0));
+            separator = ",";
+        }
+        record.append("},\"entries\":{");
+        separator = "";
+        for (var kind : LogEvent.values()) {
+            record.append(separator).append('"').append(kind).append("\":").append(entryCounts.getOrDefault(kind, 0));
+            separator = ",";
+        }
+        record.append('}');
+        if (admissionStatistics != null) {
+            record.append(",\"admission\":{\"admitted\":").append(admissionStatistics.admitted())
+                    .append(",\"waits\":").append(admissionStatistics.waits())
+                    .append(",\"waitMillis\":").append(admissionStatistics.waitNanos() / 1000000)
+                    .append(",\"peakRpmBytes\":").append(admissionStatistics.peakFileBytes())
+                    .append(",\"peakPayloadBytes\":").append(admissionStatistics.peakPayloadBytes()).append('}');
+        }
+        record.append(",\"exitCode\":").append(exitCode).append('}');
+        out.println(record);
+        out.flush();
+        return exitCode;
+    }
+
+    /**
+     * @param path A file path.
+     * @return Whether the file starts with a JSON record.
+     * @throws IOException If reading fails.
+     */
+    static boolean isJsonl(Path path) throws IOException {
+        try (var is = Files.newInputStream(path)) {
+            return is.read() == '{';
+        }
+    }
+
+    private static Decorated readDecorated(Map<?, ?> object) {
+        var value = (String) object.get("value");
+        var color = (String) object.get("color");
+        if (color == null) {
+            return Decorated.plain(value);
+        }
+        var modifiers = Optional.ofNullable((List<?>) object.get("modifiers")).orElse(List.of()).stream()
+                .map(modifier -> Decoration.Modifier.valueOf((String) modifier)).toArray(Decoration.Modifier[]::new);
+        return Decorated.custom(value, new Decoration(Decoration.Color.valueOf(color), modifiers));
+    }
+
+    /**
+     * Read the results written by this reporter.
+     * @param path The file path.
+     * @return The results of the tests in the order of their result records.
+     * @throws IOException If reading fails or the file is malformed.
+     */
+    static List<ShardFile.Part> read(Path path) throws IOException {
+        var logs = new HashMap<String, List<LogEntry>>();
+        var result = new ArrayList<ShardFile.Part>();
+        try (var reader = new BufferedReader(new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8))) {
+            int lineNumber = 0;
+            for (String line; (line = reader.readLine()) != null;) {
+                ++lineNumber;
+                if (line.isBlank()) {
+                    continue;
+                }
+                Map<?, ?> record;
+                try {
+                    record = (Map<?, ?>) Json.parse(line);
+                } catch (IllegalArgumentException | ClassCastException ex) {
+                    throw new IOException("File " + path + ", line " + lineNumber + ": malformed record", ex);
+                }
+                var testName = (String) record.get("test");
+                switch (Objects.toString(record.get("type"))) {
+                    case "entry" -> {
+                        var objects = ((List<?>) record.get("objects")).stream()
+                                .map(object -> readDecorated((Map<?, ?>) object)).toArray(Decorated[]::new);
+                        var entry = ResultCodec.createEntry(LogEvent.valueOf((String) record.get("kind")),
+                                (String) record.get("pattern"), objects);
+                        logs.computeIfAbsent(testName, k -> new ArrayList<>()).add(entry);
+                    }
+                    case "result" -> {
+                        var start = (String) record.get("start");
+                        var end = (String) record.get("end");
+                        List<String> partial = null;
+                        if (record.get("partial") instanceof List<?> list) {
+                            partial = list.stream().map(String.class::cast).toList();
+                        }
+                        var log = Optional.ofNullable(logs.remove(testName)).orElse(List.of());
+                        result.add(new ShardFile.Part(testName,
+                                new ResultCache.Entry(TestResult.valueOf((String) record.get("result")), log),
+                                start != null ? LocalDateTime.parse(start) : null,
+                                end != null ? LocalDateTime.parse(end) : null, partial));
+                    }
+                    default -> {
+                        // Summary records are recomputed after merging
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
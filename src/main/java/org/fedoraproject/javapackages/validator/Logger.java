@@ -10,9 +10,13 @@ import org.fedoraproject.javapackages.validator.spi.LogEvent;
 
 class Logger {
     private EnumMap<LogEvent, PrintStream> streams = new EnumMap<>(LogEvent.class);
+    private final TextDecorator decorator;
 
-    public Logger() {
-        setStream(LogEvent.debug, Main.getDebugOutputStream());
+    public Logger(PrintStream debugOutputStream, TextDecorator decorator) {
+        this.decorator = decorator;
+        setStream(LogEvent.debug, debugOutputStream);
+        setStream(LogEvent.info, debugOutputStream);
+        setStream(LogEvent.warn, debugOutputStream);
     }
 
     public void setStream(LogEvent logEvent, PrintStream stream) {
@@ -20,12 +24,20 @@ class Logger {
     }
 
     private void log(LogEvent logEvent, String pattern, Decorated... arguments) {
-        streams.get(logEvent).append("[" + Main.decorate(logEvent.getDecorated()) + "] ")
-        .println(MessageFormat.format(pattern, Stream.of(arguments)
-                .map(a -> Main.decorate(a)).toArray()));
+        // A single call, so that lines logged by different threads do not interleave
+        streams.get(logEvent).println("[" + decorator.decorate(logEvent.getDecorated()) + "] "
+                + MessageFormat.format(pattern, Stream.of(arguments).map(a -> decorator.decorate(a)).toArray()));
     }
 
     public void debug(String pattern, Decorated... arguments) {
         log(LogEvent.debug, pattern, arguments);
     }
+
+    public void info(String pattern, Decorated... arguments) {
+        log(LogEvent.info, pattern, arguments);
+    }
+
+    public void warn(String pattern, Decorated... arguments) {
+        log(LogEvent.warn, pattern, arguments);
+    }
 }
@@ -2,11 +2,14 @@ package org.fedoraproject.javapackages.validator;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.charset.StandardCharsets;
@@ -14,6 +17,7 @@ import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
 import java.text.MessageFormat;
@@ -32,14 +36,25 @@ import java.util.ServiceLoader;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiPredicate;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import javax.tools.JavaFileManager;
+import javax.tools.StandardJavaFileManager;
 import javax.tools.ToolProvider;
 
-import org.apache.commons.compress.utils.Iterators;
 import org.apache.commons.io.FileUtils;
 import org.eclipse.aether.AbstractRepositoryListener;
 import org.eclipse.aether.RepositoryEvent;
@@ -57,31 +72,66 @@ import org.fedoraproject.javapackages.validator.spi.ResultBuilder;
 import org.fedoraproject.javapackages.validator.spi.TestResult;
 import org.fedoraproject.javapackages.validator.spi.Validator;
 import org.fedoraproject.javapackages.validator.spi.ValidatorFactory;
+import org.fedoraproject.javapackages.validator.util.PayloadNeeds;
+import org.fedoraproject.javapackages.validator.util.RpmFileName;
+import org.fedoraproject.javapackages.validator.util.RpmHeader;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.kojan.javadeptools.rpm.RpmPackage;
 
 public class Main {
-    static TextDecorator DECORATOR = TextDecorator.NO_DECORATOR;
-    static PrintStream debugOutputStream = new PrintStream(OutputStream.nullOutputStream(), false, StandardCharsets.UTF_8);
+    private static final long WATCH_POLL_MILLIS = 2000;
+
+    private TextDecorator decorator = TextDecorator.NO_DECORATOR;
+    private PrintStream debugOutputStream = new PrintStream(OutputStream.nullOutputStream(), false, StandardCharsets.UTF_8);
+    // Warnings and progress messages of the command line go to the standard error stream
+    private PrintStream messageOutputStream = System.err;
 
     protected Parameters parameters;
     protected Logger logger;
     protected Map<String, ResultBuilder> reports = new TreeMap<>();
-
-    protected static TextDecorator getDecorator() {
-        return DECORATOR;
+    private Map<String, List<String>> partials = new ConcurrentHashMap<>();
+    private JsonlReporter jsonlReporter = null;
+    private Batch batch = null;
+    private ClassLoader ownedClassLoader = null;
+    private Consumer<NamedResult> resultListener = null;
+    private List<Path> watchedFiles = null;
+    private Path watchDeltaDir = null;
+
+    protected TextDecorator getDecorator() {
+        return decorator;
     }
 
-    @SuppressFBWarnings({"MS_EXPOSE_REP"})
-    protected static PrintStream getDebugOutputStream() {
+    @SuppressFBWarnings({"EI_EXPOSE_REP"})
+    protected PrintStream getDebugOutputStream() {
         return debugOutputStream;
     }
 
+    /**
+     * Run as a job of a batch, sharing the class loaders of the validators and
+     * the thread pools with the other jobs.
+     */
+    void setBatch(Batch batch) {
+        this.batch = batch;
+    }
+
+    /**
+     * Run as a round of watch mode, validating the given RPM files instead of
+     * the path arguments. The delta cache skips the files which did not
+     * change since the previous round.
+     * @param files All complete RPM files found in the watched directories.
+     * @param deltaDir The directory storing the results of the previous round.
+     */
+    void setWatchRound(List<Path> files, Path deltaDir) {
+        this.watchedFiles = files;
+        this.watchDeltaDir = deltaDir;
+    }
+
     private static record Flag(String... options) {
         static final Flag SOURCE_PATH = new Flag("-sp", "--source-path");
         static final Flag OUTPUT_DIRECTORY = new Flag("-d");
         static final Flag CLASS_PATH = new Flag("-cp", "--class-path");
+        static final Flag CLASS_CACHE = new Flag("--class-cache");
 
         static final Flag FILE = new Flag("-f", "--file");
         // static final Flag URL = new Flag("-u", "--url");
@@ -89,6 +139,25 @@ public class Main {
         static final Flag HELP = new Flag("-h", "--help");
         static final Flag COLOR = new Flag("-r", "--color");
         static final Flag DEBUG = new Flag("-x", "--debug");
+        static final Flag FAIL_FAST = new Flag("--fail-fast");
+        static final Flag MAX_FAILURES = new Flag("--max-failures");
+        static final Flag DELTA = new Flag("--delta");
+        static final Flag CACHE_DIR = new Flag("--cache-dir");
+        static final Flag SHARD = new Flag("--shard");
+        static final Flag SHARD_OUTPUT = new Flag("--shard-output");
+        static final Flag MERGE = new Flag("--merge");
+        static final Flag CREATE_STARTUP_ARCHIVE = new Flag("--create-startup-archive");
+        static final Flag FORMAT = new Flag("--format");
+        static final Flag HTML_PAGE_SIZE = new Flag("--html-page-size");
+        static final Flag HTML_GZIP = new Flag("--html-gzip");
+        static final Flag VERIFY_HEADERS = new Flag("--verify-headers");
+        static final Flag GROUP_BY_SOURCE = new Flag("--group-by-source");
+        static final Flag MAX_RPM_BYTES = new Flag("--max-rpm-bytes");
+        static final Flag MAX_PAYLOAD_BYTES = new Flag("--max-payload-bytes");
+        static final Flag THREADS = new Flag("--threads");
+        static final Flag BATCH = new Flag("--batch");
+        static final Flag WATCH = new Flag("--watch");
+        static final Flag WATCH_IDLE = new Flag("--watch-idle");
 
         public boolean equals(String arg) {
             return Stream.of(options()).anyMatch(arg::equals);
@@ -100,7 +169,7 @@ public class Main {
         }
 
         static final Flag[] ALL_FLAGS = new Flag[] {
-            SOURCE_PATH, OUTPUT_DIRECTORY, CLASS_PATH, FILE, /*URL,*/ HELP, COLOR, DEBUG,
+            SOURCE_PATH, OUTPUT_DIRECTORY, CLASS_PATH, CLASS_CACHE, FILE, /*URL,*/ HELP, COLOR, DEBUG, FAIL_FAST, MAX_FAILURES, DELTA, CACHE_DIR, SHARD, SHARD_OUTPUT, MERGE, CREATE_STARTUP_ARCHIVE, FORMAT, HTML_PAGE_SIZE, HTML_GZIP, VERIFY_HEADERS, GROUP_BY_SOURCE, MAX_RPM_BYTES, MAX_PAYLOAD_BYTES, THREADS, BATCH, WATCH, WATCH_IDLE,
         };
     }
 
@@ -110,17 +179,45 @@ public class Main {
         System.out.println("    " + Flag.HELP + " - Print help message");
         System.out.println("    " + Flag.DEBUG + " - Display debugging output");
         System.out.println("    " + Flag.COLOR + " - Display colored output");
+        System.out.println("    " + Flag.FAIL_FAST + " - Stop all tests after the first failure or error");
+        System.out.println("    " + Flag.MAX_FAILURES + " - Stop each test after the specified number of failures");
+        System.out.println("    " + Flag.FORMAT + " - Output format, text (default) or jsonl");
+        System.out.println("    " + Flag.BATCH + " - Run the jobs listed in the specified YAML manifest in a single process, each job as a separate invocation would");
+        System.out.println("    " + Flag.CREATE_STARTUP_ARCHIVE + " - Run the validation as a training run and write a class data sharing archive to the specified file");
         System.out.println();
         System.out.println("Options for specifying validators:");
         System.out.println("    " + Flag.SOURCE_PATH + " - File path of a source file");
-        System.out.println("    " + Flag.OUTPUT_DIRECTORY + " - Output directory for the sources");
+        System.out.println("    " + Flag.OUTPUT_DIRECTORY + " - Output directory for the sources, the sources are compiled in memory if not specified");
         System.out.println("    " + Flag.CLASS_PATH + " - Additional class path entry");
+        System.out.println("    " + Flag.CLASS_CACHE + " - File caching the classes compiled in memory for the next run");
         System.out.println();
         System.out.println("Test names can be immediately followed by space-separated square parentheses");
         System.out.println("the contents of which will be passed as arguments to the test.");
         System.out.println();
         System.out.println("Options for specifying tested RPM files, can be specified multiple times:");
         System.out.println("    " + Flag.FILE + " - File path of an RPM file or a directory");
+        System.out.println("    " + Flag.VERIFY_HEADERS + " - Open all RPM files instead of skipping those whose file names no selected test accepts, warn about file names not matching the headers");
+        System.out.println();
+        System.out.println("Options for incremental validation:");
+        System.out.println("    " + Flag.DELTA + " - Directory storing results of the previous run, only new or changed RPM files are validated again");
+        System.out.println("    " + Flag.CACHE_DIR + " - Directory storing facts extracted from the payloads of RPM files for the next runs");
+        System.out.println("    " + Flag.WATCH + " - Keep watching the directories and validate again as soon as complete RPM files appear or change in them");
+        System.out.println("    " + Flag.WATCH_IDLE + " - Stop watching after no RPM file appeared or changed for the specified number of seconds");
+        System.out.println();
+        System.out.println("Options for limiting resources, by default derived from the memory and CPU limits of the container:");
+        System.out.println("    " + Flag.MAX_RPM_BYTES + " - Maximum total size of the RPM files processed at once, with an optional suffix K, M or G");
+        System.out.println("    " + Flag.MAX_PAYLOAD_BYTES + " - Maximum total uncompressed size of the payloads processed at once, with an optional suffix K, M or G");
+        System.out.println("    " + Flag.THREADS + " - Number of tests run in parallel");
+        System.out.println("    " + Flag.GROUP_BY_SOURCE + " - Validate the RPM files built from one source package at a time, all tests finish a source package before reading the next one");
+        System.out.println();
+        System.out.println("Options for sharded validation:");
+        System.out.println("    " + Flag.SHARD + " - Validate only the i-th of N partitions of the RPM files, specified as i/N");
+        System.out.println("    " + Flag.SHARD_OUTPUT + " - File to write the partial results of the shard to");
+        System.out.println("    " + Flag.MERGE + " - Partial results of a shard to merge instead of validating RPM files, can be specified multiple times");
+        System.out.println();
+        System.out.println("Options for HTML reports of tmt:");
+        System.out.println("    " + Flag.HTML_PAGE_SIZE + " - Maximum number of log entries on a page, larger logs are split into pages by their kind (default 10000)");
+        System.out.println("    " + Flag.HTML_GZIP + " - Also write gzip-compressed copies of the pages");
         // System.out.println("    " + Flag.URL + " - URL of an .rpm file");
 
     }
@@ -139,15 +236,30 @@ public class Main {
     	}
     }
 
-    protected static Object decorate(Decorated decorated) {
+    protected Object decorate(Decorated decorated) {
         return new Object() {
             @Override
             public String toString() {
-                return Main.getDecorator().decorate(decorated);
+                return getDecorator().decorate(decorated);
             }
         };
     }
 
+    /**
+     * @return The local repository for resolved dependencies. It is placed in
+     * the output directory, next to the class cache when compiling in memory
+     * or in the local repository of the user otherwise.
+     */
+    private Path localRepository() {
+        if (parameters.outputDir != null) {
+            return parameters.outputDir.resolve("local-repo");
+        }
+        if (parameters.classCache != null) {
+            return parameters.classCache.resolveSibling(parameters.classCache.getFileName() + ".local-repo");
+        }
+        return Paths.get(System.getProperty("user.home"), ".m2", "repository");
+    }
+
     private void resolveDependencies(Properties props) {
         var deps = props.getProperty("dependencies", "");
         if (deps.isBlank()) {
@@ -169,7 +281,7 @@ public class Main {
                 .collect(Collectors.toList());
         var aether = new RepositorySystemSupplier().get();
         try (var session = new SessionBuilderSupplier(aether).get()
-                .withLocalRepositoryBaseDirectories(parameters.outputDir.resolve("local-repo"))
+                .withLocalRepositoryBaseDirectories(localRepository())
                 .withRepositoryListener(new AbstractRepositoryListener() {
                     public void artifactResolved(RepositoryEvent event) {
                         logger.debug("Resolved dependency {0} from repository {1}",
@@ -186,11 +298,7 @@ public class Main {
         logger.debug("Class path after dependency resolution: {0}", Decorated.plain(parameters.classPaths));
     }
 
-    private void compileFiles() throws IOException {
-        var compilerOptions = new ArrayList<String>();
-        compilerOptions.add("-d");
-        compilerOptions.add(parameters.outputDir.toString());
-
+    private Properties loadCompilerProperties() throws IOException {
         var props = new Properties();
         var propsPath = parameters.sourcePath.resolve("javapackages-validator.properties");
         if (Files.isRegularFile(propsPath)) {
@@ -198,6 +306,47 @@ public class Main {
                 props.load(reader);
             }
         }
+        return props;
+    }
+
+    private void compileSources(Properties props, List<String> compilerOptions,
+            Function<StandardJavaFileManager, JavaFileManager> fileManagerWrapper) throws IOException {
+        var javac = ToolProvider.getSystemJavaCompiler();
+        var standardFileManager = javac.getStandardFileManager(null, Locale.ROOT, StandardCharsets.UTF_8);
+        var fileManager = fileManagerWrapper.apply(standardFileManager);
+
+        var sourceFiles = Files.find(parameters.sourcePath, Integer.MAX_VALUE, (path, attributes) ->
+            !attributes.isDirectory() && path.toString().endsWith(".java"), FileVisitOption.FOLLOW_LINKS
+        ).toList();
+        var compilationUnits = standardFileManager.getJavaFileObjectsFromPaths(sourceFiles);
+
+        logger.debug("Compiling source files: {0}", Decorated.plain(sourceFiles));
+
+        compilerOptions.add("--release");
+        compilerOptions.add(props.getProperty("compiler.release", "22"));
+
+        if (!parameters.classPaths.isEmpty()) {
+            compilerOptions.add("-cp");
+            compilerOptions.add(parameters.classPaths.stream().map(Path::toString).collect(Collectors.joining(":")));
+        }
+
+        try {
+            var output = new StringWriter();
+            new PrintWriter(output).println("Failed to compile sources:");
+            if (!javac.getTask(output, fileManager, null, compilerOptions, null, compilationUnits).call()) {
+                throw new RuntimeException(output.getBuffer().toString());
+            }
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    private void compileFiles() throws IOException {
+        var compilerOptions = new ArrayList<String>();
+        compilerOptions.add("-d");
+        compilerOptions.add(parameters.outputDir.toString());
+
+        var props = loadCompilerProperties();
 
         var sourceMtime = getRecursiveFileTime(parameters.sourcePath, (p, a) -> true).get();
 
@@ -231,36 +380,152 @@ public class Main {
         resolveDependencies(props);
 
         if (recompile) {
-            var javac = ToolProvider.getSystemJavaCompiler();
-            var fileManager = javac.getStandardFileManager(null, Locale.ROOT, StandardCharsets.UTF_8);
+            compileSources(props, compilerOptions, fileManager -> fileManager);
+        } else {
+            logger.debug("Not recompiling source files");
+        }
+    }
 
-            var sourceFiles = Files.find(parameters.sourcePath, Integer.MAX_VALUE, (path, attributes) ->
-                !attributes.isDirectory() && path.toString().endsWith(".java"), FileVisitOption.FOLLOW_LINKS
-            ).toList();
-            var compilationUnits = fileManager.getJavaFileObjectsFromPaths(sourceFiles);
+    /**
+     * @return The merged content of all service files on the source path.
+     */
+    private ByteArrayOutputStream readServiceFiles() throws IOException {
+        var serviceContent = new ByteArrayOutputStream(0);
+        for (var serviceFile : Files.find(parameters.sourcePath, Integer.MAX_VALUE,
+                (p, a) -> !a.isDirectory() && p.getFileName().equals(Paths.get(ValidatorFactory.class.getCanonicalName()))).toList()) {
+            try (var is = Files.newInputStream(serviceFile)) {
+                is.transferTo(serviceContent);
+            }
+        }
+        return serviceContent;
+    }
 
-            logger.debug("Compiling source files: {0}", Decorated.plain(sourceFiles));
+    private void writeServiceFile() throws IOException {
+        var serviceContent = readServiceFiles();
+        if (serviceContent.size() != 0) {
+            var serviceOutFile = Files.createDirectories(parameters.outputDir
+                    .resolve("META-INF").resolve("services")).resolve(ValidatorFactory.class.getCanonicalName());
+            try (var os = Files.newOutputStream(serviceOutFile)) {
+                new ByteArrayInputStream(serviceContent.toByteArray()).transferTo(os);
+            }
+        }
+    }
 
-            compilerOptions.add("--release");
-            compilerOptions.add(props.getProperty("compiler.release", "22"));
+    /**
+     * Compile the source files without an output directory, the class files
+     * and the merged service file are kept in memory.
+     * @return Class files and other resources mapped by their resource names.
+     */
+    private Map<String, byte[]> compileInMemory() throws IOException {
+        var props = loadCompilerProperties();
+        resolveDependencies(props);
 
-            if (!parameters.classPaths.isEmpty()) {
-                compilerOptions.add("-cp");
-                compilerOptions.add(parameters.classPaths.stream().map(Path::toString).collect(Collectors.joining(":")));
+        String fingerprint = null;
+        if (parameters.classCache != null) {
+            var fingerprintPaths = new ArrayList<Path>();
+            fingerprintPaths.add(parameters.sourcePath);
+            fingerprintPaths.addAll(parameters.classPaths);
+            fingerprint = TestIndex.fingerprint(fingerprintPaths, List.of());
+            var cached = MemoryClassLoader.readCache(parameters.classCache, fingerprint);
+            if (cached.isPresent()) {
+                logger.debug("Not recompiling source files, using class cache {0}", Decorated.actual(parameters.classCache));
+                return cached.get();
             }
+        }
 
-            try {
-                var output = new StringWriter();
-                new PrintWriter(output).println("Failed to compile sources:");
-                if (!javac.getTask(output, fileManager, null, compilerOptions, null, compilationUnits).call()) {
-                    throw new RuntimeException(output.getBuffer().toString());
-                }
-            } finally {
-                fileManager.close();
+        var resources = new TreeMap<String, byte[]>();
+        compileSources(props, new ArrayList<>(), fileManager -> new MemoryFileManager(fileManager, resources));
+
+        var serviceContent = readServiceFiles();
+        if (serviceContent.size() != 0) {
+            resources.put("META-INF/services/" + ValidatorFactory.class.getCanonicalName(), serviceContent.toByteArray());
+        }
+
+        logger.debug("Compiled {0} classes in memory", Decorated.plain(resources.keySet().stream().filter(name -> name.endsWith(".class")).count()));
+
+        if (parameters.classCache != null) {
+            logger.debug("Writing class cache {0}", Decorated.actual(parameters.classCache));
+            MemoryClassLoader.writeCache(parameters.classCache, fingerprint, resources);
+        }
+
+        return resources;
+    }
+
+    /**
+     * Class data sharing archives only classes loaded by custom class loaders
+     * from JAR files, therefore the compiled classes are packaged into a JAR
+     * file next to the output directory when a startup archive is created.
+     */
+    private Path getClassesJar() {
+        return parameters.outputDir.resolveSibling(parameters.outputDir.getFileName() + ".jar");
+    }
+
+    private boolean isClassesJarUpToDate() throws IOException {
+        var classesJar = getClassesJar();
+        if (!Files.isRegularFile(classesJar)) {
+            return false;
+        }
+        var classesMtime = getRecursiveFileTime(parameters.outputDir, (p, a) -> !a.isDirectory() && p.toString().endsWith(".class"));
+        return classesMtime.isPresent() && Files.getLastModifiedTime(classesJar).compareTo(classesMtime.get()) >= 0;
+    }
+
+    private void packageClasses() throws IOException {
+        var classesJar = getClassesJar();
+        logger.debug("Packaging compiled classes into {0}", Decorated.actual(classesJar));
+        var tmp = classesJar.resolveSibling(classesJar.getFileName() + ".tmp");
+        try (var os = new JarOutputStream(Files.newOutputStream(tmp));
+                var files = Files.find(parameters.outputDir, Integer.MAX_VALUE, (p, a) -> a.isRegularFile())) {
+            for (var file : (Iterable<Path>) files.sorted()::iterator) {
+                var name = parameters.outputDir.relativize(file).toString().replace(File.separatorChar, '/');
+                os.putNextEntry(new JarEntry(name));
+                Files.copy(file, os);
+                os.closeEntry();
             }
-        } else {
-            logger.debug("Not recompiling source files");
         }
+        Files.move(tmp, classesJar, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Run the validation in a child JVM which dumps the classes loaded during
+     * the run into a class data sharing archive when it exits.
+     */
+    private int createStartupArchive(String[] args) throws Exception {
+        if (parameters.outputDir != null) {
+            compileFiles();
+            writeServiceFile();
+            packageClasses();
+        }
+
+        var command = new ArrayList<String>();
+        command.add(ProcessHandle.current().info().command()
+                .orElse(Paths.get(System.getProperty("java.home"), "bin", "java").toString()));
+        for (var jvmArg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (!jvmArg.startsWith("-XX:SharedArchiveFile=") && !jvmArg.startsWith("-XX:ArchiveClassesAtExit=")) {
+                command.add(jvmArg);
+            }
+        }
+        command.add("-XX:ArchiveClassesAtExit=" + parameters.startupArchive);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(getClass().getName());
+        for (int i = 0; i != args.length; ++i) {
+            if (Flag.CREATE_STARTUP_ARCHIVE.equals(args[i])) {
+                ++i;
+            } else {
+                command.add(args[i]);
+            }
+        }
+
+        logger.debug("Running training run: {0}", Decorated.plain(command));
+        Files.deleteIfExists(parameters.startupArchive);
+        var exitcode = new ProcessBuilder(command).inheritIO().start().waitFor();
+
+        if (!Files.isRegularFile(parameters.startupArchive)) {
+            throw new RuntimeException("The training run did not create startup archive " + parameters.startupArchive);
+        }
+        logger.debug("Created startup archive {0}", Decorated.actual(parameters.startupArchive));
+
+        return exitcode;
     }
 
     private static int tryReadArgs(Map<String, Optional<List<String>>> result, String[] args, int pos) {
@@ -307,13 +572,47 @@ public class Main {
     protected static class Parameters {
         Path sourcePath = null;
         Path outputDir = null;
+        Path classCache = null;
         List<Path> classPaths = new ArrayList<>(0);
         List<Path> argPaths = new ArrayList<>(0);
         Set<String> factories = new TreeSet<String>();
         Map<String, Optional<List<String>>> validatorArgs = new LinkedHashMap<>();
+        boolean debug = false;
+        boolean failFast = false;
+        int maxFailures = 0;
+        Path deltaDir = null;
+        Path cacheDir = null;
+        Shard shard = null;
+        Path shardOutput = null;
+        List<Path> mergePaths = new ArrayList<>(0);
+        Path startupArchive = null;
+        String format = "text";
+        int htmlPageSize = 10000;
+        boolean htmlGzip = false;
+        boolean verifyHeaders = false;
+        boolean groupBySource = false;
+        long maxRpmBytes = 0;
+        long maxPayloadBytes = 0;
+        int threads = 0;
+        Path batchManifest = null;
+        boolean watch = false;
+        int watchIdle = 0;
+    }
+
+    private static long parseSize(String arg) {
+        int shift = switch (arg.isEmpty() ? ' ' : Character.toUpperCase(arg.charAt(arg.length() - 1))) {
+            case 'K' -> 10;
+            case 'M' -> 20;
+            case 'G' -> 30;
+            default -> 0;
+        };
+        long result = Long.parseLong(shift == 0 ? arg : arg.substring(0, arg.length() - 1));
+        if (result <= 0 || result > Long.MAX_VALUE >> shift) {
+            throw new RuntimeException("The size must be positive: " + arg);
+        }
+        return result << shift;
     }
 
-    @SuppressFBWarnings({"ST_WRITE_TO_STATIC_FROM_INSTANCE_METHOD"})
     private int parseArguments(String[] args) throws Exception {
         parameters = new Parameters();
 
@@ -353,22 +652,101 @@ public class Main {
                     parameters.factories.add(args[i]);
                 }
             } else if (lastFlag == Flag.COLOR) {
-                DECORATOR = AnsiDecorator.INSTANCE;
+                decorator = AnsiDecorator.INSTANCE;
                 --i;
             } else if (lastFlag == Flag.DEBUG) {
                 debugOutputStream = System.err;
+                parameters.debug = true;
                 --i;
+            } else if (lastFlag == Flag.FAIL_FAST) {
+                parameters.failFast = true;
+                --i;
+            } else if (lastFlag == Flag.MAX_FAILURES) {
+                parameters.maxFailures = Integer.parseInt(args[i]);
+                if (parameters.maxFailures <= 0) {
+                    throw new RuntimeException("The number of maximum failures must be positive: " + args[i]);
+                }
             } else if (lastFlag == Flag.SOURCE_PATH) {
                 parameters.sourcePath = resolveRelativePathCommon(args[i]);
             } else if (lastFlag == Flag.OUTPUT_DIRECTORY) {
                 parameters.outputDir = resolveRelativePathCommon(args[i]);
+            } else if (lastFlag == Flag.CLASS_CACHE) {
+                parameters.classCache = resolveRelativePathCommon(args[i]);
             } else if (lastFlag == Flag.CLASS_PATH) {
                 parameters.classPaths.add(resolveRelativePathCommon(args[i]));
+            } else if (lastFlag == Flag.DELTA) {
+                parameters.deltaDir = resolveRelativePathCommon(args[i]);
+            } else if (lastFlag == Flag.CACHE_DIR) {
+                parameters.cacheDir = resolveRelativePathCommon(args[i]);
+            } else if (lastFlag == Flag.SHARD) {
+                parameters.shard = Shard.parse(args[i]);
+            } else if (lastFlag == Flag.SHARD_OUTPUT) {
+                parameters.shardOutput = resolveRelativePathCommon(args[i]);
+            } else if (lastFlag == Flag.MERGE) {
+                parameters.mergePaths.add(resolveRelativePathCommon(args[i]));
+            } else if (lastFlag == Flag.FORMAT) {
+                if (!List.of("text", "jsonl").contains(args[i])) {
+                    throw new RuntimeException("Unknown output format: " + args[i]);
+                }
+                parameters.format = args[i];
+            } else if (lastFlag == Flag.HTML_PAGE_SIZE) {
+                parameters.htmlPageSize = Integer.parseInt(args[i]);
+                if (parameters.htmlPageSize <= 0) {
+                    throw new RuntimeException("The HTML page size must be positive: " + args[i]);
+                }
+            } else if (lastFlag == Flag.HTML_GZIP) {
+                parameters.htmlGzip = true;
+                --i;
+            } else if (lastFlag == Flag.VERIFY_HEADERS) {
+                parameters.verifyHeaders = true;
+                --i;
+            } else if (lastFlag == Flag.GROUP_BY_SOURCE) {
+                parameters.groupBySource = true;
+                --i;
+            } else if (lastFlag == Flag.MAX_RPM_BYTES) {
+                parameters.maxRpmBytes = parseSize(args[i]);
+            } else if (lastFlag == Flag.MAX_PAYLOAD_BYTES) {
+                parameters.maxPayloadBytes = parseSize(args[i]);
+            } else if (lastFlag == Flag.THREADS) {
+                parameters.threads = Integer.parseInt(args[i]);
+                if (parameters.threads <= 0) {
+                    throw new RuntimeException("The number of threads must be positive: " + args[i]);
+                }
+            } else if (lastFlag == Flag.BATCH) {
+                if (batch != null) {
+                    throw new RuntimeException("Batch jobs can not run other batches");
+                }
+                parameters.batchManifest = resolveRelativePathCommon(args[i]);
+            } else if (lastFlag == Flag.WATCH) {
+                parameters.watch = true;
+                --i;
+            } else if (lastFlag == Flag.WATCH_IDLE) {
+                parameters.watchIdle = Integer.parseInt(args[i]);
+                if (parameters.watchIdle <= 0) {
+                    throw new RuntimeException("The idle time must be positive: " + args[i]);
+                }
+            } else if (lastFlag == Flag.CREATE_STARTUP_ARCHIVE) {
+                parameters.startupArchive = resolveRelativePathCommon(args[i]);
             } else if (lastFlag == Flag.FILE) {
                 parameters.argPaths.add(Paths.get(args[i]));
             }
         }
 
+        if (watchedFiles != null) {
+            parameters.argPaths = new ArrayList<>(watchedFiles);
+            parameters.deltaDir = watchDeltaDir;
+            parameters.watch = false;
+        }
+
+        initialize();
+
+        return -1;
+    }
+
+    /**
+     * Complete the parameters and create the logger.
+     */
+    private void initialize() throws Exception {
         var validatorPath = Paths.get(MainTmt.class.getProtectionDomain().getCodeSource().getLocation().toURI());
         parameters.classPaths.add(validatorPath);
         var parent = validatorPath.getParent();
@@ -376,12 +754,16 @@ public class Main {
             parameters.classPaths.add(parent.resolve("dependency").resolve("*"));
         }
 
-        logger = new Logger();
+        logger = new Logger(debugOutputStream, decorator);
+        logger.setStream(LogEvent.info, messageOutputStream);
+        logger.setStream(LogEvent.warn, messageOutputStream);
 
         logger.debug("Source path: {0}", Decorated.plain(parameters.sourcePath));
         logger.debug("Output directory: {0}", Decorated.plain(parameters.outputDir));
         logger.debug("Class path: {0}", Decorated.plain(parameters.classPaths));
         logger.debug("Path arguments: {0}", Decorated.plain(parameters.argPaths));
+        logger.debug("Fail fast: {0}, maximum failures per test: {1}",
+                Decorated.plain(parameters.failFast), Decorated.plain(parameters.maxFailures));
         // logger.debug("URL arguments: {0}", Decorated.list(parameters.argUrls));
 
         var expandedClassPaths = new ArrayList<Path>();
@@ -398,54 +780,98 @@ public class Main {
         parameters.classPaths = expandedClassPaths;
 
         logger.debug("Expanded class path: {0}", Decorated.plain(parameters.classPaths));
-
-        return -1;
     }
 
-    private Map<String, Validator> discover() throws Exception {
+    /**
+     * Compile the validators if needed and create their class loader.
+     */
+    private ClassLoader createClassLoader() throws IOException {
+        Map<String, byte[]> memoryResources = null;
         if (parameters.sourcePath != null && parameters.outputDir == null) {
-            throw new RuntimeException("If source path is specified then the output directory needs to be specified too");
+            memoryResources = compileInMemory();
         }
 
         if (parameters.outputDir != null) {
             compileFiles();
-
-            var serviceContent = new ByteArrayOutputStream(0);
-            for (var serviceFile : Files.find(parameters.sourcePath, Integer.MAX_VALUE,
-                    (p, a) -> !a.isDirectory() && p.getFileName().equals(Paths.get(ValidatorFactory.class.getCanonicalName()))).toList()) {
-                try (var is = Files.newInputStream(serviceFile)) {
-                    is.transferTo(serviceContent);
-                }
-            }
-            if (serviceContent.size() != 0) {
-                var serviceOutFile = Files.createDirectories(parameters.outputDir
-                        .resolve("META-INF").resolve("services")).resolve(ValidatorFactory.class.getCanonicalName());
-                try (var os = Files.newOutputStream(serviceOutFile)) {
-                    new ByteArrayInputStream(serviceContent.toByteArray()).transferTo(os);
-                }
-            }
+            writeServiceFile();
         }
 
         var classPaths = new ArrayList<URL>();
         if (parameters.outputDir != null) {
-            classPaths.add(parameters.outputDir.toUri().toURL());
+            var classesJar = getClassesJar();
+            if (isClassesJarUpToDate()) {
+                logger.debug("Loading compiled classes from {0}", Decorated.actual(classesJar));
+                classPaths.add(classesJar.toUri().toURL());
+            } else {
+                classPaths.add(parameters.outputDir.toUri().toURL());
+            }
         }
         for (var classPath : parameters.classPaths) {
             classPaths.add(classPath.toUri().toURL());
         }
+        // Do not close the cloassloaders, they are used later. Validators of
+        // an embedding application see the classes of its class loader.
+        ClassLoader classLoader = new URLClassLoader(classPaths.toArray(URL[]::new), Main.class.getClassLoader());
+        if (memoryResources != null) {
+            classLoader = new MemoryClassLoader(memoryResources, classLoader);
+        }
+        return classLoader;
+    }
+
+    private Map<String, Validator> discover() throws Exception {
+        ClassLoader classLoader;
+        if (batch != null) {
+            var classes = batch.getClasses(new Batch.ClassesKey(parameters.sourcePath, parameters.outputDir,
+                    parameters.classCache, List.copyOf(parameters.classPaths)),
+                    () -> new Batch.Classes(createClassLoader(), List.copyOf(parameters.classPaths)));
+            // The class path extended by the dependencies of the compiled validators
+            parameters.classPaths = new ArrayList<>(classes.classPaths());
+            classLoader = classes.classLoader();
+        } else {
+            classLoader = createClassLoader();
+            ownedClassLoader = classLoader;
+        }
         var validators = new ArrayList<Validator>();
+        var indexEntries = new ArrayList<TestIndex.Entry>();
 
         logger.debug("Factory arguments: {0}", Decorated.plain(parameters.factories.stream().toList()));
 
+        // The test index is cached next to the output directory, it is only
+        // useful when some tests are selected
+        Path indexPath = null;
+        String indexFingerprint = null;
+        if (parameters.outputDir != null && !parameters.validatorArgs.isEmpty()) {
+            indexPath = parameters.outputDir.resolveSibling(parameters.outputDir.getFileName() + ".tests");
+            var indexedPaths = new ArrayList<Path>();
+            indexedPaths.add(parameters.outputDir);
+            indexedPaths.addAll(parameters.classPaths);
+            indexFingerprint = TestIndex.fingerprint(indexedPaths, parameters.factories);
+        }
+
         var oldClassLoader = Thread.currentThread().getContextClassLoader();
         try {
-            // Do not close the cloassloaders, they are used later
-            var classLoader = new URLClassLoader(classPaths.toArray(URL[]::new));
             Thread.currentThread().setContextClassLoader(classLoader);
+
+            if (indexPath != null) {
+                var index = TestIndex.load(indexPath, indexFingerprint);
+                if (index.isPresent()) {
+                    var selected = instantiateSelected(index.get(), classLoader);
+                    if (selected != null) {
+                        logger.debug("Instantiated selected tests using the test index {0}", Decorated.actual(indexPath));
+                        return selected;
+                    }
+                    logger.debug("Test index {0} does not match the selected tests", Decorated.actual(indexPath));
+                }
+            }
+
             ServiceLoader.<ValidatorFactory>load(ValidatorFactory.class, classLoader).stream().forEach(provider -> {
                 var factory = provider.get();
                 if (parameters.factories.isEmpty() || parameters.factories.contains(factory.getClass().getName())) {
-                    validators.addAll(factory.getValidators());
+                    for (var validator : factory.getValidators()) {
+                        validators.add(validator);
+                        indexEntries.add(new TestIndex.Entry(validator.getTestName(),
+                                factory.getClass().getName(), validator.getClass().getName()));
+                    }
                 } else {
                     logger.debug("Ignoring factory {0} as it is not listed as an argument", Decorated.struct(factory.getClass().getName()));
                 }
@@ -454,6 +880,11 @@ public class Main {
             Thread.currentThread().setContextClassLoader(oldClassLoader);
         }
 
+        if (indexPath != null) {
+            logger.debug("Writing test index {0}", Decorated.actual(indexPath));
+            new TestIndex(indexEntries).save(indexPath, indexFingerprint);
+        }
+
         var validatorTests = new TreeMap<String, Validator>();
 
         for (var validator : validators) {
@@ -497,6 +928,45 @@ public class Main {
         return validatorTests;
     }
 
+    /**
+     * Instantiate only the selected validators. The validators are obtained
+     * from the factories recorded in the index, other factories are not
+     * instantiated. The factories of the selected validators still construct
+     * all of their validators.
+     * @return The selected validators or null if the index cannot be used to
+     * instantiate them, in which case all validators need to be discovered.
+     */
+    private Map<String, Validator> instantiateSelected(TestIndex index, ClassLoader classLoader) {
+        var result = new TreeMap<String, Validator>();
+        var factoryValidators = new TreeMap<String, List<Validator>>();
+
+        for (var testName : parameters.validatorArgs.keySet()) {
+            var entries = index.get(testName);
+            if (entries.size() != 1) {
+                // Missing and duplicate tests are reported by the full discovery
+                return null;
+            }
+            var entry = entries.get(0);
+
+            var providedValidators = factoryValidators.computeIfAbsent(entry.factoryClass(), factoryClass ->
+                    ServiceLoader.<ValidatorFactory>load(ValidatorFactory.class, classLoader).stream()
+                    .filter(provider -> provider.type().getName().equals(factoryClass))
+                    .findFirst().map(provider -> provider.get().getValidators()).orElse(List.of()));
+            var validator = providedValidators.stream().filter(v -> testName.equals(v.getTestName())).findFirst().orElse(null);
+
+            if (validator == null || !validator.getClass().getName().equals(entry.validatorClass())) {
+                return null;
+            }
+
+            logger.debug("Test {0} is implemented by {1}",
+                    Decorated.actual(testName),
+                    Decorated.struct(validator.getClass().getName()));
+            result.put(testName, validator);
+        }
+
+        return result;
+    }
+
     protected Map<String, Validator> select(Map<String, Validator> validators) throws Exception {
         logger.debug("Main arguments: {0}", Decorated.plain(parameters.validatorArgs.entrySet().stream().map(e -> {
             var result = new StringBuilder();
@@ -534,9 +1004,48 @@ public class Main {
         return validators;
     }
 
+    /**
+     * @param validators The selected validators.
+     * @return Which RPM files to open, judged by their file names. All files
+     * are opened when header verification is requested or when some validator
+     * does not declare a file name filter. Files with unconventional names are
+     * always opened.
+     */
+    private Predicate<Path> getFileNameFilter(Collection<Validator> validators) {
+        if (parameters.verifyHeaders) {
+            return path -> true;
+        }
+        var filters = new ArrayList<Predicate<RpmFileName>>();
+        for (var validator : validators) {
+            if (!(validator instanceof DefaultValidator defaultValidator)) {
+                return path -> true;
+            }
+            filters.add(defaultValidator.getFileNameFilter());
+        }
+        return path -> {
+            var fileName = RpmFileName.parse(path);
+            return fileName == null || filters.stream().anyMatch(filter -> filter.test(fileName));
+        };
+    }
+
+    private void verifyFileName(RpmHeader header) {
+        var fileName = RpmFileName.parse(header.getPath());
+        var arch = header.getArch();
+        if (header.isSourcePackage()) {
+            // Source packages are named by "src" or "nosrc" instead of their architecture
+            arch = fileName != null && fileName.isSourcePackage() ? fileName.arch() : "src";
+        }
+        var expected = new RpmFileName(header.getName(), header.getVersion(), header.getRelease(), arch);
+        if (!expected.equals(fileName)) {
+            logger.warn("File name of {0} does not match its header {1}",
+                    Decorated.actual(header.getPath()), Decorated.struct(expected.name() + "-" + expected.version()
+                            + "-" + expected.release() + "." + expected.arch()));
+        }
+    }
+
     @SuppressFBWarnings({"DP_CREATE_CLASSLOADER_INSIDE_DO_PRIVILEGED"})
     protected List<NamedResult> execute(Collection<Validator> validators) throws Exception {
-        var rpms = new ArrayList<RpmPackage>();
+        var rpms = new RpmPackageList();
         /*
         parameters.argUrls.parallelStream().forEach(path -> {
             RpmPackage rpm;
@@ -550,44 +1059,244 @@ public class Main {
             }
         });
         */
-        Iterators.addAll(rpms, ArgFileIterator.create(parameters.argPaths));
-        var resultList = validators.parallelStream().map(validator -> {
-            var oldClassLoader = Thread.currentThread().getContextClassLoader();
+        var argFileIterator = ArgFileIterator.create(parameters.argPaths, getFileNameFilter(validators));
+        var paths = new ArrayList<Path>();
+        while (argFileIterator.hasNext()) {
+            paths.add(argFileIterator.nextPath());
+        }
+        // Headers are read in Java, in parallel, the packages are read by the
+        // RPM library only when a validator accesses them
+        var summaries = paths.parallelStream().map(path -> {
             try {
-                Thread.currentThread().setContextClassLoader(validator.getClass().getClassLoader());
-                var startTime = LocalDateTime.now();
-                var result = validator.validate(rpms, parameters.validatorArgs
-                        .getOrDefault(validator.getTestName(), Optional.empty()).orElse(null));
-                var endTime = LocalDateTime.now();
-                return new NamedResult(result, validator.getTestName(), startTime, endTime);
-            } catch (Exception ex) {
-                var result = new ResultBuilder();
-                result.error(ex);
-                return new NamedResult(result.build(), validator.getTestName());
-            } finally {
-                Thread.currentThread().setContextClassLoader(oldClassLoader);
+                var header = RpmHeader.read(path);
+                if (parameters.verifyHeaders) {
+                    verifyFileName(header);
+                }
+                return RpmSummary.of(header);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
             }
         }).toList();
-
+        summaries.forEach(rpms::add);
+        if (argFileIterator.getDuplicates() != 0) {
+            logger.debug("Skipped {0} RPM files reachable through multiple paths",
+                    Decorated.plain(argFileIterator.getDuplicates()));
+        }
+        if (argFileIterator.getFiltered() != 0) {
+            logger.debug("Skipped {0} RPM files whose file names no selected test accepts",
+                    Decorated.plain(argFileIterator.getFiltered()));
+        }
+        if (parameters.shard != null) {
+            var total = rpms.size();
+            rpms.retainSummaries(parameters.shard::contains);
+            logger.debug("Shard {0}: validating {1} of {2} RPM files", Decorated.struct(parameters.shard),
+                    Decorated.plain(rpms.size()), Decorated.plain(total));
+        }
+        DeltaCache deltaCache = null;
+        if (parameters.deltaDir != null) {
+            deltaCache = DeltaCache.load(parameters.deltaDir);
+            var changed = deltaCache.update(rpms.getPaths());
+            logger.debug("Delta validation: {0} of {1} RPM files are new or changed",
+                    Decorated.plain(changed), Decorated.plain(rpms.size()));
+        }
+        SourceGroups sourceGroups = null;
+        if (parameters.groupBySource) {
+            rpms.sortSummaries(Comparator.comparing(RpmSummary::groupKey, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+                    .thenComparing(summary -> summary.path().toString()));
+            sourceGroups = new SourceGroups(rpms);
+            logger.debug("Grouped {0} RPM files by {1} source packages",
+                    Decorated.plain(rpms.size()), Decorated.plain(sourceGroups.size()));
+        }
+        var groups = sourceGroups;
+        var resultCache = deltaCache;
+        var payloadNeeds = PayloadNeeds.HEADER;
         for (var validator : validators) {
-            if (validator.getClass().getClassLoader() instanceof AutoCloseable ac) {
-                ac.close();
+            payloadNeeds = payloadNeeds.union(validator instanceof DefaultValidator defaultValidator
+                    ? defaultValidator.getPayloadNeeds() : PayloadNeeds.ALL);
+        }
+        logger.debug("Selected tests read: {0}", Decorated.plain(payloadNeeds));
+        // Payloads are not opened at all when only RPM headers are validated
+        var payloadIndex = parameters.cacheDir != null && payloadNeeds.needsPayload()
+                ? new DiskPayloadIndex(parameters.cacheDir.resolve("payload")) : null;
+        var limits = ResourceLimits.detect();
+        var admission = new AdmissionController(
+                parameters.maxRpmBytes != 0 ? parameters.maxRpmBytes : limits.fileBudget(),
+                parameters.maxPayloadBytes != 0 ? parameters.maxPayloadBytes : limits.payloadBudget());
+        int threads = parameters.threads != 0 ? parameters.threads : limits.cpus();
+        var factStore = new FactStore(limits.factBudget());
+        logger.debug("Resource limits: {0} bytes of memory, {1} CPUs, running {2} tests in parallel",
+                Decorated.plain(limits.memory()), Decorated.plain(limits.cpus()), Decorated.plain(threads));
+        var cancelled = new AtomicBoolean(false);
+        Runnable failureListener = parameters.failFast ? () -> cancelled.set(true) : () -> {};
+        // The parallel stream runs in the pool it is started from
+        var pool = batch != null ? batch.getPool(threads) : new ForkJoinPool(threads);
+        List<NamedResult> resultList;
+        try {
+            resultList = pool.submit(() -> validators.parallelStream().map(validator -> {
+                if (cancelled.get()) {
+                    var result = new ResultBuilder();
+                    result.skip("Test was not run because another test failed");
+                    return new NamedResult(result.build(), validator.getTestName());
+                }
+                var oldClassLoader = Thread.currentThread().getContextClassLoader();
+                var readsPayload = !(validator instanceof DefaultValidator defaultValidator)
+                        || defaultValidator.getPayloadNeeds().needsPayload();
+                // The iterators of a cancelled test stop admitting and reading RPM files
+                BooleanSupplier isCancelled = validator instanceof DefaultValidator defaultValidator
+                        ? defaultValidator::isCancelled : cancelled::get;
+                try (var session = admission.open(readsPayload, groups, isCancelled)) {
+                    Thread.currentThread().setContextClassLoader(validator.getClass().getClassLoader());
+                    if (validator instanceof DefaultValidator defaultValidator) {
+                        defaultValidator.setFailureLimits(parameters.maxFailures, cancelled::get, failureListener);
+                        defaultValidator.setResultCache(resultCache);
+                        defaultValidator.setDebugEnabled(parameters.debug);
+                        defaultValidator.setPayloadIndex(payloadIndex);
+                        defaultValidator.setFactStore(factStore);
+                        defaultValidator.setGroupedBySource(groups != null);
+                        if (jsonlReporter != null) {
+                            defaultValidator.setLogStream(entry -> jsonlReporter.entry(validator.getTestName(), entry));
+                        }
+                    }
+                    if (parameters.shard != null && validator instanceof MergeableValidator mergeable) {
+                        mergeable.setPartial(true);
+                    }
+                    var startTime = LocalDateTime.now();
+                    var result = validator.validate(session.admit(rpms), parameters.validatorArgs
+                            .getOrDefault(validator.getTestName(), Optional.empty()).orElse(null));
+                    var endTime = LocalDateTime.now();
+                    if (parameters.shard != null && validator instanceof MergeableValidator mergeable) {
+                        partials.put(validator.getTestName(), mergeable.exportPartial());
+                    }
+                    if (TestResult.fail.equals(result.getResult()) || TestResult.error.equals(result.getResult())) {
+                        failureListener.run();
+                    }
+                    return new NamedResult(result, validator.getTestName(), startTime, endTime);
+                } catch (Exception ex) {
+                    failureListener.run();
+                    var result = new ResultBuilder();
+                    result.error(ex);
+                    return new NamedResult(result.build(), validator.getTestName());
+                } finally {
+                    Thread.currentThread().setContextClassLoader(oldClassLoader);
+                }
+            }).map(result -> {
+                if (jsonlReporter != null) {
+                    jsonlReporter.result(result, partials.get(result.getTestName()));
+                }
+                if (resultListener != null) {
+                    resultListener.accept(result);
+                }
+                return result;
+            }).toList()).get();
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof Exception cause ? cause : ex;
+        } finally {
+            if (batch == null) {
+                pool.shutdown();
             }
         }
 
+        var admissionStatistics = admission.getStatistics();
+        logger.debug("Admission control: {0} of {1} RPM files waited {2} ms in total, at most {3} bytes of RPM files and {4} bytes of payloads processed at once",
+                Decorated.plain(admissionStatistics.waits()), Decorated.plain(admissionStatistics.admitted()),
+                Decorated.plain(admissionStatistics.waitNanos() / 1000000), Decorated.plain(admissionStatistics.peakFileBytes()),
+                Decorated.plain(admissionStatistics.peakPayloadBytes()));
+        if (jsonlReporter != null) {
+            jsonlReporter.setAdmissionStatistics(admissionStatistics);
+        }
+        var factStatistics = factStore.getStatistics();
+        logger.debug("Fact store: {0} facts computed, {1} shared, {2} evicted",
+                Decorated.plain(factStatistics.misses()), Decorated.plain(factStatistics.hits()),
+                Decorated.plain(factStatistics.evictions()));
+
+        if (deltaCache != null) {
+            deltaCache.save();
+        }
+
+        // The class loaders of a batch are used by the next jobs, the class
+        // loaders of an embedding application are not closed either
+        if (ownedClassLoader instanceof AutoCloseable ac) {
+            ac.close();
+        }
+
         return resultList;
     }
 
+    private List<NamedResult> merge(Map<String, Validator> validators) throws Exception {
+        var parts = new TreeMap<String, List<ShardFile.Part>>();
+        for (var path : parameters.mergePaths) {
+            logger.debug("Merging shard results from {0}", Decorated.actual(path));
+            for (var part : JsonlReporter.isJsonl(path) ? JsonlReporter.read(path) : ShardFile.read(path)) {
+                parts.computeIfAbsent(part.testName(), k -> new ArrayList<>()).add(part);
+            }
+        }
+
+        var results = new ArrayList<NamedResult>();
+        for (var entry : parts.entrySet()) {
+            var result = new ResultBuilder();
+            LocalDateTime startTime = null;
+            LocalDateTime endTime = null;
+            var testPartials = new ArrayList<List<String>>();
+
+            for (var part : entry.getValue()) {
+                result.mergeResult(part.result().result());
+                part.result().log().forEach(result::addLog);
+                if (part.startTime() != null && (startTime == null || part.startTime().isBefore(startTime))) {
+                    startTime = part.startTime();
+                }
+                if (part.endTime() != null && (endTime == null || part.endTime().isAfter(endTime))) {
+                    endTime = part.endTime();
+                }
+                if (part.partial() != null) {
+                    testPartials.add(part.partial());
+                }
+            }
+
+            if (!testPartials.isEmpty()) {
+                if (validators.get(entry.getKey()) instanceof MergeableValidator mergeable) {
+                    var oldClassLoader = Thread.currentThread().getContextClassLoader();
+                    try {
+                        Thread.currentThread().setContextClassLoader(mergeable.getClass().getClassLoader());
+                        var merged = mergeable.mergePartials(testPartials);
+                        result.mergeResult(merged.getResult());
+                        merged.forEach(result::addLog);
+                    } finally {
+                        Thread.currentThread().setContextClassLoader(oldClassLoader);
+                    }
+                } else {
+                    result.error("Partial results of test {0} can not be merged, the test was not found",
+                            Decorated.struct(entry.getKey()));
+                }
+            }
+
+            results.add(new NamedResult(result.build(), entry.getKey(), startTime, endTime));
+        }
+
+        return results;
+    }
+
     protected static final String decoratedObjects(LogEntry entry, TextDecorator decorator) {
         return MessageFormat.format(decorator.escape(entry.pattern()),
                 Stream.of(entry.objects()).map(a -> decorator.decorate(a)).toArray());
     }
 
-    protected static final String decorated(LogEntry entry) {
-        return "[" + decorate(entry.kind().getDecorated()) + "] " + decoratedObjects(entry, Main.getDecorator());
+    protected final String decorated(LogEntry entry) {
+        return "[" + decorate(entry.kind().getDecorated()) + "] " + decoratedObjects(entry, getDecorator());
+    }
+
+    /**
+     * @return Whether the results can be streamed in the format given by the
+     * parameters instead of being reported by {@link #report(List)}.
+     */
+    protected boolean isStreamingSupported() {
+        return true;
     }
 
     protected int report(List<NamedResult> results) throws Exception {
+        if (jsonlReporter != null) {
+            return jsonlReporter.finish();
+        }
+
         int passMessages = 0;
         for (var result : results) {
             for (var logEntry : result) {
@@ -650,19 +1359,177 @@ public class Main {
         return exitCode;
     }
 
+    /**
+     * Run the validation without the command line, used by {@link Engine}.
+     * @param parameters The parameters of the validation.
+     * @param debugOutputStream The stream of debugging output or null.
+     * @param suppliedValidators The validators to run instead of the
+     * discovered ones, if not empty.
+     * @param listener Receives the result of each test as soon as the test
+     * finishes, possibly concurrently.
+     * @return The results of all tests.
+     */
+    List<NamedResult> run(Parameters parameters, PrintStream debugOutputStream,
+            Collection<Validator> suppliedValidators, Consumer<NamedResult> listener) throws Exception {
+        this.parameters = parameters;
+        if (debugOutputStream != null) {
+            this.debugOutputStream = debugOutputStream;
+            parameters.debug = true;
+        }
+        // An embedded run does not write to the process-wide streams
+        this.messageOutputStream = this.debugOutputStream;
+        initialize();
+
+        Map<String, Validator> validators;
+        if (suppliedValidators.isEmpty()) {
+            validators = discover();
+        } else {
+            validators = new TreeMap<>();
+            for (var validator : suppliedValidators) {
+                if (validators.put(validator.getTestName(), validator) != null) {
+                    throw new RuntimeException("Test is implemented by multiple validators: " + validator.getTestName());
+                }
+            }
+        }
+        validators = select(validators);
+
+        resultListener = listener;
+        var results = new ArrayList<NamedResult>(execute(validators.values()));
+        for (var report : reports.entrySet()) {
+            var result = new NamedResult(report.getValue().build(), report.getKey());
+            listener.accept(result);
+            results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * Validate the RPM files in rounds, a new round starts as soon as complete
+     * RPM files appear or change in the watched directories. Each round
+     * covers all complete RPM files, so that cross-package tests see the RPM
+     * files of the previous rounds, and validates only the new and changed
+     * ones again. The rounds share the class loaders of the validators and the
+     * thread pools and store their results for delta validation.
+     * @param args The arguments of each round.
+     * @return The exit code of the last round.
+     */
+    private int watch(String[] args) throws Exception {
+        if (!isStreamingSupported()) {
+            throw new RuntimeException("Watch mode requires the results to be written to the standard output");
+        }
+        if (!parameters.mergePaths.isEmpty()) {
+            throw new RuntimeException("Watch mode can not merge the results of shards");
+        }
+        var deltaDir = parameters.deltaDir;
+        if (deltaDir == null) {
+            deltaDir = Files.createTempDirectory("javapackages-validator-watch-");
+        }
+
+        int exitcode = 0;
+        try (var shared = new Batch(); var watcher = new DirectoryWatcher(parameters.argPaths)) {
+            if (watcher.isPolling()) {
+                logger.debug("The directories can not be watched, polling them every {0} ms",
+                        Decorated.plain(WATCH_POLL_MILLIS));
+            }
+            Map<Path, DirectoryWatcher.FileState> validated = Map.of();
+            long lastChange = System.nanoTime();
+            while (true) {
+                var scan = DirectoryWatcher.scan(parameters.argPaths);
+                if (scan.incomplete() != 0) {
+                    logger.debug("Waiting for {0} RPM files being written", Decorated.plain(scan.incomplete()));
+                    lastChange = System.nanoTime();
+                }
+                var changed = DirectoryWatcher.changed(validated, scan.complete());
+                if (!scan.complete().equals(validated)) {
+                    validated = scan.complete();
+                    lastChange = System.nanoTime();
+                }
+                if (!changed.isEmpty()) {
+                    var round = new Main();
+                    round.setBatch(shared);
+                    round.setWatchRound(List.copyOf(validated.keySet()), deltaDir);
+                    try {
+                        exitcode = round.run(args);
+                    } catch (Exception ex) {
+                        // The next round may succeed, for example when a
+                        // broken RPM file is replaced
+                        var stackTrace = new StringWriter();
+                        ex.printStackTrace(new PrintWriter(stackTrace));
+                        logger.warn("Watch: validation of {0} RPM files failed: {1}",
+                                Decorated.plain(validated.size()), Decorated.plain(stackTrace));
+                        exitcode = 1;
+                    }
+                    logger.info("Watch: validated {0} RPM files, {1} of them new or changed, exit code {2}",
+                            Decorated.plain(validated.size()), Decorated.plain(changed.size()), Decorated.plain(exitcode));
+                    lastChange = System.nanoTime();
+                }
+                if (parameters.watchIdle != 0
+                        && System.nanoTime() - lastChange >= TimeUnit.SECONDS.toNanos(parameters.watchIdle)) {
+                    return exitcode;
+                }
+                watcher.await(WATCH_POLL_MILLIS);
+            }
+        } finally {
+            if (parameters.deltaDir == null) {
+                try (var stream = Files.walk(deltaDir)) {
+                    for (var path : stream.sorted(Comparator.reverseOrder()).toList()) {
+                        Files.deleteIfExists(path);
+                    }
+                }
+            }
+        }
+    }
+
     public int run(String[] args) throws Exception {
         int exitcode;
         exitcode = parseArguments(args);
         if (exitcode >= 0) {
             return exitcode;
         }
+        if (parameters.startupArchive != null) {
+            return createStartupArchive(args);
+        }
+        if (parameters.batchManifest != null) {
+            logger.debug("Running batch {0}", Decorated.actual(parameters.batchManifest));
+            try (var jobs = new Batch()) {
+                return jobs.run(Batch.readManifest(parameters.batchManifest), logger);
+            }
+        }
+        if (parameters.watch) {
+            return watch(args);
+        }
         var validators = select(discover());
 
         logger.debug("Selected validators:{0}", Decorated.plain(validators.keySet().stream().map(
                 testName -> System.lineSeparator() + decorate(Decorated.struct(testName))
         ).collect(Collectors.joining())));
 
-        exitcode = report(execute(validators.values()));
+        if (parameters.format.equals("jsonl") && isStreamingSupported()) {
+            jsonlReporter = new JsonlReporter(System.out, parameters.debug);
+        }
+
+        List<NamedResult> results;
+        if (!parameters.mergePaths.isEmpty()) {
+            results = merge(validators);
+            if (jsonlReporter != null) {
+                for (var result : results) {
+                    jsonlReporter.result(result, null);
+                }
+            }
+        } else {
+            results = execute(validators.values());
+            // The streamed output contains the partial results itself
+            if (parameters.shard != null && jsonlReporter == null) {
+                var shardOutput = parameters.shardOutput;
+                if (shardOutput == null) {
+                    shardOutput = resolveRelativePathCommon("shard-" + parameters.shard.index() + "-of-" + parameters.shard.count() + ".bin");
+                }
+                logger.debug("Writing shard results to {0}", Decorated.actual(shardOutput));
+                ShardFile.write(shardOutput, parameters.shard, results, partials);
+            }
+        }
+
+        exitcode = report(results);
         return exitcode;
     }
 
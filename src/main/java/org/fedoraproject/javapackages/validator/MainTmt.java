@@ -202,6 +202,12 @@ public class MainTmt extends Main {
         return String.format("%02d:%02d:%02d", duration.toHours(), duration.toMinutesPart(), duration.toSecondsPart());
     }
 
+    @Override
+    protected boolean isStreamingSupported() {
+        // tmt results are always written as result files
+        return false;
+    }
+
     @Override
     protected int report(List<NamedResult> results) throws Exception {
         try (var os = Files.newOutputStream(TMT_TEST_DATA.resolve("filter.js"));
@@ -228,13 +234,18 @@ public class MainTmt extends Main {
             try (var os = Files.newOutputStream(TMT_TEST_DATA.resolve(resultFile + ".log"));
                     var ps = new PrintStream(os, false, StandardCharsets.UTF_8)) {
                 for (var entry : chainedLogs) {
-                    ps.println(Main.decorated(entry));
+                    ps.println(decorated(entry));
                 }
             }
-            try (var os = Files.newOutputStream(TMT_TEST_DATA.resolve(resultFile + ".html"));
-                    var ps = new HtmlTablePrintStream(os, namedResult.getResult())) {
-                for (var entry : chainedLogs) {
-                    ps.printRow(entry);
+            if (IterableUtils.size(chainedLogs) > parameters.htmlPageSize) {
+                PagedHtmlReport.write(TMT_TEST_DATA.resolve(resultFile + ".html"), namedResult.getResult(),
+                        chainedLogs, parameters.htmlPageSize, parameters.htmlGzip);
+            } else {
+                try (var os = Files.newOutputStream(TMT_TEST_DATA.resolve(resultFile + ".html"));
+                        var ps = new HtmlTablePrintStream(os, namedResult.getResult())) {
+                    for (var entry : chainedLogs) {
+                        ps.printRow(entry);
+                    }
                 }
             }
 
@@ -0,0 +1,144 @@
+package org.fedoraproject.javapackages.validator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Class loader which defines classes from class files held in memory. Other
+ * resources held in memory, such as service files, are provided through URLs
+ * of scheme {@code memory}.
+ */
+class MemoryClassLoader extends ClassLoader implements AutoCloseable {
+    private static final int CACHE_VERSION = 1;
+
+    private final Map<String, byte[]> resources;
+
+    static {
+        registerAsParallelCapable();
+    }
+
+    /**
+     * @param resources Class files and other resources mapped by their
+     * resource names, for example {@code org/example/Validator.class}.
+     * @param parent The parent class loader.
+     */
+    MemoryClassLoader(Map<String, byte[]> resources, ClassLoader parent) {
+        super(parent);
+        this.resources = resources;
+    }
+
+    /**
+     * @return Class files and other resources mapped by their resource names.
+     */
+    Map<String, byte[]> getResources() {
+        return resources;
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        var bytes = resources.get(name.replace('.', '/') + ".class");
+        if (bytes == null) {
+            throw new ClassNotFoundException(name);
+        }
+        return defineClass(name, bytes, 0, bytes.length);
+    }
+
+    @Override
+    protected URL findResource(String name) {
+        var bytes = resources.get(name);
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            return URL.of(URI.create("memory:/" + name), new URLStreamHandler() {
+                @Override
+                protected URLConnection openConnection(URL url) {
+                    return new URLConnection(url) {
+                        @Override
+                        public void connect() {
+                        }
+
+                        @Override
+                        public InputStream getInputStream() {
+                            return new ByteArrayInputStream(bytes);
+                        }
+                    };
+                }
+            });
+        } catch (IOException ex) {
+            throw new IllegalArgumentException(ex);
+        }
+    }
+
+    @Override
+    protected Enumeration<URL> findResources(String name) {
+        var url = findResource(name);
+        return url == null ? Collections.emptyEnumeration() : Collections.enumeration(List.of(url));
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (getParent() instanceof AutoCloseable parent) {
+            parent.close();
+        }
+    }
+
+    /**
+     * @param path The cache file.
+     * @param fingerprint The fingerprint of the sources and the class path.
+     * @return The cached resources or empty if the cache does not exist or
+     * was created from different sources.
+     * @throws IOException If reading the cache fails.
+     */
+    static Optional<Map<String, byte[]>> readCache(Path path, String fingerprint) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return Optional.empty();
+        }
+        try (var is = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (is.readInt() != CACHE_VERSION || !ResultCodec.readString(is).equals(fingerprint)) {
+                return Optional.empty();
+            }
+            var result = new TreeMap<String, byte[]>();
+            for (int count = is.readInt(); count != 0; --count) {
+                var name = ResultCodec.readString(is);
+                var bytes = new byte[is.readInt()];
+                is.readFully(bytes);
+                result.put(name, bytes);
+            }
+            return Optional.of(result);
+        }
+    }
+
+    static void writeCache(Path path, String fingerprint, Map<String, byte[]> resources) throws IOException {
+        var tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (var os = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            os.writeInt(CACHE_VERSION);
+            ResultCodec.writeString(os, fingerprint);
+            os.writeInt(resources.size());
+            for (var entry : resources.entrySet()) {
+                ResultCodec.writeString(os, entry.getKey());
+                os.writeInt(entry.getValue().length);
+                os.write(entry.getValue());
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,56 @@
+package org.fedoraproject.javapackages.validator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Map;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+
+/**
+ * File manager which captures the class files produced by the compiler in
+ * memory instead of writing them to an output directory.
+ */
+class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+    private final Map<String, byte[]> resources;
+
+    /**
+     * @param fileManager The file manager used to read source files.
+     * @param resources The map to which the class files are stored, mapped by
+     * their resource names.
+     */
+    MemoryFileManager(StandardJavaFileManager fileManager, Map<String, byte[]> resources) {
+        super(fileManager);
+        this.resources = resources;
+    }
+
+    @Override
+    public JavaFileObject getJavaFileForOutput(Location location, String className,
+            JavaFileObject.Kind kind, FileObject sibling) {
+        var name = className.replace('.', '/') + kind.extension;
+        return new SimpleJavaFileObject(URI.create("memory:/" + name), kind) {
+            @Override
+            public OutputStream openOutputStream() {
+                return new ByteArrayOutputStream() {
+                    @Override
+                    public void close() {
+                        synchronized (resources) {
+                            resources.put(name, toByteArray());
+                        }
+                    }
+                };
+            }
+        };
+    }
+
+    @Override
+    public boolean hasLocation(Location location) {
+        // Do not let the compiler fall back to writing next to the sources
+        return location == StandardLocation.CLASS_OUTPUT || super.hasLocation(location);
+    }
+}
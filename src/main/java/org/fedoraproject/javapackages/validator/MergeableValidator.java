@@ -0,0 +1,32 @@
+package org.fedoraproject.javapackages.validator;
+
+import java.util.List;
+
+import org.fedoraproject.javapackages.validator.spi.Result;
+import org.fedoraproject.javapackages.validator.spi.Validator;
+
+/**
+ * A validator which checks properties spanning RPM files that can be validated
+ * by different shards. In a sharded run the validator only collects a compact
+ * partial index of its input, the checks are run when the partial indexes of
+ * all shards are merged.
+ */
+public interface MergeableValidator extends Validator {
+    /**
+     * @param partial Whether the following validation is a part of a sharded
+     * run and should only collect the partial index.
+     */
+    void setPartial(boolean partial);
+
+    /**
+     * @return The partial index collected by the last validation.
+     */
+    List<String> exportPartial();
+
+    /**
+     * Run the checks over the joined partial indexes of all shards.
+     * @param partials The partial indexes exported by the shards.
+     * @return The result of the checks.
+     */
+    Result mergePartials(List<List<String>> partials);
+}
@@ -7,7 +7,11 @@ import org.fedoraproject.javapackages.validator.spi.LogEntry;
 import org.fedoraproject.javapackages.validator.spi.Result;
 import org.fedoraproject.javapackages.validator.spi.TestResult;
 
-class NamedResult implements Result {
+/**
+ * The result of a test together with the name of the test and the time it
+ * ran.
+ */
+public class NamedResult implements Result {
     private Result delegate;
     private String testName;
     private LocalDateTime startTime;
@@ -38,11 +42,17 @@ class NamedResult implements Result {
         return testName;
     }
 
-    LocalDateTime getStartTime() {
+    /**
+     * @return The time the test started or null if it did not run.
+     */
+    public LocalDateTime getStartTime() {
         return startTime;
     }
 
-    LocalDateTime getEndTime() {
+    /**
+     * @return The time the test finished or null if it did not run.
+     */
+    public LocalDateTime getEndTime() {
         return endTime;
     }
 }
@@ -0,0 +1,153 @@
+package org.fedoraproject.javapackages.validator;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.output.TeeOutputStream;
+import org.fedoraproject.javapackages.validator.spi.LogEntry;
+import org.fedoraproject.javapackages.validator.spi.LogEvent;
+import org.fedoraproject.javapackages.validator.spi.TestResult;
+
+/**
+ * HTML report of a test with a large log. The entries are split by their
+ * kind into pages of limited size, the report file itself is an index of
+ * the pages with the number of entries of each kind. Pages are plain HTML
+ * without scripts and are written while the log is iterated, without keeping
+ * the entries in memory.
+ */
+class PagedHtmlReport {
+    private final Path pagesDir;
+    private final String pagesDirName;
+    private final int pageSize;
+    private final boolean gzip;
+    private final Map<LogEvent, Integer> counts = new EnumMap<>(LogEvent.class);
+    private final Map<LogEvent, PrintStream> pages = new EnumMap<>(LogEvent.class);
+
+    /**
+     * @param pagesDir The directory to write the pages to, next to the index.
+     * @param pageSize The maximum number of entries on a page.
+     * @param gzip Whether to write a gzip-compressed copy of every page.
+     */
+    private PagedHtmlReport(Path pagesDir, int pageSize, boolean gzip) {
+        this.pagesDir = pagesDir;
+        this.pagesDirName = pagesDir.getFileName().toString();
+        this.pageSize = pageSize;
+        this.gzip = gzip;
+    }
+
+    private static String pageName(LogEvent kind, int page) {
+        return kind + "-" + page + ".html";
+    }
+
+    private static String title(LogEvent kind) {
+        return Character.toUpperCase(kind.toString().charAt(0)) + kind.toString().substring(1);
+    }
+
+    private int pageCount(LogEvent kind) {
+        return (counts.getOrDefault(kind, 0) + pageSize - 1) / pageSize;
+    }
+
+    private PrintStream openPage(LogEvent kind, int page, int pageCount, String indexName) throws IOException {
+        var path = pagesDir.resolve(pageName(kind, page));
+        OutputStream os = new BufferedOutputStream(Files.newOutputStream(path));
+        if (gzip) {
+            var gz = new GZIPOutputStream(Files.newOutputStream(path.resolveSibling(path.getFileName() + ".gz")), 65536);
+            os = new TeeOutputStream(os, gz);
+        }
+        var ps = new PrintStream(os, false, StandardCharsets.UTF_8);
+        ps.println("<!DOCTYPE html>");
+        ps.println("<html>");
+        ps.println("<link rel=\"stylesheet\" href=\"../../style.css\">");
+        ps.append("<p><a href=\"../").append(indexName).append("\">Index</a>");
+        if (page > 1) {
+            ps.append(" | <a href=\"").append(pageName(kind, page - 1)).append("\">Previous</a>");
+        }
+        if (page < pageCount) {
+            ps.append(" | <a href=\"").append(pageName(kind, page + 1)).append("\">Next</a>");
+        }
+        ps.append(" | ").append(title(kind)).append(", page ").append(Integer.toString(page))
+                .append(" of ").append(Integer.toString(pageCount)).println("</p>");
+        ps.println("<table>");
+        return ps;
+    }
+
+    private static void closePage(PrintStream ps) {
+        ps.println("</table>");
+        ps.println("</html>");
+        ps.close();
+    }
+
+    /**
+     * Write the report.
+     * @param index The path of the index file, the pages are written to a
+     * directory with the same name and suffix {@code .pages}.
+     * @param result The result of the test.
+     * @param entries The log entries, iterated twice.
+     * @param pageSize The maximum number of entries on a page.
+     * @param gzip Whether to write a gzip-compressed copy of every page for
+     * web servers which serve precompressed files.
+     * @throws IOException If writing fails.
+     */
+    static void write(Path index, TestResult result, Iterable<LogEntry> entries, int pageSize, boolean gzip) throws IOException {
+        var indexName = index.getFileName().toString();
+        var pagesDir = Files.createDirectories(index.resolveSibling(indexName.substring(0, indexName.length() - ".html".length()) + ".pages"));
+        var report = new PagedHtmlReport(pagesDir, pageSize, gzip);
+
+        // Counting first, the pages show their total number
+        for (var entry : entries) {
+            report.counts.merge(entry.kind(), 1, Integer::sum);
+        }
+
+        var written = new EnumMap<LogEvent, Integer>(LogEvent.class);
+        try {
+            for (var entry : entries) {
+                var kind = entry.kind();
+                int position = written.merge(kind, 1, Integer::sum) - 1;
+                if (position % pageSize == 0) {
+                    var previous = report.pages.remove(kind);
+                    if (previous != null) {
+                        closePage(previous);
+                    }
+                    report.pages.put(kind, report.openPage(kind, position / pageSize + 1, report.pageCount(kind), indexName));
+                }
+                var ps = report.pages.get(kind);
+                ps.println("  <tr>");
+                ps.println("    <td>" + HtmlDecorator.INSTANCE.decorate(kind.getDecorated()) + "</td>");
+                ps.println("    <td>" + Main.decoratedObjects(entry, HtmlDecorator.INSTANCE) + "</td>");
+                ps.println("  </tr>");
+            }
+        } finally {
+            for (var ps : report.pages.values()) {
+                closePage(ps);
+            }
+        }
+
+        try (var ps = new PrintStream(Files.newOutputStream(index), false, StandardCharsets.UTF_8)) {
+            ps.println("<!DOCTYPE html>");
+            ps.println("<html>");
+            ps.println("<link rel=\"stylesheet\" href=\"../style.css\">");
+            ps.println("<p>Result: " + HtmlDecorator.INSTANCE.escape(result.toString()) + "</p>");
+            ps.println("<table>");
+            ps.println("  <tr><th>Kind</th><th>Entries</th><th>Pages</th></tr>");
+            for (var kind : LogEvent.values()) {
+                ps.append("  <tr><td>").append(HtmlDecorator.INSTANCE.decorate(kind.getDecorated()))
+                        .append("</td><td>").append(Integer.toString(report.counts.getOrDefault(kind, 0))).append("</td><td>");
+                for (int page = 1; page <= report.pageCount(kind); ++page) {
+                    ps.append(page == 1 ? "" : " ").append("<a href=\"").append(report.pagesDirName).append('/')
+                            .append(pageName(kind, page)).append("\">").append(Integer.toString(page)).append("</a>");
+                }
+                ps.println("</td></tr>");
+            }
+            ps.println("</table>");
+            ps.println("</html>");
+        }
+    }
+}
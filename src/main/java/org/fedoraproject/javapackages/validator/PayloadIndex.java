@@ -0,0 +1,19 @@
+package org.fedoraproject.javapackages.validator;
+
+import org.fedoraproject.javapackages.validator.util.PayloadFacts;
+
+import io.kojan.javadeptools.rpm.RpmPackage;
+
+/**
+ * Index of facts about RPM payloads shared by validators and persisted between
+ * runs. The facts of an RPM package are extracted from its payload at most
+ * once, even if they are requested by several validators at the same time.
+ */
+public interface PayloadIndex {
+    /**
+     * @param rpm The RPM package.
+     * @return The facts about the payload of the RPM package.
+     * @throws Exception If the facts could not be extracted.
+     */
+    PayloadFacts get(RpmPackage rpm) throws Exception;
+}
@@ -0,0 +1,108 @@
+package org.fedoraproject.javapackages.validator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Memory and CPU limits of the process, taken from the cgroup of a container
+ * when it is more restrictive than the JVM limits. Both cgroup v2 and cgroup
+ * v1 hierarchies mounted at the usual location are recognized, the limits
+ * are read from the root of the hierarchy as seen by the process, which is
+ * the cgroup of the container.
+ * @param memory The memory available to the process in bytes.
+ * @param cpus The number of CPUs available to the process.
+ */
+record ResourceLimits(long memory, int cpus) {
+    // cgroup v1 reports no limit as the maximum value rounded down to pages
+    private static final long UNLIMITED = Long.MAX_VALUE / 2;
+
+    static ResourceLimits detect() {
+        return detect(Paths.get("/sys/fs/cgroup"));
+    }
+
+    /**
+     * @param cgroupRoot The mount point of the cgroup file system.
+     * @return The limits of the process.
+     */
+    static ResourceLimits detect(Path cgroupRoot) {
+        long memory = Runtime.getRuntime().maxMemory();
+        int cpus = Runtime.getRuntime().availableProcessors();
+
+        long memoryLimit = readLong(cgroupRoot.resolve("memory.max"));
+        if (memoryLimit == -1) {
+            memoryLimit = readLong(cgroupRoot.resolve("memory").resolve("memory.limit_in_bytes"));
+        }
+        if (memoryLimit > 0 && memoryLimit < UNLIMITED) {
+            memory = Math.min(memory, memoryLimit);
+        }
+
+        long quota = -1;
+        long period = -1;
+        var cpuMax = readString(cgroupRoot.resolve("cpu.max"));
+        if (cpuMax != null) {
+            var fields = cpuMax.split(" ");
+            if (fields.length == 2 && !fields[0].equals("max")) {
+                quota = parseLong(fields[0]);
+                period = parseLong(fields[1]);
+            }
+        } else {
+            quota = readLong(cgroupRoot.resolve("cpu").resolve("cpu.cfs_quota_us"));
+            period = readLong(cgroupRoot.resolve("cpu").resolve("cpu.cfs_period_us"));
+        }
+        if (quota > 0 && period > 0) {
+            cpus = (int) Math.clamp((quota + period - 1) / period, 1, cpus);
+        }
+
+        return new ResourceLimits(memory, cpus);
+    }
+
+    private static String readString(Path path) {
+        try {
+            return Files.readString(path).trim();
+        } catch (IOException | SecurityException ex) {
+            return null;
+        }
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return The number read from the file or -1 if the file does not exist
+     * or does not contain a number, such as "max".
+     */
+    private static long readLong(Path path) {
+        var value = readString(path);
+        return value != null ? parseLong(value) : -1;
+    }
+
+    /**
+     * @return The default budget of RPM files being processed at once, whose
+     * headers and payload buffers are held in memory.
+     */
+    long fileBudget() {
+        return memory / 8;
+    }
+
+    /**
+     * @return The default budget of uncompressed payloads being processed at
+     * once, which validators extract from.
+     */
+    long payloadBudget() {
+        return memory / 2;
+    }
+
+    /**
+     * @return The budget of the facts shared by tests in the fact store.
+     */
+    long factBudget() {
+        return memory / 16;
+    }
+}
@@ -0,0 +1,53 @@
+package org.fedoraproject.javapackages.validator;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.fedoraproject.javapackages.validator.spi.LogEntry;
+import org.fedoraproject.javapackages.validator.spi.TestResult;
+
+import io.kojan.javadeptools.rpm.RpmPackage;
+
+/**
+ * Cache of validation results persisted between runs. Results are stored under
+ * a key chosen by the validator, for example the RPM file path, together with a
+ * fingerprint of the inputs they were computed from. A cached result is only
+ * returned if the fingerprint matches.
+ */
+public interface ResultCache {
+    /**
+     * A result of a validation of a part of the input.
+     * @param result The merged result state.
+     * @param log The log entries produced.
+     */
+    public static record Entry(TestResult result, List<LogEntry> log) {
+    }
+
+    /**
+     * @param rpm An RPM package being validated.
+     * @return The fingerprint of the content of the RPM file or null if it is
+     * not known.
+     */
+    String fingerprint(RpmPackage rpm);
+
+    /**
+     * @param validatorClass The class of a validator.
+     * @return A fingerprint identifying the implementation of the validator,
+     * results computed by a different implementation are not reused.
+     */
+    String implementationFingerprint(Class<?> validatorClass);
+
+    Optional<Entry> getResult(String testName, String key, String fingerprint);
+
+    void putResult(String testName, String key, String fingerprint, Entry entry);
+
+    /**
+     * Obtain persisted validator-specific data derived from an input.
+     * @param testName The test name of the validator.
+     * @param fingerprint The fingerprint of the input the data were computed from.
+     * @return The stored data.
+     */
+    Optional<List<String>> getIndex(String testName, String fingerprint);
+
+    void putIndex(String testName, String fingerprint, List<String> values);
+}
@@ -0,0 +1,126 @@
+package org.fedoraproject.javapackages.validator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import org.fedoraproject.javapackages.validator.spi.Decorated;
+import org.fedoraproject.javapackages.validator.spi.Decoration;
+import org.fedoraproject.javapackages.validator.spi.LogEntry;
+import org.fedoraproject.javapackages.validator.spi.LogEvent;
+import org.fedoraproject.javapackages.validator.spi.TestResult;
+
+/**
+ * Binary serialization of log entries and results. Decorated objects are
+ * stored as their string representation together with their decoration.
+ */
+class ResultCodec {
+    static void writeString(DataOutput out, String value) throws IOException {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        var bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeStrings(DataOutput out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (var value : values) {
+            writeString(out, value);
+        }
+    }
+
+    static List<String> readStrings(DataInput in) throws IOException {
+        int size = in.readInt();
+        var result = new ArrayList<String>(size);
+        for (int i = 0; i != size; ++i) {
+            result.add(readString(in));
+        }
+        return result;
+    }
+
+    static void writeDecorated(DataOutput out, Decorated decorated) throws IOException {
+        writeString(out, Objects.toString(decorated.getObject()));
+        var decoration = decorated.getDecoration();
+        out.writeByte(decoration.color().map(Enum::ordinal).orElse(-1));
+        var modifiers = new ArrayList<Decoration.Modifier>();
+        for (var modifier : decoration.modifiers()) {
+            modifiers.add(modifier);
+        }
+        out.writeByte(modifiers.size());
+        for (var modifier : modifiers) {
+            out.writeByte(modifier.ordinal());
+        }
+    }
+
+    static Decorated readDecorated(DataInput in) throws IOException {
+        var object = readString(in);
+        int color = in.readByte();
+        var modifiers = new Decoration.Modifier[in.readByte()];
+        for (int i = 0; i != modifiers.length; ++i) {
+            modifiers[i] = Decoration.Modifier.values()[in.readByte()];
+        }
+        if (color < 0) {
+            // Modifiers are only meaningful together with a color
+            return Decorated.plain(object);
+        }
+        return Decorated.custom(object, new Decoration(Decoration.Color.values()[color], modifiers));
+    }
+
+    static LogEntry createEntry(LogEvent kind, String pattern, Decorated... objects) {
+        return switch (kind) {
+            case debug -> LogEntry.debug(pattern, objects);
+            case skip -> LogEntry.skip(pattern, objects);
+            case pass -> LogEntry.pass(pattern, objects);
+            case info -> LogEntry.info(pattern, objects);
+            case warn -> LogEntry.warn(pattern, objects);
+            case fail -> LogEntry.fail(pattern, objects);
+            case error -> LogEntry.error(pattern, objects);
+        };
+    }
+
+    static void writeEntry(DataOutput out, LogEntry entry) throws IOException {
+        out.writeByte(entry.kind().ordinal());
+        writeString(out, entry.pattern());
+        out.writeInt(entry.objects().length);
+        for (var object : entry.objects()) {
+            writeDecorated(out, object);
+        }
+    }
+
+    static LogEntry readEntry(DataInput in) throws IOException {
+        var kind = LogEvent.values()[in.readByte()];
+        var pattern = readString(in);
+        var objects = new Decorated[in.readInt()];
+        for (int i = 0; i != objects.length; ++i) {
+            objects[i] = readDecorated(in);
+        }
+        return createEntry(kind, pattern, objects);
+    }
+
+    static void writeResult(DataOutput out, ResultCache.Entry result) throws IOException {
+        out.writeByte(result.result().ordinal());
+        out.writeInt(result.log().size());
+        for (var entry : result.log()) {
+            writeEntry(out, entry);
+        }
+    }
+
+    static ResultCache.Entry readResult(DataInput in) throws IOException {
+        var result = TestResult.values()[in.readByte()];
+        int size = in.readInt();
+        var log = new ArrayList<LogEntry>(size);
+        for (int i = 0; i != size; ++i) {
+            log.add(readEntry(in));
+        }
+        return new ResultCache.Entry(result, log);
+    }
+}
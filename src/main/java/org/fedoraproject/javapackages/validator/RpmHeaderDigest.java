@@ -0,0 +1,24 @@
+package org.fedoraproject.javapackages.validator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HexFormat;
+
+import org.fedoraproject.javapackages.validator.util.RpmHeader;
+
+/**
+ * Computes a digest of the main header of an RPM file without reading its
+ * payload. The main header contains the digest of the payload, therefore the
+ * header digest identifies the whole content of the RPM file, regardless of its
+ * signatures.
+ */
+class RpmHeaderDigest {
+    /**
+     * @param path The RPM file.
+     * @return Hexadecimal SHA-256 digest of the main header of the RPM file.
+     * @throws IOException If the file is not an RPM file.
+     */
+    public static String compute(Path path) throws IOException {
+        return HexFormat.of().formatHex(RpmHeader.read(path).digest());
+    }
+}
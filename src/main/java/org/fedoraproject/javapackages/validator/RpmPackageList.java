@@ -0,0 +1,153 @@
+package org.fedoraproject.javapackages.validator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+import io.kojan.javadeptools.rpm.RpmPackage;
+
+/**
+ * List of the tested RPM packages which does not keep the packages in memory
+ * for the whole run. Only a compact {@link RpmSummary} is held for each
+ * package. A package with its header data is read from its file when it is
+ * acquired and kept in memory exactly as long as some test holds it, so the
+ * tests which hold a package at the same time share a single object and the
+ * memory used is bounded by the packages admitted by the
+ * {@link AdmissionController}.
+ * <p>
+ * Reading is thread-safe, validators iterate the list concurrently. A package
+ * which was read again is a new object, validators must not rely on the
+ * identity of packages between separate iterations.
+ */
+class RpmPackageList extends AbstractList<RpmPackage> {
+    private static final class Entry {
+        final RpmSummary summary;
+        // Guarded by this entry
+        RpmPackage rpm = null;
+        int holders = 0;
+
+        Entry(RpmSummary summary) {
+            this.summary = summary;
+        }
+
+        RpmPackage read() {
+            try {
+                return new RpmPackage(summary.path());
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+
+    private List<Entry> entries = new ArrayList<>();
+
+    /**
+     * Add a package, only its summary is retained, the package is read again
+     * when it is accessed.
+     */
+    @Override
+    public boolean add(RpmPackage rpm) {
+        return entries.add(new Entry(RpmSummary.of(rpm)));
+    }
+
+    /**
+     * Add a package which is read from its file when it is first accessed.
+     * @param summary The summary of the package.
+     */
+    void add(RpmSummary summary) {
+        entries.add(new Entry(summary));
+    }
+
+    /**
+     * @return The package if it is held, otherwise the package read from its
+     * file, which is not retained.
+     */
+    @Override
+    public RpmPackage get(int index) {
+        var entry = entries.get(index);
+        synchronized (entry) {
+            return entry.rpm != null ? entry.rpm : entry.read();
+        }
+    }
+
+    /**
+     * Hold the package in memory until it is released, reading it if no one
+     * holds it yet. Each call needs a matching call of {@link #release(int)}.
+     * @param index The index of the package.
+     * @return The package.
+     */
+    RpmPackage acquire(int index) {
+        var entry = entries.get(index);
+        synchronized (entry) {
+            if (entry.rpm == null) {
+                entry.rpm = entry.read();
+            }
+            ++entry.holders;
+            return entry.rpm;
+        }
+    }
+
+    /**
+     * Release the package acquired by {@link #acquire(int)}, it is dropped
+     * when no one holds it anymore.
+     * @param index The index of the package.
+     */
+    void release(int index) {
+        var entry = entries.get(index);
+        synchronized (entry) {
+            if (--entry.holders == 0) {
+                entry.rpm = null;
+            }
+        }
+    }
+
+    /**
+     * @param index The index of the package.
+     * @return Whether the package is currently held in memory.
+     */
+    boolean isHeld(int index) {
+        var entry = entries.get(index);
+        synchronized (entry) {
+            return entry.rpm != null;
+        }
+    }
+
+    RpmSummary getSummary(int index) {
+        return entries.get(index).summary;
+    }
+
+    /**
+     * @return The paths of the packages, without reading the packages.
+     */
+    List<Path> getPaths() {
+        return entries.stream().map(entry -> entry.summary.path()).toList();
+    }
+
+    /**
+     * Remove the packages which do not match the predicate, without reading
+     * the packages again.
+     * @param predicate The predicate on the summaries of packages to retain.
+     */
+    void retainSummaries(Predicate<RpmSummary> predicate) {
+        entries.removeIf(entry -> !predicate.test(entry.summary));
+    }
+
+    /**
+     * Sort the packages by their summaries, without reading the packages
+     * again.
+     * @param comparator The order of the summaries.
+     */
+    void sortSummaries(Comparator<RpmSummary> comparator) {
+        entries.sort(Comparator.comparing(entry -> entry.summary, comparator));
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+}
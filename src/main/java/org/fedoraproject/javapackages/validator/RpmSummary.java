@@ -0,0 +1,40 @@
+package org.fedoraproject.javapackages.validator;
+
+import java.nio.file.Path;
+import java.util.Objects;
+
+import org.fedoraproject.javapackages.validator.util.RpmHeader;
+
+import io.kojan.javadeptools.rpm.RpmPackage;
+
+/**
+ * The few attributes of an RPM package which are needed for the whole run,
+ * independent of the selected validators. Strings shared by the subpackages of
+ * one source package are interned.
+ * @param path The path of the RPM file.
+ * @param name The package name.
+ * @param arch The package architecture.
+ * @param sourcePackage Whether the package is a source package.
+ * @param groupKey The file name of the source RPM of the package.
+ * @param fileSize The size of the RPM file.
+ * @param payloadSize The size of the files of the package, 0 if unknown.
+ */
+record RpmSummary(Path path, String name, String arch, boolean sourcePackage, String groupKey,
+        long fileSize, long payloadSize) {
+    private static String intern(String value) {
+        return value != null ? value.intern() : null;
+    }
+
+    static RpmSummary of(RpmPackage rpm) {
+        var info = rpm.getInfo();
+        var groupKey = info.isSourcePackage() ? Objects.toString(rpm.getPath().getFileName()) : info.getSourceRPM();
+        return new RpmSummary(rpm.getPath(), intern(info.getName()), intern(info.getArch()),
+                info.isSourcePackage(), intern(groupKey), rpm.getPath().toFile().length(), 0);
+    }
+
+    static RpmSummary of(RpmHeader header) {
+        var groupKey = header.isSourcePackage() ? Objects.toString(header.getPath().getFileName()) : header.getSourceRPM();
+        return new RpmSummary(header.getPath(), intern(header.getName()), intern(header.getArch()),
+                header.isSourcePackage(), intern(groupKey), header.getFileSize(), header.getSize());
+    }
+}
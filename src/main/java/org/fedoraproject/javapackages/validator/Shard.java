@@ -0,0 +1,37 @@
+package org.fedoraproject.javapackages.validator;
+
+/**
+ * A deterministic partition of the tested RPM files. RPM files are assigned to
+ * shards by the name of their source RPM so that all RPM files built from the
+ * same source package are validated by the same shard. RPM files without a
+ * known source RPM are assigned by their path.
+ * @param index The one-based index of the shard.
+ * @param count The total number of shards.
+ */
+record Shard(int index, int count) {
+    /**
+     * @param spec Shard specification in the format {@code i/N}.
+     * @return The parsed shard.
+     */
+    static Shard parse(String spec) {
+        var pos = spec.indexOf('/');
+        if (pos == -1) {
+            throw new IllegalArgumentException("Invalid shard specification, expected i/N: " + spec);
+        }
+        var result = new Shard(Integer.parseInt(spec.substring(0, pos)), Integer.parseInt(spec.substring(pos + 1)));
+        if (result.count() < 1 || result.index() < 1 || result.index() > result.count()) {
+            throw new IllegalArgumentException("Invalid shard specification, expected 1 <= i <= N: " + spec);
+        }
+        return result;
+    }
+
+    boolean contains(RpmSummary rpm) {
+        var key = rpm.groupKey() != null ? rpm.groupKey() : rpm.path().toString();
+        return Math.floorMod(key.hashCode(), count) == index - 1;
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+}
@@ -0,0 +1,89 @@
+package org.fedoraproject.javapackages.validator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.commons.collections4.IterableUtils;
+
+/**
+ * Serialized results of a single shard of a sharded run.
+ */
+class ShardFile {
+    private static final int MAGIC = 0x4a505653;
+    private static final int VERSION = 1;
+
+    /**
+     * The result of a single test in a shard.
+     * @param testName The test name.
+     * @param result The result and the log of the test.
+     * @param startTime The start time or null.
+     * @param endTime The end time or null.
+     * @param partial The partial index of a {@link MergeableValidator} or null.
+     */
+    static record Part(String testName, ResultCache.Entry result, LocalDateTime startTime,
+            LocalDateTime endTime, List<String> partial) {
+    }
+
+    private static void writeTime(DataOutputStream os, LocalDateTime time) throws IOException {
+        ResultCodec.writeString(os, Objects.toString(time, ""));
+    }
+
+    private static LocalDateTime readTime(DataInputStream is) throws IOException {
+        var value = ResultCodec.readString(is);
+        return value.isEmpty() ? null : LocalDateTime.parse(value);
+    }
+
+    static void write(Path path, Shard shard, List<NamedResult> results, Map<String, List<String>> partials) throws IOException {
+        try (var os = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            os.writeInt(MAGIC);
+            os.writeInt(VERSION);
+            ResultCodec.writeString(os, shard.toString());
+            os.writeInt(results.size());
+            for (var result : results) {
+                ResultCodec.writeString(os, result.getTestName());
+                ResultCodec.writeResult(os, new ResultCache.Entry(result.getResult(), IterableUtils.toList(result)));
+                writeTime(os, result.getStartTime());
+                writeTime(os, result.getEndTime());
+                var partial = partials.get(result.getTestName());
+                os.writeBoolean(partial != null);
+                if (partial != null) {
+                    ResultCodec.writeStrings(os, partial);
+                }
+            }
+        }
+    }
+
+    static List<Part> read(Path path) throws IOException {
+        try (var is = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (is.readInt() != MAGIC || is.readInt() != VERSION) {
+                throw new IOException("File " + path + " is not a shard result file of a supported version");
+            }
+            // Shard specification, informative only
+            ResultCodec.readString(is);
+            int size = is.readInt();
+            var result = new ArrayList<Part>(size);
+            for (int i = 0; i != size; ++i) {
+                var testName = ResultCodec.readString(is);
+                var entry = ResultCodec.readResult(is);
+                var startTime = readTime(is);
+                var endTime = readTime(is);
+                List<String> partial = null;
+                if (is.readBoolean()) {
+                    partial = ResultCodec.readStrings(is);
+                }
+                result.add(new Part(testName, entry, startTime, endTime, partial));
+            }
+            return result;
+        }
+    }
+}
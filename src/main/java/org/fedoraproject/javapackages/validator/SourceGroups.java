@@ -0,0 +1,98 @@
+package org.fedoraproject.javapackages.validator;
+
+import java.util.Objects;
+import java.util.concurrent.Phaser;
+
+/**
+ * Groups of RPM packages built from the same source package, in a list sorted
+ * by the group keys. Tests iterating the list pass a barrier between groups,
+ * no test receives a package of the next group until all tests finished the
+ * current group. Only the packages of a single group are therefore being
+ * read at a time and the results of a group are reported before the next
+ * group is read.
+ * <p>
+ * A test which starts after the others passed some groups iterates the passed
+ * groups without waiting and joins the barrier at the current group. Tests
+ * leave the barrier when they finish their first iteration of the list.
+ */
+class SourceGroups {
+    private final int[] groups;
+    private final int count;
+    private final Phaser phaser = new Phaser() {
+        @Override
+        protected boolean onAdvance(int phase, int registeredParties) {
+            // Tests join and leave at any time, the barrier never terminates
+            return false;
+        }
+    };
+
+    /**
+     * @param rpms The RPM packages sorted by their group keys.
+     */
+    SourceGroups(RpmPackageList rpms) {
+        groups = new int[rpms.size()];
+        int group = -1;
+        String previous = null;
+        for (int i = 0; i != rpms.size(); ++i) {
+            var key = rpms.getSummary(i).groupKey();
+            if (i == 0 || !Objects.equals(key, previous)) {
+                ++group;
+            }
+            groups[i] = group;
+            previous = key;
+        }
+        count = group + 1;
+    }
+
+    /**
+     * @return The number of groups.
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * A test iterating the list.
+     */
+    class Member {
+        private volatile boolean registered = true;
+
+        private Member() {
+            phaser.register();
+        }
+
+        /**
+         * Wait until all tests finished the groups before the group of the
+         * package.
+         * @param index The index of the next package of the test.
+         */
+        void enter(int index) {
+            if (!registered) {
+                return;
+            }
+            // The phase of the barrier is the group being processed, this
+            // test finished it
+            while (groups[index] > phaser.getPhase()) {
+                phaser.arriveAndAwaitAdvance();
+            }
+        }
+
+        /**
+         * Leave the barrier, the other tests no longer wait for this test.
+         */
+        synchronized void leave() {
+            if (registered) {
+                registered = false;
+                phaser.arriveAndDeregister();
+            }
+        }
+    }
+
+    /**
+     * @return A new member of the barrier, which must leave it when it
+     * finishes its iteration.
+     */
+    Member join() {
+        return new Member();
+    }
+}
@@ -0,0 +1,109 @@
+package org.fedoraproject.javapackages.validator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Index mapping test names to the classes of their validators and factories.
+ * The index is cached between runs so that runs which select only some tests
+ * do not need to instantiate all validators. The cached index is valid only
+ * as long as its fingerprint, computed from the class path, does not change.
+ */
+class TestIndex {
+    /**
+     * @param testName The test name.
+     * @param factoryClass The name of the factory class providing the validator.
+     * @param validatorClass The name of the validator class.
+     */
+    static record Entry(String testName, String factoryClass, String validatorClass) {
+    }
+
+    private static final String HEADER = "# javapackages-validator test index ";
+
+    private final List<Entry> entries;
+
+    TestIndex(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    List<Entry> get(String testName) {
+        return entries.stream().filter(entry -> entry.testName().equals(testName)).toList();
+    }
+
+    /**
+     * @param classPaths The class path entries to fingerprint.
+     * @param factories The factory arguments which restrict the indexed factories.
+     * The files of directories are visited and their attributes are read on
+     * every call.
+     * @return A string which changes whenever any of the class path entries
+     * or the restriction changes.
+     * @throws IOException If reading file attributes fails.
+     */
+    static String fingerprint(Collection<Path> classPaths, Collection<String> factories) throws IOException {
+        var result = new StringBuilder();
+        result.append(String.join(",", factories));
+        for (var classPath : classPaths) {
+            result.append(':').append(classPath);
+            if (Files.isDirectory(classPath)) {
+                long count = 0;
+                long mtime = 0;
+                try (var stream = Files.find(classPath, Integer.MAX_VALUE, (p, a) -> true, FileVisitOption.FOLLOW_LINKS)) {
+                    for (var path : (Iterable<Path>) stream::iterator) {
+                        ++count;
+                        mtime = Math.max(mtime, Files.getLastModifiedTime(path).toMillis());
+                    }
+                }
+                result.append('=').append(count).append('@').append(mtime);
+            } else if (Files.isRegularFile(classPath)) {
+                result.append('=').append(Files.size(classPath)).append('@').append(Files.getLastModifiedTime(classPath).toMillis());
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * @param path The path of the cached index.
+     * @param fingerprint The expected fingerprint.
+     * @return The cached index or empty if it does not exist or is out of date.
+     * @throws IOException If reading the index fails.
+     */
+    static Optional<TestIndex> load(Path path, String fingerprint) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return Optional.empty();
+        }
+        var lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).equals(HEADER + fingerprint)) {
+            return Optional.empty();
+        }
+        var entries = new ArrayList<Entry>(lines.size() - 1);
+        for (var line : lines.subList(1, lines.size())) {
+            var fields = line.split("\t", 3);
+            if (fields.length != 3) {
+                return Optional.empty();
+            }
+            entries.add(new Entry(fields[0], fields[1], fields[2]));
+        }
+        return Optional.of(new TestIndex(entries));
+    }
+
+    void save(Path path, String fingerprint) throws IOException {
+        var tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (var writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            writer.append(HEADER).append(fingerprint).append('\n');
+            for (var entry : entries) {
+                writer.append(entry.testName()).append('\t')
+                        .append(entry.factoryClass()).append('\t')
+                        .append(entry.validatorClass()).append('\n');
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
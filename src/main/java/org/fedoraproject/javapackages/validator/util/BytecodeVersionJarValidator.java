@@ -1,7 +1,8 @@
 package org.fedoraproject.javapackages.validator.util;
 
 import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Map;
@@ -15,7 +16,7 @@ import org.fedoraproject.javapackages.validator.spi.TestResult;
 
 import io.kojan.javadeptools.rpm.RpmPackage;
 
-public abstract class BytecodeVersionJarValidator extends JarValidator {
+public abstract class BytecodeVersionJarValidator extends JarValidator implements JarFactsConsumer {
     public static record Version(short major, short minor) {
         @Override
         public String toString() {
@@ -23,32 +24,107 @@ public abstract class BytecodeVersionJarValidator extends JarValidator {
         }
     }
 
+    // Subclasses written before the histogram variant existed override only
+    // the variant with the version of each class, it is then always called
+    private final boolean classDetailOnly = overridesValidate(Map.class) && !overridesValidate(ClassVersionHistogram.class);
+
+    private boolean overridesValidate(Class<?> versionsType) {
+        try {
+            return getClass().getMethod("validate", RpmPackage.class, Path.class, versionsType).getDeclaringClass()
+                    != BytecodeVersionJarValidator.class;
+        } catch (NoSuchMethodException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private boolean needsDetail(RpmPackage rpm, Path jarPath, ClassVersionHistogram histogram) {
+        return classDetailOnly || needsClassDetail(rpm, jarPath, histogram);
+    }
+
     @Override
     public void acceptJarEntry(RpmPackage rpm, CpioArchiveEntry rpmEntry, byte[] content) throws Exception {
         var jarPath = Paths.get(rpmEntry.getName().substring(1));
-        var classVersions = new TreeMap<Path, Version>();
+        var histogram = getFact(rpm, rpmEntry.getName(), PayloadFacts.CLASS_VERSIONS, () -> PayloadFacts.extractClassVersions(content));
+        if (needsDetail(rpm, jarPath, histogram)) {
+            validate(rpm, jarPath, readClassVersions(content));
+        } else {
+            validate(rpm, jarPath, histogram);
+        }
 
+        reportVersions(rpm, jarPath, histogram);
+    }
+
+    /**
+     * The content is inflated once more only when the version of each class
+     * is needed.
+     */
+    private static Map<Path, Version> readClassVersions(byte[] content) throws IOException {
+        var classVersions = new TreeMap<Path, Version>();
+        var classHeader = new byte[8];
         try (var jarStream = new JarInputStream(new ByteArrayInputStream(content))) {
             for (JarEntry jarEntry; ((jarEntry = jarStream.getNextJarEntry()) != null);) {
-                var classPath = Paths.get(jarEntry.getName());
-
-                if (classPath.toString().endsWith(".class")) {
-                    var dataInput = new DataInputStream(jarStream);
-                    dataInput.readInt(); // magic number
-                    var minorVersion = dataInput.readShort();
-                    var majorVersion = dataInput.readShort();
-                    classVersions.put(classPath, new Version(majorVersion, minorVersion));
+                if (jarEntry.getName().endsWith(".class")) {
+                    readClassHeader(jarStream, jarEntry, classHeader);
+                    classVersions.put(Paths.get(jarEntry.getName()), new Version(readShort(classHeader, 6), readShort(classHeader, 4)));
                 }
             }
         }
+        return classVersions;
+    }
 
-        validate(rpm, jarPath, classVersions);
-
+    private void reportVersions(RpmPackage rpm, Path jarPath, ClassVersionHistogram histogram) {
         if (TestResult.pass.equals(getResult())) {
             pass("{0}: {1}: found bytecode versions: {2}",
                     Decorated.rpm(rpm),
                     Decorated.custom(jarPath, DECORATION_JAR),
-                    Decorated.actual(classVersions.values().stream().distinct().toList()));
+                    Decorated.actual(histogram.getVersions()));
+        }
+    }
+
+    @Override
+    public boolean needsJarContent(RpmPackage rpm, PayloadFacts.Jar jar) {
+        return needsDetail(rpm, Paths.get(jar.name().substring(1)), jar.classVersions());
+    }
+
+    @Override
+    public void acceptJarFacts(RpmPackage rpm, PayloadFacts.Jar jar) {
+        var jarPath = Paths.get(jar.name().substring(1));
+        validate(rpm, jarPath, jar.classVersions());
+        reportVersions(rpm, jarPath, jar.classVersions());
+    }
+
+    private static void readClassHeader(JarInputStream jarStream, JarEntry jarEntry, byte[] classHeader) throws IOException {
+        // Magic number, minor version, major version
+        if (jarStream.readNBytes(classHeader, 0, classHeader.length) != classHeader.length) {
+            throw new EOFException("Truncated class file " + jarEntry.getName());
+        }
+    }
+
+    private static short readShort(byte[] buffer, int offset) {
+        return (short) (((buffer[offset] & 0xff) << 8) | (buffer[offset + 1] & 0xff));
+    }
+
+    /**
+     * @param rpm The RPM package.
+     * @param jarPath The path of the JAR file in the RPM package.
+     * @param histogram The bytecode versions of the classes in the JAR file.
+     * @return Whether the bytecode version of each class is needed, in which
+     * case {@link #validate(RpmPackage, Path, Map)} is called instead of
+     * {@link #validate(RpmPackage, Path, ClassVersionHistogram)}. Not called
+     * for subclasses which override only the former, it is always called
+     * for them.
+     */
+    protected boolean needsClassDetail(RpmPackage rpm, Path jarPath, ClassVersionHistogram histogram) {
+        return isDebugEnabled();
+    }
+
+    public void validate(RpmPackage rpm, Path jarPath, ClassVersionHistogram histogram) {
+        for (var version : histogram.getVersions()) {
+            info("{0}: {1}: bytecode version: {2}: {3} classes",
+                    Decorated.rpm(rpm),
+                    Decorated.custom(jarPath, DECORATION_JAR),
+                    Decorated.actual(version),
+                    Decorated.plain(histogram.getCount(version)));
         }
     }
 
@@ -0,0 +1,86 @@
+package org.fedoraproject.javapackages.validator.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.fedoraproject.javapackages.validator.util.BytecodeVersionJarValidator.Version;
+
+/**
+ * Numbers of class files per bytecode version. A JAR file usually contains
+ * only a few distinct versions, therefore they are stored in small primitive
+ * arrays and looked up linearly.
+ */
+public class ClassVersionHistogram {
+    private int[] keys = new int[4];
+    private int[] counts = new int[4];
+    private int size = 0;
+
+    private static int key(short major, short minor) {
+        return (major << 16) | (minor & 0xffff);
+    }
+
+    public void add(short major, short minor) {
+        add(major, minor, 1);
+    }
+
+    public void add(short major, short minor, int count) {
+        var key = key(major, minor);
+        for (int i = 0; i != size; ++i) {
+            if (keys[i] == key) {
+                counts[i] += count;
+                return;
+            }
+        }
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, 2 * size);
+            counts = Arrays.copyOf(counts, 2 * size);
+        }
+        keys[size] = key;
+        counts[size] = count;
+        ++size;
+    }
+
+    /**
+     * @return The distinct versions ordered by their major and minor numbers.
+     */
+    public List<Version> getVersions() {
+        var sorted = Arrays.copyOf(keys, size);
+        Arrays.sort(sorted);
+        var result = new ArrayList<Version>(size);
+        for (var key : sorted) {
+            result.add(new Version((short) (key >> 16), (short) key));
+        }
+        return result;
+    }
+
+    public int getCount(Version version) {
+        var key = key(version.major(), version.minor());
+        for (int i = 0; i != size; ++i) {
+            if (keys[i] == key) {
+                return counts[i];
+            }
+        }
+        return 0;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public short getMinMajor() {
+        short result = Short.MAX_VALUE;
+        for (int i = 0; i != size; ++i) {
+            result = (short) Math.min(result, keys[i] >> 16);
+        }
+        return result;
+    }
+
+    public short getMaxMajor() {
+        short result = Short.MIN_VALUE;
+        for (int i = 0; i != size; ++i) {
+            result = (short) Math.max(result, keys[i] >> 16);
+        }
+        return result;
+    }
+}
@@ -1,24 +1,42 @@
 package org.fedoraproject.javapackages.validator.util;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
 import org.apache.commons.compress.archivers.cpio.CpioArchiveEntry;
+import org.apache.commons.compress.archivers.cpio.CpioConstants;
 import org.apache.commons.io.IOUtils;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-import io.kojan.javadeptools.rpm.RpmArchiveInputStream;
 import io.kojan.javadeptools.rpm.RpmInfo;
 import io.kojan.javadeptools.rpm.RpmPackage;
 
 public class Common {
-    @SuppressFBWarnings({"DMI_HARDCODED_ABSOLUTE_FILENAME"})
     public static Path getEntryPath(CpioArchiveEntry entry) {
-        return Paths.get("/").resolve(Paths.get("/").relativize(Paths.get("/").resolve(Paths.get(entry.getName()))));
+        return getEntryPath(entry.getName());
+    }
+
+    /**
+     * @param name The name of a payload entry.
+     * @return The absolute path of the entry.
+     */
+    @SuppressFBWarnings({"DMI_HARDCODED_ABSOLUTE_FILENAME"})
+    public static Path getEntryPath(String name) {
+        return Paths.get("/").resolve(Paths.get("/").relativize(Paths.get("/").resolve(Paths.get(name))));
     }
 
     public static String getPackageName(RpmInfo rpm) {
@@ -26,26 +44,279 @@ public class Common {
     }
 
     /**
-     * @param rpm The RPM package to inspect
-     * @return A map of file paths mapped to either the target of the symlink
-     * or null, if the file path is not a symlink.
-     * @throws IOException
+     * An entry of an RPM payload passed to a {@link PayloadEntryConsumer}.
+     * The same instance is reused for all entries of a payload, consumers
+     * must not retain it.
      */
-    public static SortedMap<CpioArchiveEntry, Path> rpmFilesAndSymlinks(RpmPackage rpm) throws IOException {
-        var result = new TreeMap<CpioArchiveEntry, Path>((lhs, rhs) -> lhs.getName().compareTo(rhs.getName()));
+    public static final class PayloadEntry {
+        private CpioArchiveEntry entry;
+        private byte[] target = new byte[256];
+        private int targetLength = -1;
+
+        private PayloadEntry() {
+        }
 
-        try (var is = new RpmArchiveInputStream(rpm.getPath())) {
+        private void set(CpioArchiveEntry entry, InputStream is) throws IOException {
+            this.entry = entry;
+            targetLength = -1;
+            if (entry.isSymbolicLink()) {
+                var length = (int) entry.getSize();
+                if (target.length < length) {
+                    target = new byte[Math.max(length, 2 * target.length)];
+                }
+                IOUtils.readFully(is, target, 0, length);
+                targetLength = length;
+            }
+        }
+
+        private void set(SortRecord record) {
+            entry = new CpioArchiveEntry(CpioConstants.FORMAT_NEW, record.name(), record.size());
+            entry.setMode(record.mode());
+            targetLength = -1;
+            if (record.target() != null) {
+                var bytes = record.target().getBytes(StandardCharsets.UTF_8);
+                target = bytes.length > target.length ? bytes : target;
+                System.arraycopy(bytes, 0, target, 0, bytes.length);
+                targetLength = bytes.length;
+            }
+        }
+
+        /**
+         * @return The archive entry, unlike this object it can be retained.
+         */
+        public CpioArchiveEntry getEntry() {
+            return entry;
+        }
+
+        public String getName() {
+            return entry.getName();
+        }
+
+        public Path getPath() {
+            return getEntryPath(entry);
+        }
+
+        public boolean isDirectory() {
+            return entry.isDirectory();
+        }
+
+        public boolean isSymbolicLink() {
+            return targetLength != -1;
+        }
+
+        /**
+         * @return The target of the symlink or null, if the entry is not a
+         * symlink. The target is decoded only when requested.
+         */
+        public String getSymlinkTarget() {
+            return targetLength == -1 ? null : new String(target, 0, targetLength, StandardCharsets.UTF_8);
+        }
+    }
+
+    @FunctionalInterface
+    public static interface PayloadEntryConsumer {
+        void accept(PayloadEntry entry) throws Exception;
+    }
+
+    /**
+     * Iterate over the entries of the payload of an RPM package in the order
+     * in which they are stored, without materializing the listing.
+     * @param rpm The RPM package to inspect.
+     * @param consumer The consumer called for each entry.
+     * @throws Exception If reading the payload or the consumer throws.
+     */
+    public static void forEachEntry(RpmPackage rpm, PayloadEntryConsumer consumer) throws Exception {
+        var payloadEntry = new PayloadEntry();
+        try (var is = PayloadDecoder.open(rpm.getPath())) {
             for (CpioArchiveEntry rpmEntry; (rpmEntry = is.getNextEntry()) != null;) {
-                Path target = null;
+                payloadEntry.set(rpmEntry, is);
+                consumer.accept(payloadEntry);
+            }
+        }
+    }
+
+    private static record SortRecord(String name, long mode, long size, String target) {
+        private void write(DataOutputStream os) throws IOException {
+            os.writeUTF(name);
+            os.writeLong(mode);
+            os.writeLong(size);
+            os.writeBoolean(target != null);
+            if (target != null) {
+                os.writeUTF(target);
+            }
+        }
 
-                if (rpmEntry.isSymbolicLink()) {
-                    var content = new byte[(int) rpmEntry.getSize()];
-                    IOUtils.read(is, content);
-                    target = Paths.get(new String(content, StandardCharsets.UTF_8));
+        private static SortRecord read(DataInputStream is) throws IOException {
+            var name = is.readUTF();
+            var mode = is.readLong();
+            var size = is.readLong();
+            var target = is.readBoolean() ? is.readUTF() : null;
+            return new SortRecord(name, mode, size, target);
+        }
+    }
+
+    private static final Comparator<SortRecord> SORT_ORDER = Comparator.comparing(SortRecord::name);
+    private static final int SORT_RUN_SIZE = 1 << 16;
+
+    /**
+     * Create a temporary file for a run. It is registered before anything is
+     * written to it, so that it is deleted even if writing fails.
+     */
+    private static Path createRun(Path tempDirectory, List<Path> runPaths) throws IOException {
+        var prefix = "javapackages-validator-entries-";
+        var path = tempDirectory == null ? Files.createTempFile(prefix, ".bin")
+                : Files.createTempFile(tempDirectory, prefix, ".bin");
+        runPaths.add(path);
+        return path;
+    }
+
+    private static void spill(Path path, List<SortRecord> run) throws IOException {
+        run.sort(SORT_ORDER);
+        try (var os = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            os.writeInt(run.size());
+            for (var record : run) {
+                record.write(os);
+            }
+        }
+    }
+
+    /**
+     * @param index The index of the run, earlier runs contain entries stored
+     * earlier in the payload.
+     */
+    private static record RunHead(SortRecord record, int index, DataInputStream is, int remaining) {
+    }
+
+    /**
+     * Passes sorted records to the consumer. Of the records with the same
+     * name only the last one is passed, as it replaces the previous ones
+     * when the payload is extracted.
+     */
+    private static class SortedEmitter {
+        private final PayloadEntry payloadEntry = new PayloadEntry();
+        private final PayloadEntryConsumer consumer;
+        private SortRecord pending = null;
+
+        SortedEmitter(PayloadEntryConsumer consumer) {
+            this.consumer = consumer;
+        }
+
+        void add(SortRecord record) throws Exception {
+            if (pending != null && !pending.name().equals(record.name())) {
+                flush();
+            }
+            pending = record;
+        }
+
+        void flush() throws Exception {
+            if (pending != null) {
+                payloadEntry.set(pending);
+                pending = null;
+                consumer.accept(payloadEntry);
+            }
+        }
+    }
+
+    /**
+     * Iterate over the entries of the payload of an RPM package ordered by
+     * their names. Payloads with many entries are sorted in bounded runs
+     * spilled to temporary files which are then merged, so the listing is
+     * never held in memory as a whole. Callers which do not need the ordering
+     * should use {@link #forEachEntry(RpmPackage, PayloadEntryConsumer)}.
+     * <p>
+     * Of the entries with the same name only the last one stored in the
+     * payload is passed to the consumer.
+     * @param rpm The RPM package to inspect.
+     * @param consumer The consumer called for each entry.
+     * @throws Exception If reading the payload or the consumer throws.
+     */
+    public static void forEachEntrySorted(RpmPackage rpm, PayloadEntryConsumer consumer) throws Exception {
+        forEachEntrySorted(rpm, consumer, SORT_RUN_SIZE, null);
+    }
+
+    /**
+     * @param runSize The number of entries sorted in memory at once.
+     * @param tempDirectory The directory of the spilled runs or null for the
+     * default temporary directory.
+     */
+    static void forEachEntrySorted(RpmPackage rpm, PayloadEntryConsumer consumer, int runSize, Path tempDirectory) throws Exception {
+        var runPaths = new ArrayList<Path>();
+        var run = new ArrayList<SortRecord>();
+        var inputs = new ArrayList<DataInputStream>();
+        try {
+            forEachEntry(rpm, entry -> {
+                run.add(new SortRecord(entry.getName(), entry.getEntry().getMode(),
+                        entry.getEntry().getSize(), entry.getSymlinkTarget()));
+                if (run.size() == runSize) {
+                    spill(createRun(tempDirectory, runPaths), run);
+                    run.clear();
+                }
+            });
+
+            var emitter = new SortedEmitter(consumer);
+            if (runPaths.isEmpty()) {
+                run.sort(SORT_ORDER);
+                for (var record : run) {
+                    emitter.add(record);
                 }
+                emitter.flush();
+                return;
+            }
+
+            if (!run.isEmpty()) {
+                spill(createRun(tempDirectory, runPaths), run);
+                run.clear();
+            }
 
-                result.put(rpmEntry, target);
+            // Ties are broken by the run index, so that entries with the same
+            // name are merged in payload order
+            var heads = new PriorityQueue<RunHead>(Comparator.comparing(RunHead::record, SORT_ORDER)
+                    .thenComparingInt(RunHead::index));
+            for (int index = 0; index != runPaths.size(); ++index) {
+                var is = new DataInputStream(new BufferedInputStream(Files.newInputStream(runPaths.get(index))));
+                inputs.add(is);
+                var size = is.readInt();
+                heads.add(new RunHead(SortRecord.read(is), index, is, size - 1));
+            }
+            while (!heads.isEmpty()) {
+                var head = heads.poll();
+                emitter.add(head.record());
+                if (head.remaining() != 0) {
+                    heads.add(new RunHead(SortRecord.read(head.is()), head.index(), head.is(), head.remaining() - 1));
+                }
+            }
+            emitter.flush();
+        } finally {
+            for (var is : inputs) {
+                is.close();
             }
+            for (var runPath : runPaths) {
+                Files.deleteIfExists(runPath);
+            }
+        }
+    }
+
+    /**
+     * @param rpm The RPM package to inspect
+     * @return A map of file paths mapped to either the target of the symlink
+     * or null, if the file path is not a symlink.
+     * @throws IOException
+     * @see #forEachEntry(RpmPackage, PayloadEntryConsumer) for a variant which
+     * does not hold the whole listing in memory.
+     */
+    public static SortedMap<CpioArchiveEntry, Path> rpmFilesAndSymlinks(RpmPackage rpm) throws IOException {
+        var result = new TreeMap<CpioArchiveEntry, Path>(Comparator.comparing(CpioArchiveEntry::getName));
+
+        try {
+            forEachEntry(rpm, entry -> {
+                var target = entry.getSymlinkTarget();
+                result.put(entry.getEntry(), target == null ? null : Paths.get(target));
+            });
+        } catch (IOException | RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            // The consumer does not throw checked exceptions
+            throw new IllegalStateException(ex);
         }
 
         return result;
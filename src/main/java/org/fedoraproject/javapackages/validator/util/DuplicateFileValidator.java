@@ -6,53 +6,300 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.TreeMap;
 
-import org.apache.commons.compress.archivers.cpio.CpioArchiveEntry;
 import org.fedoraproject.javapackages.validator.DefaultValidator;
+import org.fedoraproject.javapackages.validator.MergeableValidator;
 import org.fedoraproject.javapackages.validator.spi.Decorated;
+import org.fedoraproject.javapackages.validator.spi.Result;
 
-import io.kojan.javadeptools.rpm.RpmInfo;
 import io.kojan.javadeptools.rpm.RpmPackage;
 
-public abstract class DuplicateFileValidator extends DefaultValidator {
+public abstract class DuplicateFileValidator extends DefaultValidator implements MergeableValidator {
+    /**
+     * The attributes of an RPM package providing a duplicate file. They are
+     * recorded in partial indexes, so that shards can be merged without the
+     * RPM files.
+     * @param rpmPath The path to the RPM file.
+     * @param name The name of the package.
+     * @param epoch The epoch of the package.
+     * @param version The version of the package.
+     * @param release The release of the package.
+     * @param arch The architecture of the package.
+     * @param sourceRPM The file name of the source RPM or null if it is
+     * not set.
+     */
+    public static record ProviderPackage(Path rpmPath, String name, Optional<Integer> epoch, String version,
+            String release, String arch, String sourceRPM) {
+        private static final String KIND = "rpm";
+
+        static ProviderPackage of(RpmPackage rpm) {
+            var info = rpm.getInfo();
+            return new ProviderPackage(rpm.getPath(), info.getName(), info.getEpoch(), info.getVersion(),
+                    info.getRelease(), info.getArch(), info.getSourceRPM());
+        }
+
+        String encode() {
+            return PartialCodec.encode(KIND, rpmPath.toString(), name, epoch.map(String::valueOf).orElse(""),
+                    version, release, arch, Objects.toString(sourceRPM, ""));
+        }
+
+        static ProviderPackage decode(List<String> fields) {
+            return new ProviderPackage(Paths.get(fields.get(1)), fields.get(2),
+                    fields.get(3).isEmpty() ? Optional.empty() : Optional.of(Integer.valueOf(fields.get(3))),
+                    fields.get(4), fields.get(5), fields.get(6), fields.get(7).isEmpty() ? null : fields.get(7));
+        }
+
+        /**
+         * @return The NEVRA of the package.
+         */
+        @Override
+        public String toString() {
+            return name + "-" + epoch.map(value -> value + ":").orElse("") + version + "-" + release + "." + arch;
+        }
+    }
+
+    /**
+     * A file path of a providing RPM package. The paths of a package are
+     * recorded in sorted order and each path is stored as the length of the
+     * prefix it shares with the preceding path followed by the rest of it, so
+     * that the directories common to the files of a package are not repeated
+     * in the partial index.
+     */
+    private static record FileRecord(String path, boolean directory) {
+        private static final String FILE_KIND = "file";
+        private static final String DIRECTORY_KIND = "dir";
+
+        /**
+         * @param previous The preceding path of the same package or the empty
+         * string.
+         */
+        String encode(String previous) {
+            int shared = 0;
+            int length = Math.min(previous.length(), path.length());
+            while (shared != length && previous.charAt(shared) == path.charAt(shared)) {
+                ++shared;
+            }
+            return PartialCodec.encode(directory ? DIRECTORY_KIND : FILE_KIND, Integer.toString(shared),
+                    path.substring(shared));
+        }
+
+        /**
+         * @param previous The preceding path of the same package or the empty
+         * string.
+         */
+        static FileRecord decode(List<String> fields, String previous) {
+            var path = previous.substring(0, Integer.parseInt(fields.get(1))) + fields.get(2);
+            return new FileRecord(path, DIRECTORY_KIND.equals(fields.get(0)));
+        }
+    }
+
+    /**
+     * Codec of the lines of partial indexes. A line consists of the kind of
+     * the record followed by its fields, separated by tabs. Backslashes, tabs
+     * and newlines within the fields are escaped.
+     */
+    static final class PartialCodec {
+        static String encode(String kind, String... fields) {
+            var result = new StringBuilder(kind);
+            for (var field : fields) {
+                result.append('\t');
+                for (int i = 0; i != field.length(); ++i) {
+                    char c = field.charAt(i);
+                    switch (c) {
+                        case '\\' -> result.append("\\\\");
+                        case '\t' -> result.append("\\t");
+                        case '\n' -> result.append("\\n");
+                        default -> result.append(c);
+                    }
+                }
+            }
+            return result.toString();
+        }
+
+        /**
+         * @param line The encoded line.
+         * @return The kind of the record followed by its fields.
+         */
+        static List<String> decode(String line) {
+            var result = new ArrayList<String>();
+            var field = new StringBuilder();
+            for (int i = 0; i != line.length(); ++i) {
+                char c = line.charAt(i);
+                if (c == '\t') {
+                    result.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\\' && i + 1 != line.length()) {
+                    char escaped = line.charAt(++i);
+                    field.append(switch (escaped) {
+                        case 't' -> '\t';
+                        case 'n' -> '\n';
+                        default -> escaped;
+                    });
+                } else {
+                    field.append(c);
+                }
+            }
+            result.add(field.toString());
+            return result;
+        }
+    }
+
+    private static record Provider(ProviderPackage rpm, boolean directory) {
+    }
+
+    private boolean partial = false;
+    private List<String> partialIndex = new ArrayList<>();
+    private int partialPackages = 0;
+
+    @Override
+    public PayloadNeeds getPayloadNeeds() {
+        return PayloadNeeds.ENTRY_NAMES;
+    }
+
+    /**
+     * List the files of the RPM package, each prefixed by "d" if it is a
+     * directory or by "f" otherwise. The listing is persisted in the result
+     * cache, if enabled, so that unchanged RPM files are not read again.
+     */
+    private List<String> listFiles(RpmPackage rpm) throws Exception {
+        var fingerprint = getCacheFingerprint(List.of(rpm));
+        if (fingerprint != null) {
+            var cached = getResultCache().getIndex(getTestName(), fingerprint);
+            if (cached.isPresent()) {
+                return cached.get();
+            }
+        }
+
+        // File paths mapped to whether they are directories, of the entries
+        // with the same path the last one stored in the payload wins
+        var files = new TreeMap<String, Boolean>();
+        var facts = getPayloadFacts(rpm);
+        if (facts != null) {
+            for (var file : facts.getFiles()) {
+                files.put(Common.getEntryPath(file.name()).toString(), file.isDirectory());
+            }
+        } else {
+            Common.forEachEntry(rpm, entry -> {
+                files.put(entry.getPath().toString(), entry.isDirectory());
+            });
+        }
+        var result = new ArrayList<String>(files.size());
+        for (var file : files.entrySet()) {
+            result.add((file.getValue() ? "d" : "f") + file.getKey());
+        }
+
+        if (fingerprint != null) {
+            getResultCache().putIndex(getTestName(), fingerprint, result);
+        }
+        return result;
+    }
+
     @Override
     public void validate(Iterable<RpmPackage> rpms) throws Exception {
-        // The union of file paths present in all RPM files mapped to the RPM file names they are present in
-        var files = new TreeMap<String, ArrayList<Map.Entry<CpioArchiveEntry, Path>>>();
+        // The union of file paths present in all RPM files mapped to the RPM packages they are present in
+        var files = new TreeMap<String, ArrayList<Provider>>();
 
         for (var rpm : rpms) {
+            if (isCancelled()) {
+                return;
+            }
             if (!rpm.getInfo().isSourcePackage()) {
-                for (var entry : Common.rpmFilesAndSymlinks(rpm).entrySet()) {
-                    files.computeIfAbsent(Common.getEntryPath(entry.getKey()).toString(), key -> new ArrayList<>())
-                        .add(Map.entry(entry.getKey(), rpm.getPath()));
+                var rpmFiles = listFiles(rpm);
+                var rpmPackage = ProviderPackage.of(rpm);
+                if (partial) {
+                    partialIndex.add(rpmPackage.encode());
+                    ++partialPackages;
+                }
+                var previous = "";
+                for (var file : rpmFiles) {
+                    var fileRecord = new FileRecord(file.substring(1), file.charAt(0) == 'd');
+                    if (partial) {
+                        partialIndex.add(fileRecord.encode(previous));
+                        previous = fileRecord.path();
+                    } else {
+                        files.computeIfAbsent(fileRecord.path(), key -> new ArrayList<>())
+                            .add(new Provider(rpmPackage, fileRecord.directory()));
+                    }
+                }
+            }
+        }
+
+        if (partial) {
+            debug("Collected file lists of {0} RPM files, duplicate files are checked when shards are merged",
+                    Decorated.plain(partialPackages));
+            return;
+        }
+
+        validate(files);
+    }
+
+    @Override
+    public void setPartial(boolean partial) {
+        this.partial = partial;
+    }
+
+    @Override
+    public List<String> exportPartial() {
+        return Collections.unmodifiableList(partialIndex);
+    }
+
+    @Override
+    public Result mergePartials(List<List<String>> partials) {
+        var files = new TreeMap<String, ArrayList<Provider>>();
+        try {
+            for (var partial : partials) {
+                ProviderPackage rpmPackage = null;
+                var previous = "";
+                for (var line : partial) {
+                    var fields = PartialCodec.decode(line);
+                    switch (fields.get(0)) {
+                        case ProviderPackage.KIND -> {
+                            rpmPackage = ProviderPackage.decode(fields);
+                            previous = "";
+                        }
+                        case FileRecord.FILE_KIND, FileRecord.DIRECTORY_KIND -> {
+                            var fileRecord = FileRecord.decode(fields, previous);
+                            previous = fileRecord.path();
+                            files.computeIfAbsent(fileRecord.path(), key -> new ArrayList<>())
+                                .add(new Provider(rpmPackage, fileRecord.directory()));
+                        }
+                        default -> throw new IllegalArgumentException("Unknown record in partial index: " + line);
+                    }
                 }
             }
+            validate(files);
+        } catch (Exception ex) {
+            error(ex);
         }
+        return build();
+    }
 
+    private void validate(TreeMap<String, ArrayList<Provider>> files) throws Exception {
         for (var entry : files.entrySet()) {
             if (entry.getValue().size() > 1) {
-                var providers = new ArrayList<RpmInfo>(entry.getValue().size());
-                for (var providerEntry : entry.getValue()) {
-                    providers.add(new RpmPackage(providerEntry.getValue()).getInfo());
+                var providers = new ArrayList<ProviderPackage>(entry.getValue().size());
+                for (var provider : entry.getValue()) {
+                    providers.add(provider.rpm());
                 }
                 var okDifferentArchs = new Boolean[] {true};
                 // If all providers are of different architecture (with the
                 // exception of noarch), then it is ok
                 providers.sort((lhs, rhs) -> {
-                    int cmp = lhs.getArch().compareTo(rhs.getArch());
-                    if (cmp == 0 || lhs.getArch().equals("noarch") || rhs.getArch().equals("noarch")) {
+                    int cmp = lhs.arch().compareTo(rhs.arch());
+                    if (cmp == 0 || lhs.arch().equals("noarch") || rhs.arch().equals("noarch")) {
                         okDifferentArchs[0] = false;
                     }
                     return cmp;
                 });
 
                 // If the file entry is a directory in all providers, then it is ok
-                boolean okDirectory = entry.getValue().stream().map(Map.Entry::getKey).allMatch(CpioArchiveEntry::isDirectory);
+                boolean okDirectory = entry.getValue().stream().allMatch(Provider::directory);
 
                 Decorated decoratedFile = Decorated.actual(entry.getKey());
-                Decorated decoratedProviders = Decorated.actual(entry.getValue().stream().map(p -> p.getValue().getFileName()).toList());
+                Decorated decoratedProviders = Decorated.actual(entry.getValue().stream().map(p -> p.rpm().rpmPath().getFileName()).toList());
 
                 if (okDifferentArchs[0]) {
                     pass("File {0} provided by RPMs of unique architectures: {1}",
@@ -71,11 +318,11 @@ public abstract class DuplicateFileValidator extends DefaultValidator {
         }
     }
 
-    public abstract void validate(Path path, Collection<? extends RpmInfo> providerRpms) throws Exception;
+    public abstract void validate(Path path, Collection<ProviderPackage> providerRpms) throws Exception;
 
     public static abstract class DefaultDuplicateFileValidator extends DuplicateFileValidator {
         @Override
-        public void validate(Path path, Collection<? extends RpmInfo> providerRpms) throws Exception {
+        public void validate(Path path, Collection<ProviderPackage> providerRpms) throws Exception {
             Decorated decoratedFile = Decorated.actual(path);
             Decorated decoratedProviders = Decorated.actual(List.copyOf(providerRpms));
 
@@ -88,6 +335,6 @@ public abstract class DuplicateFileValidator extends DefaultValidator {
             }
         }
 
-        public abstract boolean allowedDuplicateFile(Path path, Collection<? extends RpmInfo> providerRpms) throws Exception;
+        public abstract boolean allowedDuplicateFile(Path path, Collection<ProviderPackage> providerRpms) throws Exception;
     }
 }
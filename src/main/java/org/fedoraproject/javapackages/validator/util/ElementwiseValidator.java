@@ -1,5 +1,6 @@
 package org.fedoraproject.javapackages.validator.util;
 
+import java.util.List;
 import java.util.function.Predicate;
 
 import org.fedoraproject.javapackages.validator.DefaultValidator;
@@ -9,6 +10,7 @@ import io.kojan.javadeptools.rpm.RpmInfo;
 import io.kojan.javadeptools.rpm.RpmPackage;
 
 public abstract class ElementwiseValidator extends DefaultValidator {
+    private Predicate<RpmFileName> fileNameFilter;
     private Predicate<RpmInfo> filter;
 
     protected ElementwiseValidator() {
@@ -16,15 +18,31 @@ public abstract class ElementwiseValidator extends DefaultValidator {
     }
 
     protected ElementwiseValidator(Predicate<RpmInfo> filter) {
+        this(fileName -> true, filter);
+    }
+
+    /**
+     * @param fileNameFilter A necessary condition of the filter on the file
+     * names of RPM files, used to avoid opening RPM files which are filtered
+     * out anyway.
+     * @param filter The filter of RPM packages to validate.
+     */
+    protected ElementwiseValidator(Predicate<RpmFileName> fileNameFilter, Predicate<RpmInfo> filter) {
         super();
+        this.fileNameFilter = fileNameFilter;
         this.filter = filter;
     }
 
+    @Override
+    public Predicate<RpmFileName> getFileNameFilter() {
+        return fileNameFilter;
+    }
+
     @Override
     public void validate(Iterable<RpmPackage> rpms) throws Exception {
         for (var rpm : rpms) {
             if (filter.test(rpm.getInfo())) {
-                validate(rpm);
+                validateCached(rpm.getPath().toString(), List.of(rpm), () -> validate(rpm));
             } else {
                 skip("{0} filtered out {1}",
                         Decorated.struct(getClass().getCanonicalName()),
@@ -1,23 +1,42 @@
 package org.fedoraproject.javapackages.validator.util;
 
 import java.nio.file.Path;
+import java.util.concurrent.Callable;
 
-import org.apache.commons.compress.archivers.cpio.CpioArchiveEntry;
 import org.fedoraproject.javapackages.validator.spi.Decorated;
 
-import io.kojan.javadeptools.rpm.RpmArchiveInputStream;
 import io.kojan.javadeptools.rpm.RpmInfo;
 import io.kojan.javadeptools.rpm.RpmPackage;
 
 public abstract class FilesValidator extends ElementwiseValidator {
+    @Override
+    public PayloadNeeds getPayloadNeeds() {
+        return PayloadNeeds.ENTRY_NAMES;
+    }
+
     public abstract boolean allowedFile(RpmInfo rpm, Path path) throws Exception;
 
     @Override
     public void validate(RpmPackage rpm) throws Exception {
-        try (var is = new RpmArchiveInputStream(rpm.getPath())) {
+        var facts = getPayloadFacts(rpm);
+        try (var is = facts == null ? PayloadDecoder.open(rpm.getPath()) : null) {
+            // The names of the payload entries, read from the payload index if
+            // it is available
+            var files = facts != null ? facts.getFiles().iterator() : null;
+            Callable<String> nextName = files != null
+                    ? () -> files.hasNext() ? files.next().name() : null
+                    : () -> {
+                        var rpmEntry = is.getNextEntry();
+                        return rpmEntry != null ? rpmEntry.getName() : null;
+                    };
+
             boolean pass = true;
-            for (CpioArchiveEntry rpmEntry; ((rpmEntry = is.getNextEntry()) != null);) {
-                Path entryName = Common.getEntryPath(rpmEntry);
+            for (String name; (name = nextName.call()) != null;) {
+                if (isCancelled()) {
+                    // The listing is incomplete
+                    return;
+                }
+                Path entryName = Common.getEntryPath(name);
 
                 if (!allowedFile(rpm.getInfo(), entryName)) {
                     pass = false;
@@ -0,0 +1,25 @@
+package org.fedoraproject.javapackages.validator.util;
+
+import io.kojan.javadeptools.rpm.RpmPackage;
+
+/**
+ * A consumer of JAR files which can process some of them using only the facts
+ * from the payload index, without reading their content.
+ */
+public interface JarFactsConsumer extends RpmJarConsumer {
+    /**
+     * @param rpm The RPM package.
+     * @param jar The facts about a JAR file.
+     * @return Whether {@link #acceptJarEntry} needs to be called with the
+     * content of the JAR file instead of {@link #acceptJarFacts}.
+     */
+    boolean needsJarContent(RpmPackage rpm, PayloadFacts.Jar jar);
+
+    /**
+     * Process a JAR file using only the facts from the payload index.
+     * @param rpm The RPM package.
+     * @param jar The facts about the JAR file.
+     * @throws Exception If the processing fails.
+     */
+    void acceptJarFacts(RpmPackage rpm, PayloadFacts.Jar jar) throws Exception;
+}
@@ -11,13 +11,18 @@ public abstract class JarValidator extends ElementwiseValidator implements RpmJa
     public static final Decoration DECORATION_JAR = new Decoration(Decoration.Color.blue, Decoration.Modifier.bright);
 
     protected JarValidator() {
-        super(Predicate.not(RpmInfo::isSourcePackage));
+        super(Predicate.not(RpmFileName::isSourcePackage), Predicate.not(RpmInfo::isSourcePackage));
     }
 
     protected JarValidator(Predicate<RpmInfo> filter) {
         super(filter);
     }
 
+    @Override
+    public PayloadNeeds getPayloadNeeds() {
+        return RpmJarConsumer.super.getPayloadNeeds();
+    }
+
     @Override
     public void validate(RpmPackage rpm) throws Exception {
         accept(rpm);
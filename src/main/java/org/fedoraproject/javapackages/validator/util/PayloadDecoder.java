@@ -0,0 +1,416 @@
+package org.fedoraproject.javapackages.validator.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.compress.archivers.cpio.CpioArchiveInputStream;
+import org.tukaani.xz.SeekableInputStream;
+import org.tukaani.xz.SeekableXZInputStream;
+
+import com.github.luben.zstd.ZstdInputStream;
+
+import io.kojan.javadeptools.rpm.RpmArchiveInputStream;
+
+/**
+ * Opens the payload of an RPM file. Payloads which consist of several
+ * independent blocks, xz payloads written by multithreaded xz and zstd
+ * payloads of several frames, are decompressed in parallel. The blocks are
+ * decompressed ahead of the reader by a pool of threads shared by all
+ * payloads and are returned in their order, the reader sees the same cpio
+ * stream as from a serial decoder.
+ * <p>
+ * Payloads of a single block and payloads compressed otherwise are read by
+ * {@link RpmArchiveInputStream}.
+ */
+public class PayloadDecoder {
+    private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+    private static final long BUDGET = Math.clamp(Runtime.getRuntime().maxMemory()
+            / (4L * PARALLELISM), 4L << 20, 256L << 20);
+    // Blocks are decompressed into arrays
+    private static final long MAX_BLOCK_SIZE = Integer.MAX_VALUE - 8;
+
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(PARALLELISM,
+            Thread.ofPlatform().daemon().name("payload-decoder-", 0).factory());
+
+    private static final int ZSTD_MAGIC = 0xfd2fb528;
+    private static final int ZSTD_SKIPPABLE_MAGIC = 0x184d2a50;
+
+    private static record Block(long size, Callable<byte[]> decoder) {
+    }
+
+    /**
+     * @param path The RPM file.
+     * @return The stream of the uncompressed payload entries.
+     * @throws IOException If the RPM file can not be opened.
+     */
+    public static CpioArchiveInputStream open(Path path) throws IOException {
+        List<Block> blocks = null;
+        Closeable resources = () -> {};
+        try {
+            var header = RpmHeader.read(path);
+            switch (Objects.toString(header.getString(RpmHeader.TAG_PAYLOADCOMPRESSOR), "")) {
+                case "xz" -> {
+                    var decoders = new XzDecoders(path, header.getPayloadOffset());
+                    resources = decoders;
+                    blocks = xzBlocks(decoders);
+                }
+                case "zstd" -> blocks = zstdFrames(path, header.getPayloadOffset());
+                default -> blocks = null;
+            }
+        } catch (IOException | RuntimeException ex) {
+            // Left to the RPM library to report
+            blocks = null;
+        }
+        if (blocks == null || blocks.size() < 2) {
+            resources.close();
+            return new RpmArchiveInputStream(path);
+        }
+
+        long maxSize = blocks.stream().mapToLong(Block::size).max().getAsLong();
+        int window = (int) Math.clamp(BUDGET / Math.max(maxSize, 1), 1, PARALLELISM);
+        return new CpioArchiveInputStream(new OrderedBlockInputStream(blocks.stream().map(Block::decoder).iterator(),
+                window, resources));
+    }
+
+    /**
+     * The part of a file from an offset to its end.
+     */
+    private static class FileRegion extends SeekableInputStream {
+        private final FileChannel channel;
+        private final long offset;
+        private long position = 0;
+
+        FileRegion(Path path, long offset) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.offset = offset;
+        }
+
+        @Override
+        public long length() throws IOException {
+            return channel.size() - offset;
+        }
+
+        @Override
+        public long position() {
+            return position;
+        }
+
+        @Override
+        public void seek(long position) throws IOException {
+            if (position < 0) {
+                throw new IOException("Negative seek position");
+            }
+            this.position = position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            var buffer = new byte[1];
+            return read(buffer, 0, 1) == -1 ? -1 : buffer[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int read = channel.read(ByteBuffer.wrap(buffer, off, len), offset + position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Decoders of one xz payload, reused by the tasks decompressing its
+     * blocks. The index of the xz stream is parsed when a decoder is created,
+     * therefore it is parsed at most once per concurrently decompressed block
+     * rather than once per block.
+     */
+    private static class XzDecoders implements Closeable {
+        private final Path path;
+        private final long offset;
+        private final Queue<SeekableXZInputStream> idle = new ConcurrentLinkedQueue<>();
+        private final Queue<SeekableXZInputStream> all = new ConcurrentLinkedQueue<>();
+        private volatile boolean closed = false;
+
+        XzDecoders(Path path, long offset) {
+            this.path = path;
+            this.offset = offset;
+        }
+
+        private SeekableXZInputStream acquire() throws IOException {
+            var result = idle.poll();
+            if (result == null) {
+                result = new SeekableXZInputStream(new FileRegion(path, offset));
+                all.add(result);
+                if (closed) {
+                    close();
+                    throw new IOException("Payload of " + path + " was closed");
+                }
+            }
+            return result;
+        }
+
+        /**
+         * @return Some decoder, for reading the index of the xz stream.
+         */
+        SeekableXZInputStream index() throws IOException {
+            var result = acquire();
+            idle.add(result);
+            return result;
+        }
+
+        byte[] decode(int block, long size) throws IOException {
+            var xz = acquire();
+            try {
+                xz.seekToBlock(block);
+                var content = xz.readNBytes((int) size);
+                if (content.length != size) {
+                    throw new IOException("Truncated xz block in " + path);
+                }
+                return content;
+            } finally {
+                idle.add(xz);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            for (SeekableXZInputStream xz; (xz = all.poll()) != null;) {
+                xz.close();
+            }
+            idle.clear();
+        }
+    }
+
+    /**
+     * @return The blocks of the xz stream located by its index or null if the
+     * payload can not be decompressed by blocks.
+     */
+    private static List<Block> xzBlocks(XzDecoders decoders) throws IOException {
+        var result = new ArrayList<Block>();
+        var xz = decoders.index();
+        for (int i = 0; i != xz.getBlockCount(); ++i) {
+            var size = xz.getBlockSize(i);
+            if (size > MAX_BLOCK_SIZE) {
+                return null;
+            }
+            int block = i;
+            result.add(new Block(size, () -> decoders.decode(block, size)));
+        }
+        return result;
+    }
+
+    /**
+     * Locates the frames of a zstd payload by walking the frame and block
+     * headers, without decompressing anything.
+     * @return The frames or null if the payload can not be decompressed by
+     * frames.
+     */
+    private static List<Block> zstdFrames(Path path, long offset) throws IOException {
+        ByteBuffer payload;
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() - offset > Integer.MAX_VALUE) {
+                return null;
+            }
+            payload = channel.map(FileChannel.MapMode.READ_ONLY, offset, channel.size() - offset).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        var result = new ArrayList<Block>();
+        for (int position = 0; position < payload.limit();) {
+            if (payload.limit() - position < 8) {
+                return null;
+            }
+            int magic = payload.getInt(position);
+            if ((magic & 0xfffffff0) == ZSTD_SKIPPABLE_MAGIC) {
+                long next = position + 8L + Integer.toUnsignedLong(payload.getInt(position + 4));
+                if (next > payload.limit()) {
+                    return null;
+                }
+                position = (int) next;
+                continue;
+            } else if (magic != ZSTD_MAGIC) {
+                return null;
+            }
+
+            int start = position;
+            int descriptor = payload.get(position + 4) & 0xff;
+            int contentSizeFlag = descriptor >>> 6;
+            boolean singleSegment = (descriptor & 0x20) != 0;
+            boolean checksum = (descriptor & 0x04) != 0;
+            int dictionaryIdSize = new int[] {0, 1, 2, 4}[descriptor & 0x03];
+            int contentSizeSize = new int[] {singleSegment ? 1 : 0, 2, 4, 8}[contentSizeFlag];
+            position += 5 + (singleSegment ? 0 : 1) + dictionaryIdSize;
+
+            long contentSize = -1;
+            if (contentSizeSize != 0 && position + contentSizeSize <= payload.limit()) {
+                contentSize = switch (contentSizeSize) {
+                    case 1 -> payload.get(position) & 0xff;
+                    case 2 -> (payload.getShort(position) & 0xffff) + 256;
+                    case 4 -> payload.getInt(position) & 0xffffffffL;
+                    default -> payload.getLong(position);
+                };
+            }
+            position += contentSizeSize;
+
+            for (boolean last = false; !last;) {
+                if (position + 3 > payload.limit()) {
+                    return null;
+                }
+                int blockHeader = (payload.get(position) & 0xff) | (payload.get(position + 1) & 0xff) << 8
+                        | (payload.get(position + 2) & 0xff) << 16;
+                last = (blockHeader & 1) != 0;
+                int type = (blockHeader >>> 1) & 3;
+                if (type == 3) {
+                    // Reserved block type
+                    return null;
+                }
+                // The content of RLE blocks is a single byte
+                position += 3 + (type == 1 ? 1 : blockHeader >>> 3);
+            }
+            position += checksum ? 4 : 0;
+            if (position > payload.limit() || contentSize > MAX_BLOCK_SIZE) {
+                return null;
+            }
+
+            // The frame is decompressed directly from the mapping
+            var frame = payload.slice(start, position - start);
+            // The decompressed size of frames without declared content size
+            // is only estimated for the memory budget
+            result.add(new Block(contentSize >= 0 ? contentSize : 8L * frame.limit(), () -> {
+                try (var is = new ZstdInputStream(new ByteBufferInputStream(frame.duplicate()))) {
+                    return is.readAllBytes();
+                }
+            }));
+        }
+        return result;
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) {
+            Objects.checkFromIndexSize(off, len, bytes.length);
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(bytes, off, count);
+            return count;
+        }
+    }
+
+    /**
+     * Returns the content of blocks in their order, keeping a window of the
+     * following blocks being decompressed.
+     */
+    private static class OrderedBlockInputStream extends InputStream {
+        private final Iterator<Callable<byte[]>> pending;
+        private final Deque<Future<byte[]>> decoding = new ArrayDeque<>();
+        private final Closeable resources;
+        private byte[] block = new byte[0];
+        private int position = 0;
+
+        OrderedBlockInputStream(Iterator<Callable<byte[]>> blocks, int window, Closeable resources) {
+            this.pending = blocks;
+            this.resources = resources;
+            for (int i = 0; i != window && pending.hasNext(); ++i) {
+                decoding.add(POOL.submit(pending.next()));
+            }
+        }
+
+        private boolean advance() throws IOException {
+            while (position == block.length) {
+                var next = decoding.poll();
+                if (next == null) {
+                    return false;
+                }
+                if (pending.hasNext()) {
+                    decoding.add(POOL.submit(pending.next()));
+                }
+                try {
+                    block = next.get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                } catch (ExecutionException ex) {
+                    throw ex.getCause() instanceof IOException ioex ? ioex : new IOException(ex.getCause());
+                }
+                position = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return advance() ? block[position++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, buffer.length);
+            if (len == 0) {
+                return 0;
+            }
+            if (!advance()) {
+                return -1;
+            }
+            int count = Math.min(len, block.length - position);
+            System.arraycopy(block, position, buffer, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (var future : decoding) {
+                future.cancel(true);
+            }
+            decoding.clear();
+            block = new byte[0];
+            position = 0;
+            resources.close();
+        }
+    }
+}
@@ -0,0 +1,476 @@
+package org.fedoraproject.javapackages.validator.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.module.ModuleDescriptor;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+import java.util.jar.Manifest;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.commons.compress.archivers.cpio.CpioConstants;
+import org.fedoraproject.javapackages.validator.FactStore;
+import org.fedoraproject.xmvn.metadata.io.stax.MetadataStaxReader;
+
+import io.kojan.javadeptools.rpm.RpmPackage;
+
+/**
+ * Facts about the payload of an RPM package which are needed by several
+ * validators, extracted in a single pass over the payload. The facts can be
+ * persisted, so that the payload of the same RPM package does not need to be
+ * read again.
+ * <p>
+ * Facts about a JAR file or a metadata file which could not be extracted are
+ * marked as incomplete, validators then read the file from the payload.
+ */
+public class PayloadFacts {
+    private static final int VERSION = 1;
+    private static final Pattern VERSIONS_PATTERN = Pattern.compile("META-INF/versions/\\d+/module-info\\.class");
+
+    /**
+     * @param name The name of the payload entry, as stored in the payload.
+     * @param mode The mode of the entry.
+     * @param symlinkTarget The target of the symlink or null.
+     */
+    public static record File(String name, long mode, String symlinkTarget) {
+        public boolean isDirectory() {
+            return (mode & CpioConstants.S_IFMT) == CpioConstants.C_ISDIR;
+        }
+
+        public boolean isRegularFile() {
+            return (mode & CpioConstants.S_IFMT) == CpioConstants.C_ISREG;
+        }
+
+        public boolean isSymbolicLink() {
+            return (mode & CpioConstants.S_IFMT) == CpioConstants.C_ISLNK;
+        }
+    }
+
+    /**
+     * @param name The name of the payload entry of the JAR file.
+     * @param complete Whether the facts were extracted successfully.
+     * @param classVersions The bytecode versions of the classes.
+     * @param moduleNames The names of the module descriptors mapped to the
+     * names of the modules they declare.
+     * @param manifest The main attributes of the manifest or null if the JAR
+     * file has no manifest.
+     */
+    public static record Jar(String name, boolean complete, ClassVersionHistogram classVersions,
+            List<Map.Entry<String, String>> moduleNames, Map<String, String> manifest) {
+    }
+
+    /**
+     * @param name The name of the payload entry of the Maven metadata file.
+     * @param complete Whether the facts were extracted successfully.
+     * @param artifactPaths The paths of the artifacts listed in the metadata.
+     * @param error The message of the parsing error or null if the metadata
+     * were parsed successfully.
+     */
+    public static record Metadata(String name, boolean complete, List<String> artifactPaths, String error) {
+    }
+
+    /**
+     * The main attributes of the manifest of a JAR file, null if the JAR file
+     * has no manifest. Published in the {@link FactStore} by the validators
+     * which read manifests, computed by {@link #extractManifest}.
+     */
+    public static final FactStore.Type<Map<String, String>> MANIFEST = new FactStore.Type<>("jar-manifest", PayloadFacts::weighAttributes);
+
+    /**
+     * The names of the module descriptors of a JAR file mapped to the names of
+     * the modules they declare. Published in the {@link FactStore} by the
+     * validators which read module descriptors, computed by
+     * {@link #extractModuleNames}.
+     */
+    public static final FactStore.Type<List<Map.Entry<String, String>>> MODULE_NAMES = new FactStore.Type<>("jar-module-names", PayloadFacts::weighModuleNames);
+
+    /**
+     * The bytecode versions of the classes of a JAR file. Published in the
+     * {@link FactStore} by the validators which read class versions, computed
+     * by {@link #extractClassVersions}.
+     */
+    public static final FactStore.Type<ClassVersionHistogram> CLASS_VERSIONS = new FactStore.Type<>("jar-class-versions", PayloadFacts::weigh);
+
+    /**
+     * The facts about a Maven metadata file, published in the
+     * {@link FactStore} by the validators which read Maven metadata.
+     */
+    public static final FactStore.Type<Metadata> METADATA = new FactStore.Type<>("maven-metadata", PayloadFacts::weigh);
+
+    private final List<File> files;
+    private final List<Jar> jars;
+    private final List<Metadata> metadata;
+
+    private PayloadFacts(List<File> files, List<Jar> jars, List<Metadata> metadata) {
+        this.files = Collections.unmodifiableList(files);
+        this.jars = Collections.unmodifiableList(jars);
+        this.metadata = Collections.unmodifiableList(metadata);
+    }
+
+    /**
+     * @return All payload entries in the order in which they are stored.
+     */
+    public List<File> getFiles() {
+        return files;
+    }
+
+    /**
+     * @return The JAR files which are not symlinks, in payload order.
+     */
+    public List<Jar> getJars() {
+        return jars;
+    }
+
+    /**
+     * @return The Maven metadata files, in payload order.
+     */
+    public List<Metadata> getMetadata() {
+        return metadata;
+    }
+
+    static boolean isJar(String name, boolean symbolicLink) {
+        return !symbolicLink && name.endsWith(".jar");
+    }
+
+    static boolean isMetadata(String name) {
+        return name.startsWith("./usr/share/maven-metadata/") && name.endsWith(".xml");
+    }
+
+    private static long weigh(String value) {
+        return 48 + 2L * value.length();
+    }
+
+    private static long weigh(ClassVersionHistogram classVersions) {
+        return 64 + 64L * classVersions.getVersions().size();
+    }
+
+    private static long weighModuleNames(List<Map.Entry<String, String>> moduleNames) {
+        long result = 64;
+        for (var moduleName : moduleNames) {
+            result += 32 + weigh(moduleName.getKey()) + weigh(moduleName.getValue());
+        }
+        return result;
+    }
+
+    private static long weighAttributes(Map<String, String> attributes) {
+        long result = 64;
+        for (var attribute : attributes.entrySet()) {
+            result += 48 + weigh(attribute.getKey()) + weigh(attribute.getValue());
+        }
+        return result;
+    }
+
+    private static long weigh(Metadata metadata) {
+        long result = 64 + weigh(metadata.name());
+        for (var artifactPath : metadata.artifactPaths()) {
+            result += 8 + weigh(artifactPath);
+        }
+        return result;
+    }
+
+    private static boolean isModuleDescriptor(String name) {
+        return name.equals("module-info.class")
+                || (name.startsWith("META-INF/versions/") && VERSIONS_PATTERN.matcher(name).matches());
+    }
+
+    private static Map<String, String> mainAttributes(Manifest mf) {
+        if (mf == null) {
+            return null;
+        }
+        var result = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+        for (var attribute : mf.getMainAttributes().entrySet()) {
+            result.put(attribute.getKey().toString(), attribute.getValue().toString());
+        }
+        return result;
+    }
+
+    /**
+     * Only the manifest at the beginning of the JAR file is read, the other
+     * entries are not inflated.
+     * @param content The content of the JAR file.
+     * @return The main attributes of the manifest or null if the JAR file has
+     * no manifest.
+     * @throws IOException If the JAR file can not be read.
+     */
+    public static Map<String, String> extractManifest(byte[] content) throws IOException {
+        try (var is = new JarInputStream(new ByteArrayInputStream(content))) {
+            return mainAttributes(is.getManifest());
+        }
+    }
+
+    /**
+     * Only the module descriptors are parsed.
+     * @param content The content of the JAR file.
+     * @return The names of the module descriptors mapped to the names of the
+     * modules they declare.
+     * @throws IOException If the JAR file can not be read.
+     */
+    public static List<Map.Entry<String, String>> extractModuleNames(byte[] content) throws IOException {
+        var result = new ArrayList<Map.Entry<String, String>>();
+        try (var is = new JarInputStream(new ByteArrayInputStream(content))) {
+            for (JarEntry entry; (entry = is.getNextJarEntry()) != null;) {
+                if (isModuleDescriptor(entry.getName())) {
+                    result.add(Map.entry(entry.getName(), ModuleDescriptor.read(ByteBuffer.wrap(is.readAllBytes())).name()));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Only the headers of the class files are read.
+     * @param content The content of the JAR file.
+     * @return The bytecode versions of the classes.
+     * @throws IOException If the JAR file can not be read or contains a
+     * truncated class file.
+     */
+    public static ClassVersionHistogram extractClassVersions(byte[] content) throws IOException {
+        var result = new ClassVersionHistogram();
+        var header = new byte[8];
+        try (var is = new JarInputStream(new ByteArrayInputStream(content))) {
+            for (JarEntry entry; (entry = is.getNextJarEntry()) != null;) {
+                if (entry.getName().endsWith(".class")) {
+                    // Magic number, minor version, major version
+                    if (is.readNBytes(header, 0, header.length) != header.length) {
+                        throw new EOFException("Truncated class file " + entry.getName());
+                    }
+                    result.add(readShort(header, 6), readShort(header, 4));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Extract all facts about a JAR file in a single pass, for the payload
+     * index.
+     * @param name The name of the payload entry of the JAR file.
+     * @param content The content of the JAR file.
+     * @return The facts about the JAR file, incomplete if it can not be read.
+     */
+    public static Jar extractJar(String name, byte[] content) {
+        var classVersions = new ClassVersionHistogram();
+        var moduleNames = new ArrayList<Map.Entry<String, String>>();
+        Map<String, String> manifest = null;
+        var header = new byte[8];
+
+        try (var is = new JarInputStream(new ByteArrayInputStream(content))) {
+            for (JarEntry entry; (entry = is.getNextJarEntry()) != null;) {
+                if (isModuleDescriptor(entry.getName())) {
+                    var bytes = is.readAllBytes();
+                    moduleNames.add(Map.entry(entry.getName(), ModuleDescriptor.read(ByteBuffer.wrap(bytes)).name()));
+                    if (bytes.length < header.length) {
+                        return new Jar(name, false, null, null, null);
+                    }
+                    classVersions.add(readShort(bytes, 6), readShort(bytes, 4));
+                } else if (entry.getName().endsWith(".class")) {
+                    if (is.readNBytes(header, 0, header.length) != header.length) {
+                        return new Jar(name, false, null, null, null);
+                    }
+                    classVersions.add(readShort(header, 6), readShort(header, 4));
+                }
+            }
+
+            manifest = mainAttributes(is.getManifest());
+        } catch (IOException | RuntimeException ex) {
+            return new Jar(name, false, null, null, null);
+        }
+
+        return new Jar(name, true, classVersions, moduleNames, manifest);
+    }
+
+    private static short readShort(byte[] buffer, int offset) {
+        return (short) (((buffer[offset] & 0xff) << 8) | (buffer[offset + 1] & 0xff));
+    }
+
+    /**
+     * @param name The name of the payload entry of the Maven metadata file.
+     * @param content The content of the Maven metadata file.
+     * @return The facts about the Maven metadata file, incomplete if it can
+     * not be read.
+     */
+    public static Metadata extractMetadata(String name, byte[] content) {
+        try (var is = new ByteArrayInputStream(content)) {
+            var artifactPaths = new ArrayList<String>();
+            for (var artifact : new MetadataStaxReader().read(is, true).getArtifacts()) {
+                artifactPaths.add(artifact.getPath());
+            }
+            return new Metadata(name, true, artifactPaths, null);
+        } catch (XMLStreamException ex) {
+            return new Metadata(name, true, List.of(), String.valueOf(ex.getMessage()));
+        } catch (IOException | RuntimeException ex) {
+            return new Metadata(name, false, List.of(), null);
+        }
+    }
+
+    /**
+     * Extract the facts reading the payload once.
+     * @param rpm The RPM package.
+     * @return The extracted facts.
+     * @throws Exception If reading the payload fails.
+     */
+    public static PayloadFacts extract(RpmPackage rpm) throws Exception {
+        var files = new ArrayList<File>();
+        var jars = new ArrayList<Jar>();
+        var metadata = new ArrayList<Metadata>();
+
+        try (var pipeline = new PayloadPipeline(rpm.getPath(), rpmEntry -> true,
+                rpmEntry -> rpmEntry.isSymbolicLink() || isJar(rpmEntry.getName(), false) || isMetadata(rpmEntry.getName()))) {
+            for (PayloadPipeline.Item item; (item = pipeline.next()) != null;) {
+                var rpmEntry = item.entry();
+                String symlinkTarget = null;
+                if (rpmEntry.isSymbolicLink()) {
+                    symlinkTarget = new String(item.content(), StandardCharsets.UTF_8);
+                } else if (isJar(rpmEntry.getName(), false)) {
+                    jars.add(extractJar(rpmEntry.getName(), item.content()));
+                }
+                if (rpmEntry.isRegularFile() && isMetadata(rpmEntry.getName())) {
+                    metadata.add(extractMetadata(rpmEntry.getName(), item.content()));
+                }
+                files.add(new File(rpmEntry.getName(), rpmEntry.getMode(), symlinkTarget));
+            }
+        }
+
+        return new PayloadFacts(files, jars, metadata);
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        var bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(VERSION);
+
+        out.writeInt(files.size());
+        for (var file : files) {
+            writeString(out, file.name());
+            out.writeLong(file.mode());
+            out.writeBoolean(file.symlinkTarget() != null);
+            if (file.symlinkTarget() != null) {
+                writeString(out, file.symlinkTarget());
+            }
+        }
+
+        out.writeInt(jars.size());
+        for (var jar : jars) {
+            writeString(out, jar.name());
+            out.writeBoolean(jar.complete());
+            if (!jar.complete()) {
+                continue;
+            }
+            var versions = jar.classVersions().getVersions();
+            out.writeInt(versions.size());
+            for (var version : versions) {
+                out.writeShort(version.major());
+                out.writeShort(version.minor());
+                out.writeInt(jar.classVersions().getCount(version));
+            }
+            out.writeInt(jar.moduleNames().size());
+            for (var moduleName : jar.moduleNames()) {
+                writeString(out, moduleName.getKey());
+                writeString(out, moduleName.getValue());
+            }
+            out.writeBoolean(jar.manifest() != null);
+            if (jar.manifest() != null) {
+                out.writeInt(jar.manifest().size());
+                for (var attribute : jar.manifest().entrySet()) {
+                    writeString(out, attribute.getKey());
+                    writeString(out, attribute.getValue());
+                }
+            }
+        }
+
+        out.writeInt(metadata.size());
+        for (var md : metadata) {
+            writeString(out, md.name());
+            out.writeBoolean(md.complete());
+            out.writeInt(md.artifactPaths().size());
+            for (var artifactPath : md.artifactPaths()) {
+                writeString(out, artifactPath);
+            }
+            out.writeBoolean(md.error() != null);
+            if (md.error() != null) {
+                writeString(out, md.error());
+            }
+        }
+    }
+
+    /**
+     * @param in The input to read from.
+     * @return The facts or null if they were written by an incompatible
+     * version.
+     * @throws IOException If reading fails.
+     */
+    public static PayloadFacts read(DataInput in) throws IOException {
+        if (in.readInt() != VERSION) {
+            return null;
+        }
+
+        var files = new ArrayList<File>();
+        for (int count = in.readInt(); count != 0; --count) {
+            var name = readString(in);
+            var mode = in.readLong();
+            var symlinkTarget = in.readBoolean() ? readString(in) : null;
+            files.add(new File(name, mode, symlinkTarget));
+        }
+
+        var jars = new ArrayList<Jar>();
+        for (int count = in.readInt(); count != 0; --count) {
+            var name = readString(in);
+            if (!in.readBoolean()) {
+                jars.add(new Jar(name, false, null, null, null));
+                continue;
+            }
+            var classVersions = new ClassVersionHistogram();
+            for (int versions = in.readInt(); versions != 0; --versions) {
+                classVersions.add(in.readShort(), in.readShort(), in.readInt());
+            }
+            var moduleNames = new ArrayList<Map.Entry<String, String>>();
+            for (int modules = in.readInt(); modules != 0; --modules) {
+                moduleNames.add(Map.entry(readString(in), readString(in)));
+            }
+            Map<String, String> manifest = null;
+            if (in.readBoolean()) {
+                manifest = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+                for (int attributes = in.readInt(); attributes != 0; --attributes) {
+                    manifest.put(readString(in), readString(in));
+                }
+            }
+            jars.add(new Jar(name, true, classVersions, moduleNames, manifest));
+        }
+
+        var metadata = new ArrayList<Metadata>();
+        for (int count = in.readInt(); count != 0; --count) {
+            var name = readString(in);
+            var complete = in.readBoolean();
+            var artifactPaths = new ArrayList<String>();
+            for (int artifacts = in.readInt(); artifacts != 0; --artifacts) {
+                artifactPaths.add(readString(in));
+            }
+            var error = in.readBoolean() ? readString(in) : null;
+            metadata.add(new Metadata(name, complete, artifactPaths, error));
+        }
+
+        return new PayloadFacts(files, jars, metadata);
+    }
+}
@@ -0,0 +1,98 @@
+package org.fedoraproject.javapackages.validator.util;
+
+import java.util.function.Predicate;
+
+import org.apache.commons.compress.archivers.cpio.CpioArchiveEntry;
+
+/**
+ * Declaration of the parts of an RPM package a validator reads. The engine
+ * uses the union of the declarations of all selected validators to avoid
+ * reading the payload when no validator needs it, and validators use their
+ * own declaration to copy out only the content of the entries they process.
+ */
+public final class PayloadNeeds {
+    /**
+     * Only the header of the RPM package is read.
+     */
+    public static final PayloadNeeds HEADER = new PayloadNeeds(false, null);
+
+    /**
+     * The names and the metadata of the payload entries are read, but not
+     * their content.
+     */
+    public static final PayloadNeeds ENTRY_NAMES = new PayloadNeeds(true, null);
+
+    /**
+     * The content of any payload entry may be read. This is the declaration
+     * of validators which do not declare anything else.
+     */
+    public static final PayloadNeeds ALL = new PayloadNeeds(true, name -> true);
+
+    private final boolean payload;
+    private final Predicate<String> content;
+
+    private PayloadNeeds(boolean payload, Predicate<String> content) {
+        this.payload = payload;
+        this.content = content;
+    }
+
+    /**
+     * @param names Which entries, identified by their names as stored in the
+     * payload, are read with their content.
+     * @return The declaration of reading the names of all payload entries and
+     * the content of the regular files matching the predicate.
+     */
+    public static PayloadNeeds content(Predicate<String> names) {
+        return new PayloadNeeds(true, names);
+    }
+
+    /**
+     * @return Whether the payload needs to be opened at all.
+     */
+    public boolean needsPayload() {
+        return payload;
+    }
+
+    /**
+     * @param name The name of a payload entry as stored in the payload.
+     * @return Whether the content of the entry with such name is read.
+     */
+    public boolean needsContent(String name) {
+        return content != null && content.test(name);
+    }
+
+    /**
+     * @param entry A payload entry.
+     * @return Whether the content of the entry is read, only the content of
+     * regular files is ever needed.
+     */
+    public boolean needsContent(CpioArchiveEntry entry) {
+        return entry.isRegularFile() && needsContent(entry.getName());
+    }
+
+    /**
+     * @param other Another declaration.
+     * @return The declaration of reading everything either of the declarations
+     * reads.
+     */
+    public PayloadNeeds union(PayloadNeeds other) {
+        if (content == null && other.content == null) {
+            return payload ? this : other;
+        } else if (other.content == null) {
+            return this;
+        } else if (content == null) {
+            return other;
+        }
+        return new PayloadNeeds(true, content.or(other.content));
+    }
+
+    @Override
+    public String toString() {
+        if (!payload) {
+            return "header";
+        } else if (content == null) {
+            return "entry names";
+        }
+        return "entry content";
+    }
+}
@@ -0,0 +1,157 @@
+package org.fedoraproject.javapackages.validator.util;
+
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Predicate;
+
+import org.apache.commons.compress.archivers.cpio.CpioArchiveEntry;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Reads the payload of an RPM file on a separate thread, so that the
+ * decompression of the payload overlaps with the analysis of its entries done
+ * by the thread calling {@link #next()}. The entries are returned in the order
+ * in which they are stored in the payload. The readers of all pipelines run on
+ * a shared pool of threads, which are reused for the following RPM files.
+ * <p>
+ * The entries which were read but not yet consumed are limited by a memory
+ * budget. Each entry is charged with a fixed overhead plus the size of its
+ * content, the budget is reserved before the content is allocated. The reader
+ * waits when the budget is exhausted, an entry larger than the whole budget is
+ * passed alone.
+ */
+public class PayloadPipeline implements AutoCloseable {
+    private static final long BUDGET = Math.clamp(Runtime.getRuntime().maxMemory()
+            / (4L * Runtime.getRuntime().availableProcessors()), 4L << 20, 256L << 20);
+    private static final long ENTRY_OVERHEAD = 512;
+
+    // Not bounded, a reader waits for its consumer and must not wait for
+    // other readers to finish
+    private static final ExecutorService READERS = Executors.newCachedThreadPool(
+            Thread.ofPlatform().daemon().name("payload-reader-", 0).factory());
+
+    /**
+     * @param entry The payload entry.
+     * @param content The content of the entry or null if it was not requested.
+     */
+    public static record Item(CpioArchiveEntry entry, byte[] content) {
+    }
+
+    private static final Item END = new Item(null, null);
+
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private final long budget;
+    private volatile boolean closed = false;
+    private long inFlight = 0;
+    private long peakInFlight = 0;
+
+    /**
+     * @param path The RPM file.
+     * @param include Which entries to pass to the consumer.
+     * @param readContent Which of the included entries to pass with their content.
+     */
+    public PayloadPipeline(Path path, Predicate<CpioArchiveEntry> include, Predicate<CpioArchiveEntry> readContent) {
+        this(path, include, readContent, BUDGET);
+    }
+
+    /**
+     * @param path The RPM file.
+     * @param include Which entries to pass to the consumer.
+     * @param readContent Which of the included entries to pass with their content.
+     * @param budget The memory budget of the entries read ahead.
+     */
+    PayloadPipeline(Path path, Predicate<CpioArchiveEntry> include, Predicate<CpioArchiveEntry> readContent, long budget) {
+        this.budget = budget;
+        READERS.execute(() -> {
+            Object terminal = END;
+            try (var is = PayloadDecoder.open(path)) {
+                for (CpioArchiveEntry rpmEntry; !closed && (rpmEntry = is.getNextEntry()) != null;) {
+                    if (!include.test(rpmEntry)) {
+                        continue;
+                    }
+                    boolean withContent = readContent.test(rpmEntry);
+                    if (!reserve(cost(rpmEntry, withContent))) {
+                        return;
+                    }
+                    byte[] content = null;
+                    if (withContent) {
+                        content = new byte[(int) rpmEntry.getSize()];
+                        IOUtils.readFully(is, content);
+                    }
+                    queue.add(new Item(rpmEntry, content));
+                }
+            } catch (Throwable ex) {
+                terminal = ex;
+            } finally {
+                queue.add(terminal);
+                finished.countDown();
+            }
+        });
+    }
+
+    static long cost(CpioArchiveEntry entry, boolean withContent) {
+        return ENTRY_OVERHEAD + (withContent ? entry.getSize() : 0);
+    }
+
+    private synchronized boolean reserve(long size) throws InterruptedException {
+        while (!closed && inFlight > 0 && inFlight + size > budget) {
+            wait();
+        }
+        inFlight += size;
+        peakInFlight = Math.max(peakInFlight, inFlight);
+        return !closed;
+    }
+
+    private synchronized void release(long size) {
+        inFlight -= size;
+        notifyAll();
+    }
+
+    /**
+     * @return The next entry or null if there are no more entries.
+     * @throws Exception If reading the payload failed.
+     */
+    public Item next() throws Exception {
+        var next = queue.take();
+        if (next instanceof Exception ex) {
+            throw ex;
+        }
+        if (next instanceof Error err) {
+            throw err;
+        }
+        if (next instanceof Throwable th) {
+            throw new Exception(th);
+        }
+        var item = (Item) next;
+        if (item == END) {
+            return null;
+        }
+        release(cost(item.entry(), item.content() != null));
+        return item;
+    }
+
+    /**
+     * @return The largest budget reserved by the entries read ahead at once.
+     */
+    synchronized long getPeakInFlight() {
+        return peakInFlight;
+    }
+
+    /**
+     * Stop reading the payload and wait for the reader to finish the entry it
+     * is reading.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        finished.await();
+    }
+}
@@ -21,6 +21,11 @@ public abstract class RpmAttributeValidator extends ElementwiseValidator {
         this.attributeName = attributeName;
     }
 
+    @Override
+    public PayloadNeeds getPayloadNeeds() {
+        return PayloadNeeds.HEADER;
+    }
+
     public abstract boolean allowedAttribute(RpmInfo rpm, String value);
 
     @Override
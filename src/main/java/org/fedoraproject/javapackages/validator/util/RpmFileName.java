@@ -0,0 +1,50 @@
+package org.fedoraproject.javapackages.validator.util;
+
+import java.nio.file.Path;
+
+/**
+ * The NVRA of an RPM package parsed from the conventional file name
+ * {@code name-version-release.arch.rpm}. Validators use it to reject RPM files
+ * before their headers are read, the file name is not guaranteed to match the
+ * header, so it may only serve as a necessary condition.
+ * @param name The package name.
+ * @param version The package version.
+ * @param release The package release.
+ * @param arch The package architecture, {@code src} or {@code nosrc} for
+ * source packages.
+ */
+public record RpmFileName(String name, String version, String release, String arch) {
+    /**
+     * @param path The path of an RPM file.
+     * @return The parsed file name or null if the file name does not follow
+     * the convention.
+     */
+    public static RpmFileName parse(Path path) {
+        var fileName = path.getFileName();
+        return fileName != null ? parse(fileName.toString()) : null;
+    }
+
+    /**
+     * @param fileName The file name of an RPM file.
+     * @return The parsed file name or null if the file name does not follow
+     * the convention.
+     */
+    public static RpmFileName parse(String fileName) {
+        if (!fileName.endsWith(".rpm")) {
+            return null;
+        }
+        var nvra = fileName.substring(0, fileName.length() - ".rpm".length());
+        int archDot = nvra.lastIndexOf('.');
+        int releaseDash = archDot > 0 ? nvra.lastIndexOf('-', archDot - 1) : -1;
+        int versionDash = releaseDash > 0 ? nvra.lastIndexOf('-', releaseDash - 1) : -1;
+        if (versionDash <= 0 || versionDash + 1 == releaseDash || releaseDash + 1 == archDot || archDot + 1 == nvra.length()) {
+            return null;
+        }
+        return new RpmFileName(nvra.substring(0, versionDash), nvra.substring(versionDash + 1, releaseDash),
+                nvra.substring(releaseDash + 1, archDot), nvra.substring(archDot + 1));
+    }
+
+    public boolean isSourcePackage() {
+        return arch.equals("src") || arch.equals("nosrc");
+    }
+}
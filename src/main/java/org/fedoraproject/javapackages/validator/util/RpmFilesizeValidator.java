@@ -11,6 +11,11 @@ import io.kojan.javadeptools.rpm.RpmInfo;
 import io.kojan.javadeptools.rpm.RpmPackage;
 
 public abstract class RpmFilesizeValidator extends ElementwiseValidator {
+    @Override
+    public PayloadNeeds getPayloadNeeds() {
+        return PayloadNeeds.HEADER;
+    }
+
     @Override
     public void validate(RpmPackage rpm) throws Exception {
         long filesize = 0;
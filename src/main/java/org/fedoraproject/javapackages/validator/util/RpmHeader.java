@@ -0,0 +1,348 @@
+package org.fedoraproject.javapackages.validator.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Reader of the main header of an RPM file implemented in Java, without the
+ * native RPM library. The lead, the signature header and the main header are
+ * memory-mapped and only their sizes are checked when the file is opened, tags
+ * are decoded when they are requested.
+ * <p>
+ * The run uses it to summarize the RPM files, to compute their digests and to
+ * locate their payloads, validators receive the packages read by the native
+ * RPM library. The getters of the tags have the same names as those of
+ * {@link io.kojan.javadeptools.rpm.RpmInfo}. Instances can be read
+ * concurrently.
+ */
+public class RpmHeader {
+    public static final int TAG_NAME = 1000;
+    public static final int TAG_VERSION = 1001;
+    public static final int TAG_RELEASE = 1002;
+    public static final int TAG_EPOCH = 1003;
+    public static final int TAG_SIZE = 1009;
+    public static final int TAG_ARCH = 1022;
+    public static final int TAG_SOURCERPM = 1044;
+    public static final int TAG_PAYLOADCOMPRESSOR = 1125;
+    public static final int TAG_LONGSIZE = 5009;
+
+    private static final int TYPE_INT32 = 4;
+    private static final int TYPE_INT64 = 5;
+    private static final int TYPE_STRING = 6;
+    private static final int TYPE_STRING_ARRAY = 8;
+    private static final int TYPE_I18NSTRING = 9;
+
+    private static final int SIGTAG_LONGSIZE = 270;
+    private static final int SIGTAG_SIZE = 1000;
+
+    private static final int LEAD_SIZE = 96;
+    private static final int HEADER_INTRO_SIZE = 16;
+    private static final int INDEX_ENTRY_SIZE = 16;
+
+    private final Path path;
+    private final ByteBuffer header;
+    private final int indexCount;
+    private final int dataOffset;
+    private final long payloadOffset;
+    private final long fileSize;
+    private final long packageSize;
+
+    private RpmHeader(Path path, ByteBuffer header, int indexCount, long payloadOffset, long fileSize, long packageSize) {
+        this.path = path;
+        this.header = header;
+        this.indexCount = indexCount;
+        this.dataOffset = HEADER_INTRO_SIZE + indexCount * INDEX_ENTRY_SIZE;
+        this.payloadOffset = payloadOffset;
+        this.fileSize = fileSize;
+        this.packageSize = packageSize;
+    }
+
+    private static IOException invalid(Path path, String reason) {
+        return new IOException("Unable to open RPM file " + path + ": " + reason);
+    }
+
+    /**
+     * @return The size of the header structure starting at the offset,
+     * including its intro, index and data.
+     */
+    private static int headerSize(ByteBuffer buffer, int offset, Path path) throws IOException {
+        if (buffer.limit() - offset < HEADER_INTRO_SIZE || (buffer.get(offset) & 0xff) != 0x8e
+                || (buffer.get(offset + 1) & 0xff) != 0xad || (buffer.get(offset + 2) & 0xff) != 0xe8) {
+            throw invalid(path, "invalid header magic");
+        }
+        long indexCount = Integer.toUnsignedLong(buffer.getInt(offset + 8));
+        long dataSize = Integer.toUnsignedLong(buffer.getInt(offset + 12));
+        long size = HEADER_INTRO_SIZE + indexCount * INDEX_ENTRY_SIZE + dataSize;
+        if (size > buffer.limit() - offset) {
+            throw invalid(path, "truncated header");
+        }
+        return (int) size;
+    }
+
+    /**
+     * @return The size of the main header and the payload recorded in the
+     * signature header, -1 if the signature header does not contain it.
+     */
+    private static long signedSize(ByteBuffer buffer) {
+        int indexCount = buffer.getInt(LEAD_SIZE + 8);
+        int dataOffset = LEAD_SIZE + HEADER_INTRO_SIZE + indexCount * INDEX_ENTRY_SIZE;
+        long result = -1;
+        for (int i = 0; i != indexCount; ++i) {
+            int entry = LEAD_SIZE + HEADER_INTRO_SIZE + i * INDEX_ENTRY_SIZE;
+            int tag = buffer.getInt(entry);
+            int type = buffer.getInt(entry + 4);
+            int position = dataOffset + buffer.getInt(entry + 8);
+            if (tag == SIGTAG_LONGSIZE && type == TYPE_INT64 && position >= dataOffset && position + 8 <= buffer.limit()) {
+                return buffer.getLong(position);
+            } else if (tag == SIGTAG_SIZE && type == TYPE_INT32 && position >= dataOffset && position + 4 <= buffer.limit()) {
+                result = Integer.toUnsignedLong(buffer.getInt(position));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param path The RPM file.
+     * @return The main header of the RPM file.
+     * @throws IOException If the file is not an RPM file.
+     */
+    public static RpmHeader read(Path path) throws IOException {
+        ByteBuffer buffer;
+        long fileSize;
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            fileSize = channel.size();
+            // The mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(fileSize, Integer.MAX_VALUE));
+        }
+        if (buffer.limit() < LEAD_SIZE || (buffer.get(0) & 0xff) != 0xed || (buffer.get(1) & 0xff) != 0xab
+                || (buffer.get(2) & 0xff) != 0xee || (buffer.get(3) & 0xff) != 0xdb) {
+            throw invalid(path, "invalid lead");
+        }
+        int signatureSize = headerSize(buffer, LEAD_SIZE, path);
+        // The signature header is padded to a multiple of 8 bytes
+        int headerOffset = LEAD_SIZE + signatureSize + (8 - signatureSize % 8) % 8;
+        int headerSize = headerSize(buffer, headerOffset, path);
+        long signedSize = signedSize(buffer);
+        return new RpmHeader(path, buffer.slice(headerOffset, headerSize), buffer.getInt(headerOffset + 8),
+                (long) headerOffset + headerSize, fileSize, signedSize == -1 ? -1 : headerOffset + signedSize);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return The offset of the compressed payload in the RPM file.
+     */
+    public long getPayloadOffset() {
+        return payloadOffset;
+    }
+
+    /**
+     * @return The size of the RPM file.
+     */
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    /**
+     * @return Whether the file contains the whole payload, false for a file
+     * which is still being written or was truncated. Only files whose
+     * signature header records the size of the package can be checked,
+     * others are considered complete.
+     */
+    public boolean isComplete() {
+        return packageSize == -1 || fileSize >= packageSize;
+    }
+
+    /**
+     * @param tag The tag.
+     * @return The offset of the index entry of the tag or -1 if the header does
+     * not contain the tag.
+     */
+    private int find(int tag) {
+        for (int i = 0; i != indexCount; ++i) {
+            int entry = HEADER_INTRO_SIZE + i * INDEX_ENTRY_SIZE;
+            if (header.getInt(entry) == tag) {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    private int dataPosition(int entry) {
+        int position = dataOffset + header.getInt(entry + 8);
+        if (position < dataOffset || position >= header.limit()) {
+            throw new IllegalStateException("RPM file " + path + " contains a tag with invalid offset");
+        }
+        return position;
+    }
+
+    /**
+     * @param position The position of the string in the header.
+     * @param end Receives the position after the terminating zero byte.
+     * @return The string.
+     */
+    private String readString(int position, int[] end) {
+        int terminator = position;
+        while (terminator < header.limit() && header.get(terminator) != 0) {
+            ++terminator;
+        }
+        if (terminator == header.limit()) {
+            throw new IllegalStateException("RPM file " + path + " contains an unterminated string");
+        }
+        var bytes = new byte[terminator - position];
+        header.get(position, bytes);
+        end[0] = terminator + 1;
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param tag The tag.
+     * @return The strings of a string, a string array or an internationalized
+     * string tag, empty if the header does not contain the tag.
+     */
+    public List<String> getStrings(int tag) {
+        int entry = find(tag);
+        if (entry == -1) {
+            return Collections.emptyList();
+        }
+        int type = header.getInt(entry + 4);
+        if (type != TYPE_STRING && type != TYPE_STRING_ARRAY && type != TYPE_I18NSTRING) {
+            throw new IllegalStateException("Tag " + tag + " of RPM file " + path + " is not a string");
+        }
+        int count = type == TYPE_STRING ? 1 : header.getInt(entry + 12);
+        var end = new int[] {dataPosition(entry)};
+        // Every string takes at least its terminating zero byte
+        if (count < 0 || count > header.limit() - end[0]) {
+            throw new IllegalStateException("RPM file " + path + " contains a tag with invalid count");
+        }
+        var result = new ArrayList<String>(count);
+        for (int i = 0; i != count; ++i) {
+            result.add(readString(end[0], end));
+        }
+        return result;
+    }
+
+    /**
+     * @param tag The tag.
+     * @return The first string of a string tag or null if the header does not
+     * contain the tag.
+     */
+    public String getString(int tag) {
+        var strings = getStrings(tag);
+        return strings.isEmpty() ? null : strings.get(0);
+    }
+
+    /**
+     * @param tag The tag.
+     * @return The first value of an integer tag or empty if the header does not
+     * contain the tag.
+     */
+    public Optional<Integer> getInt(int tag) {
+        int entry = find(tag);
+        if (entry == -1) {
+            return Optional.empty();
+        }
+        if (header.getInt(entry + 4) != TYPE_INT32) {
+            throw new IllegalStateException("Tag " + tag + " of RPM file " + path + " is not an integer");
+        }
+        int position = dataPosition(entry);
+        if (position + 4 > header.limit()) {
+            throw new IllegalStateException("RPM file " + path + " contains a tag with invalid offset");
+        }
+        return Optional.of(header.getInt(position));
+    }
+
+    public String getName() {
+        return getString(TAG_NAME);
+    }
+
+    public String getVersion() {
+        return getString(TAG_VERSION);
+    }
+
+    public String getRelease() {
+        return getString(TAG_RELEASE);
+    }
+
+    public Optional<Integer> getEpoch() {
+        return getInt(TAG_EPOCH);
+    }
+
+    /**
+     * @return The total size of the files of the package, which is the size of
+     * the uncompressed payload without the cpio headers, 0 if the header does
+     * not contain it.
+     */
+    public long getSize() {
+        int entry = find(TAG_LONGSIZE);
+        if (entry != -1 && header.getInt(entry + 4) == TYPE_INT64) {
+            int position = dataPosition(entry);
+            if (position + 8 > header.limit()) {
+                throw new IllegalStateException("RPM file " + path + " contains a tag with invalid offset");
+            }
+            return header.getLong(position);
+        }
+        return getInt(TAG_SIZE).map(Integer::toUnsignedLong).orElse(0L);
+    }
+
+    public String getArch() {
+        return getString(TAG_ARCH);
+    }
+
+    /**
+     * @return The file name of the source RPM of a binary package, null for
+     * source packages.
+     */
+    public String getSourceRPM() {
+        return getString(TAG_SOURCERPM);
+    }
+
+    /**
+     * Source packages are recognized the same way as by the RPM library, by
+     * the absence of the source RPM tag.
+     * @return Whether the package is a source package.
+     */
+    public boolean isSourcePackage() {
+        return find(TAG_SOURCERPM) == -1;
+    }
+
+    /**
+     * @return The name of the source package, parsed from the file name of the
+     * source RPM for binary packages.
+     */
+    public String getSourceName() {
+        if (isSourcePackage()) {
+            return getName();
+        }
+        var sourceRpm = RpmFileName.parse(getSourceRPM());
+        return sourceRpm != null ? sourceRpm.name() : null;
+    }
+
+    /**
+     * The main header contains the digest of the payload, therefore the header
+     * digest identifies the whole content of the RPM file, regardless of its
+     * signatures.
+     * @return The SHA-256 digest of the main header.
+     */
+    public byte[] digest() {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(header.duplicate());
+            return digest.digest();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -1,28 +1,116 @@
 package org.fedoraproject.javapackages.validator.util;
 
+import java.util.HashSet;
 import java.util.function.Consumer;
 
 import org.apache.commons.compress.archivers.cpio.CpioArchiveEntry;
-import org.apache.commons.io.IOUtils;
 
-import io.kojan.javadeptools.rpm.RpmArchiveInputStream;
 import io.kojan.javadeptools.rpm.RpmPackage;
 
 public interface RpmJarConsumer extends Consumer<RpmPackage> {
+    /**
+     * The content of all JAR files in the payload.
+     */
+    static final PayloadNeeds JAR_CONTENT = PayloadNeeds.content(name -> name.endsWith(".jar"));
+
     @Override
     default void accept(RpmPackage rpm) {
-        try (var is = new RpmArchiveInputStream(rpm.getPath())) {
-            for (CpioArchiveEntry rpmEntry; ((rpmEntry = is.getNextEntry()) != null);) {
-                if (!rpmEntry.isSymbolicLink() && rpmEntry.getName().endsWith(".jar")) {
-                    var content = new byte[(int) rpmEntry.getSize()];
-                    IOUtils.read(is, content);
-                    acceptJarEntry(rpm, rpmEntry, content);
-                }
+        try {
+            var facts = getPayloadFacts(rpm);
+            if (facts != null) {
+                accept(rpm, facts);
+                return;
+            }
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+
+        // The payload is decompressed on another thread while the JAR files
+        // are analyzed on this one
+        var needs = getPayloadNeeds();
+        try (var pipeline = new PayloadPipeline(rpm.getPath(), needs::needsContent, needs::needsContent)) {
+            for (PayloadPipeline.Item item; !isCancelled() && ((item = pipeline.next()) != null);) {
+                acceptJarEntry(rpm, item.entry(), item.content());
             }
         } catch (Exception ex) {
             throw new RuntimeException(ex);
         }
     }
 
+    /**
+     * Process the JAR files using the facts from the payload index. Only the
+     * JAR files whose content is needed are read from the payload, consumers
+     * which do not implement {@link JarFactsConsumer} need the content of all
+     * JAR files.
+     */
+    private void accept(RpmPackage rpm, PayloadFacts facts) throws Exception {
+        var needs = getPayloadNeeds();
+        var contentNeeded = new HashSet<String>();
+        for (var jar : facts.getJars()) {
+            if (!needs.needsContent(jar.name())) {
+                continue;
+            }
+            if (!jar.complete() || !(this instanceof JarFactsConsumer consumer) || consumer.needsJarContent(rpm, jar)) {
+                contentNeeded.add(jar.name());
+            }
+        }
+
+        PayloadPipeline pipeline = null;
+        try {
+            if (!contentNeeded.isEmpty()) {
+                pipeline = new PayloadPipeline(rpm.getPath(), rpmEntry -> !rpmEntry.isSymbolicLink()
+                        && contentNeeded.contains(rpmEntry.getName()), rpmEntry -> true);
+            }
+            for (var jar : facts.getJars()) {
+                if (isCancelled()) {
+                    break;
+                }
+                if (!needs.needsContent(jar.name())) {
+                    continue;
+                }
+                if (contentNeeded.contains(jar.name())) {
+                    var item = pipeline.next();
+                    if (item == null || !item.entry().getName().equals(jar.name())) {
+                        throw new IllegalStateException("Payload of " + rpm.getPath() + " does not match the payload index");
+                    }
+                    acceptJarEntry(rpm, item.entry(), item.content());
+                } else {
+                    ((JarFactsConsumer) this).acceptJarFacts(rpm, jar);
+                }
+            }
+        } finally {
+            if (pipeline != null) {
+                pipeline.close();
+            }
+        }
+    }
+
     void acceptJarEntry(RpmPackage rpm, CpioArchiveEntry rpmEntry, byte[] content) throws Exception;
+
+    /**
+     * Consumers interested only in some of the JAR files can narrow the
+     * declaration, the other JAR files are then skipped without copying their
+     * content.
+     * @return The payload entries passed to the consumer.
+     */
+    default PayloadNeeds getPayloadNeeds() {
+        return JAR_CONTENT;
+    }
+
+    /**
+     * @param rpm The RPM package.
+     * @return The facts about the payload or null if the JAR files need to be
+     * read from the payload.
+     * @throws Exception If the facts could not be extracted.
+     */
+    default PayloadFacts getPayloadFacts(RpmPackage rpm) throws Exception {
+        return null;
+    }
+
+    /**
+     * @return Whether the consumer should stop reading further JAR files.
+     */
+    default boolean isCancelled() {
+        return false;
+    }
 }
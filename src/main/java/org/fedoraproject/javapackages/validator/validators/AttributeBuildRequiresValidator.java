@@ -1,6 +1,8 @@
 package org.fedoraproject.javapackages.validator.validators;
 
 import org.fedoraproject.javapackages.validator.util.ElementwiseValidator;
+import org.fedoraproject.javapackages.validator.util.PayloadNeeds;
+import org.fedoraproject.javapackages.validator.util.RpmFileName;
 
 import io.kojan.javadeptools.rpm.RpmInfo;
 import io.kojan.javadeptools.rpm.RpmPackage;
@@ -12,7 +14,12 @@ public class AttributeBuildRequiresValidator extends ElementwiseValidator {
     }
 
     public AttributeBuildRequiresValidator() {
-        super(RpmInfo::isSourcePackage);
+        super(RpmFileName::isSourcePackage, RpmInfo::isSourcePackage);
+    }
+
+    @Override
+    public PayloadNeeds getPayloadNeeds() {
+        return PayloadNeeds.HEADER;
     }
 
     @Override
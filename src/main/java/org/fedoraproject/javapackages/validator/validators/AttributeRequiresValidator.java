@@ -5,6 +5,8 @@ import java.util.function.Predicate;
 import org.fedoraproject.javapackages.validator.spi.Decorated;
 import org.fedoraproject.javapackages.validator.spi.TestResult;
 import org.fedoraproject.javapackages.validator.util.ElementwiseValidator;
+import org.fedoraproject.javapackages.validator.util.PayloadNeeds;
+import org.fedoraproject.javapackages.validator.util.RpmFileName;
 
 import io.kojan.javadeptools.rpm.RpmDependency;
 import io.kojan.javadeptools.rpm.RpmInfo;
@@ -17,7 +19,12 @@ public class AttributeRequiresValidator extends ElementwiseValidator {
     }
 
     public AttributeRequiresValidator() {
-        super(Predicate.not(RpmInfo::isSourcePackage));
+        super(Predicate.not(RpmFileName::isSourcePackage), Predicate.not(RpmInfo::isSourcePackage));
+    }
+
+    @Override
+    public PayloadNeeds getPayloadNeeds() {
+        return PayloadNeeds.HEADER;
     }
 
     @Override
@@ -6,6 +6,7 @@ import java.util.Map;
 import org.fedoraproject.javapackages.validator.spi.Decorated;
 import org.fedoraproject.javapackages.validator.spi.TestResult;
 import org.fedoraproject.javapackages.validator.util.BytecodeVersionJarValidator;
+import org.fedoraproject.javapackages.validator.util.ClassVersionHistogram;
 
 import io.kojan.javadeptools.rpm.RpmPackage;
 
@@ -53,6 +54,36 @@ public class BytecodeVersionValidator extends BytecodeVersionJarValidator {
         return new Limits(min, max);
     }
 
+    @Override
+    protected boolean needsClassDetail(RpmPackage rpm, Path jarPath, ClassVersionHistogram histogram) {
+        var limits = readLimits();
+        if (limits == null || histogram.isEmpty()) {
+            return super.needsClassDetail(rpm, jarPath, histogram);
+        }
+        // Report the individual classes only if some of them violate the limits
+        return histogram.getMinMajor() < limits.min() || limits.max() < histogram.getMaxMajor()
+                || super.needsClassDetail(rpm, jarPath, histogram);
+    }
+
+    @Override
+    public void validate(RpmPackage rpm, Path jarPath, ClassVersionHistogram histogram) {
+        var limits = readLimits();
+        if (limits == null) {
+            super.validate(rpm, jarPath, histogram);
+            return;
+        }
+
+        debug("Limits: {0}:{1}", Decorated.plain(limits.min()), Decorated.plain(limits.max()));
+        for (var version : histogram.getVersions()) {
+            mergeResult(TestResult.pass);
+            debug("{0}: {1}: bytecode version: {2}: {3} classes",
+                    Decorated.rpm(rpm),
+                    Decorated.custom(jarPath, DECORATION_JAR),
+                    Decorated.actual(version),
+                    Decorated.plain(histogram.getCount(version)));
+        }
+    }
+
     @Override
     public void validate(RpmPackage rpm, Path jarPath, Map<Path, Version> classVersions) {
         var limits = readLimits();
@@ -4,6 +4,8 @@ import java.util.Collections;
 
 import org.fedoraproject.javapackages.validator.spi.Decorated;
 import org.fedoraproject.javapackages.validator.util.ElementwiseValidator;
+import org.fedoraproject.javapackages.validator.util.PayloadNeeds;
+import org.fedoraproject.javapackages.validator.util.RpmFileName;
 
 import io.kojan.javadeptools.rpm.RpmInfo;
 import io.kojan.javadeptools.rpm.RpmPackage;
@@ -20,7 +22,12 @@ public class JavaExclusiveArchValidator extends ElementwiseValidator {
     private static final String JAVA_ARCHES = "aarch64 ppc64le s390x x86_64";
 
     public JavaExclusiveArchValidator() {
-        super(RpmInfo::isSourcePackage);
+        super(RpmFileName::isSourcePackage, RpmInfo::isSourcePackage);
+    }
+
+    @Override
+    public PayloadNeeds getPayloadNeeds() {
+        return PayloadNeeds.HEADER;
     }
 
     @Override
@@ -3,6 +3,8 @@ package org.fedoraproject.javapackages.validator.validators;
 import org.fedoraproject.javapackages.validator.spi.Decorated;
 import org.fedoraproject.javapackages.validator.util.Common;
 import org.fedoraproject.javapackages.validator.util.ElementwiseValidator;
+import org.fedoraproject.javapackages.validator.util.PayloadNeeds;
+import org.fedoraproject.javapackages.validator.util.RpmFileName;
 
 import io.kojan.javadeptools.rpm.RpmPackage;
 
@@ -13,7 +15,14 @@ public class JavadocNoarchValidator extends ElementwiseValidator {
     }
 
     public JavadocNoarchValidator() {
-        super(rpm -> !rpm.isSourcePackage() && rpm.getName().equals(Common.getPackageName(rpm) + "-javadoc"));
+        // The name of the source package is not known from the file name
+        super(fileName -> !fileName.isSourcePackage() && fileName.name().endsWith("-javadoc"),
+                rpm -> !rpm.isSourcePackage() && rpm.getName().equals(Common.getPackageName(rpm) + "-javadoc"));
+    }
+
+    @Override
+    public PayloadNeeds getPayloadNeeds() {
+        return PayloadNeeds.HEADER;
     }
 
     @Override
@@ -1,24 +1,21 @@
 package org.fedoraproject.javapackages.validator.validators;
 
-import java.io.ByteArrayInputStream;
-import java.lang.module.ModuleDescriptor;
-import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.TreeSet;
-import java.util.jar.JarEntry;
-import java.util.jar.JarInputStream;
-import java.util.regex.Pattern;
 
 import org.apache.commons.compress.archivers.cpio.CpioArchiveEntry;
 import org.fedoraproject.javapackages.validator.spi.Decorated;
 import org.fedoraproject.javapackages.validator.util.Common;
+import org.fedoraproject.javapackages.validator.util.JarFactsConsumer;
 import org.fedoraproject.javapackages.validator.util.JarValidator;
+import org.fedoraproject.javapackages.validator.util.PayloadFacts;
 
 import io.kojan.javadeptools.rpm.RpmPackage;
 
-public class JpmsProvidesValidator extends JarValidator {
+public class JpmsProvidesValidator extends JarValidator implements JarFactsConsumer {
     @Override
     public String getTestName() {
         return "/java/jpms-provides";
@@ -26,32 +23,45 @@ public class JpmsProvidesValidator extends JarValidator {
 
     private Map<String, String> jarModuleNames = new TreeMap<>();
 
-    private static Pattern VERSIONS_PATTERN = Pattern.compile("META-INF/versions/\\d+/module-info\\.class");
-
     @Override
     public void acceptJarEntry(RpmPackage rpm, CpioArchiveEntry rpmEntry, byte[] content) throws Exception {
-        var moduleNames = new ArrayList<Map.Entry<String, String>>();
         var rpmEntryString = Common.getEntryPath(rpmEntry).toString();
-
-        try (var is = new JarInputStream(new ByteArrayInputStream(content))) {
-            for (JarEntry entry; (entry = is.getNextJarEntry()) != null;) {
-                if (entry.getName().equals("module-info.class")
-                        || (entry.getName().startsWith("META-INF/versions/")
-                            && VERSIONS_PATTERN.matcher(entry.getName()).matches())) {
-                    var md = ModuleDescriptor.read(ByteBuffer.wrap(is.readNBytes((int) entry.getSize())));
-                    moduleNames.add(Map.entry(entry.getName(), md.name()));
-                }
+        // Only the module descriptors and the manifest are read
+        var moduleNames = new ArrayList<Map.Entry<String, String>>(getFact(rpm, rpmEntry.getName(),
+                PayloadFacts.MODULE_NAMES, () -> PayloadFacts.extractModuleNames(content)));
+        if (moduleNames.isEmpty()) {
+            var manifest = getFact(rpm, rpmEntry.getName(), PayloadFacts.MANIFEST, () -> PayloadFacts.extractManifest(content));
+            if (manifest == null) {
+                throw new IllegalStateException("JAR file " + rpmEntryString + " has no manifest");
             }
+            addAutomaticModuleName(moduleNames, manifest);
+        }
+        acceptModuleNames(rpm, rpmEntryString, moduleNames);
+    }
 
-            if (moduleNames.isEmpty()) {
-                var mf = is.getManifest();
-                var moduleName = mf.getMainAttributes().getValue("Automatic-Module-Name");
-                if (moduleName != null) {
-                    moduleNames.add(Map.entry("META-INF/MANIFEST.MF:Automatic-Module-Name", moduleName));
-                }
-            }
+    @Override
+    public boolean needsJarContent(RpmPackage rpm, PayloadFacts.Jar jar) {
+        // Reading the content reproduces the failure of a missing manifest
+        return jar.moduleNames().isEmpty() && jar.manifest() == null;
+    }
+
+    @Override
+    public void acceptJarFacts(RpmPackage rpm, PayloadFacts.Jar jar) throws Exception {
+        var moduleNames = new ArrayList<Map.Entry<String, String>>(jar.moduleNames());
+        if (moduleNames.isEmpty()) {
+            addAutomaticModuleName(moduleNames, jar.manifest());
+        }
+        acceptModuleNames(rpm, Common.getEntryPath(jar.name()).toString(), moduleNames);
+    }
+
+    private static void addAutomaticModuleName(List<Map.Entry<String, String>> moduleNames, Map<String, String> manifest) {
+        var moduleName = manifest.get("Automatic-Module-Name");
+        if (moduleName != null) {
+            moduleNames.add(Map.entry("META-INF/MANIFEST.MF:Automatic-Module-Name", moduleName));
         }
+    }
 
+    private void acceptModuleNames(RpmPackage rpm, String rpmEntryString, List<Map.Entry<String, String>> moduleNames) {
         for (var entry : moduleNames) {
             debug("{0}: {1}: {2}: found module name: {3}",
                     Decorated.rpm(rpm),
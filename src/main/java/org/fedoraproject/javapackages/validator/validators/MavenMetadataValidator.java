@@ -1,9 +1,11 @@
 package org.fedoraproject.javapackages.validator.validators;
 
 import java.io.ByteArrayInputStream;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Map;
+import java.util.List;
+import java.util.Set;
 import java.util.TreeSet;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -11,15 +13,16 @@ import java.util.stream.Collectors;
 import javax.xml.stream.XMLStreamException;
 
 import org.apache.commons.compress.archivers.cpio.CpioArchiveEntry;
-import org.apache.commons.io.IOUtils;
 import org.fedoraproject.javapackages.validator.spi.Decorated;
 import org.fedoraproject.javapackages.validator.util.Common;
 import org.fedoraproject.javapackages.validator.util.ElementwiseValidator;
-import org.fedoraproject.xmvn.metadata.PackageMetadata;
+import org.fedoraproject.javapackages.validator.util.PayloadFacts;
+import org.fedoraproject.javapackages.validator.util.PayloadNeeds;
+import org.fedoraproject.javapackages.validator.util.PayloadPipeline;
+import org.fedoraproject.javapackages.validator.util.RpmFileName;
 import org.fedoraproject.xmvn.metadata.io.stax.MetadataStaxReader;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-import io.kojan.javadeptools.rpm.RpmArchiveInputStream;
 import io.kojan.javadeptools.rpm.RpmInfo;
 import io.kojan.javadeptools.rpm.RpmPackage;
 
@@ -45,26 +48,68 @@ public class MavenMetadataValidator extends ElementwiseValidator {
     }
 
     public MavenMetadataValidator() {
-        super(Predicate.not(RpmInfo::isSourcePackage));
+        super(Predicate.not(RpmFileName::isSourcePackage), Predicate.not(RpmInfo::isSourcePackage));
+    }
+
+    private static final PayloadNeeds METADATA_CONTENT = PayloadNeeds.content(name ->
+            name.startsWith("./usr/share/maven-metadata/") && name.endsWith(".xml"));
+
+    @Override
+    public PayloadNeeds getPayloadNeeds() {
+        return METADATA_CONTENT;
+    }
+
+    private static record ParsedMetadata(Path metadataXml, List<String> artifactPaths, String error) {
+    }
+
+    private static ParsedMetadata parse(CpioArchiveEntry entry, byte[] content) throws Exception {
+        try (var is = new ByteArrayInputStream(content)) {
+            var artifactPaths = new ArrayList<String>();
+            for (var artifact : new MetadataStaxReader().read(is, true).getArtifacts()) {
+                artifactPaths.add(artifact.getPath());
+            }
+            return new ParsedMetadata(Common.getEntryPath(entry), artifactPaths, null);
+        } catch (XMLStreamException ex) {
+            return new ParsedMetadata(Common.getEntryPath(entry), List.of(), ex.getMessage());
+        }
+    }
+
+    private void readPayload(RpmPackage rpm, List<ParsedMetadata> metadataXmls, Set<String> foundFiles) throws Exception {
+        // The metadata files are parsed while the rest of the payload is
+        // being decompressed
+        try (var pipeline = new PayloadPipeline(rpm.getPath(), CpioArchiveEntry::isRegularFile, METADATA_CONTENT::needsContent)) {
+            for (PayloadPipeline.Item item; !isCancelled() && (item = pipeline.next()) != null;) {
+                var entry = item.entry();
+                var content = item.content();
+                foundFiles.add(Common.getEntryPath(entry).toString());
+                if (content != null) {
+                    var metadata = getFact(rpm, entry.getName(), PayloadFacts.METADATA,
+                            () -> PayloadFacts.extractMetadata(entry.getName(), content));
+                    metadataXmls.add(metadata.complete()
+                            ? new ParsedMetadata(Common.getEntryPath(entry), metadata.artifactPaths(), metadata.error())
+                            : parse(entry, content));
+                }
+            }
+        }
     }
 
     @SuppressFBWarnings(value = "REC_CATCH_EXCEPTION", justification = "Incorrect claim that Exception is never thrown")
     @Override
     public void validate(RpmPackage rpm) throws Exception {
-        var metadataXmls = new ArrayList<Map.Entry<CpioArchiveEntry, byte[]>>();
+        var metadataXmls = new ArrayList<ParsedMetadata>();
         var foundFiles = new TreeSet<String>();
-        try (var is = new RpmArchiveInputStream(rpm.getPath())) {
-            for (CpioArchiveEntry rpmEntry; (rpmEntry = is.getNextEntry()) != null;) {
-                if (!rpmEntry.isRegularFile()) {
-                    continue;
-                }
-                foundFiles.add(Common.getEntryPath(rpmEntry).toString());
-                if (rpmEntry.getName().startsWith("./usr/share/maven-metadata/") && rpmEntry.getName().endsWith(".xml")) {
-                    byte[] content = new byte[(int) rpmEntry.getSize()];
-                    IOUtils.read(is, content);
-                    metadataXmls.add(Map.entry(rpmEntry, content));
+        var facts = getPayloadFacts(rpm);
+        if (facts != null && facts.getMetadata().stream().allMatch(PayloadFacts.Metadata::complete)) {
+            for (var file : facts.getFiles()) {
+                if (file.isRegularFile()) {
+                    foundFiles.add(Common.getEntryPath(file.name()).toString());
                 }
             }
+            for (var metadata : facts.getMetadata()) {
+                metadataXmls.add(new ParsedMetadata(Common.getEntryPath(metadata.name()), metadata.artifactPaths(), metadata.error()));
+            }
+        } else {
+            readPayload(rpm, metadataXmls, foundFiles);
         }
 
         if (metadataXmls.isEmpty()) {
@@ -81,18 +126,14 @@ public class MavenMetadataValidator extends ElementwiseValidator {
                 .collect(Collectors.toSet());
 
         for (var entry : metadataXmls) {
-            PackageMetadata packageMetadata = null;
-
-            try (var is = new ByteArrayInputStream(entry.getValue())) {
-                packageMetadata = new MetadataStaxReader().read(is, true);
-            } catch (XMLStreamException ex) {
-                fail("{0}: metadata validation failed: {1}", Decorated.rpm(rpm), Decorated.plain(ex.getMessage()));
+            if (entry.error() != null) {
+                fail("{0}: metadata validation failed: {1}", Decorated.rpm(rpm), Decorated.plain(entry.error()));
                 continue;
             }
 
-            for (var artifact : packageMetadata.getArtifacts()) {
-                var artifactPath = Paths.get(artifact.getPath());
-                var metadataXml = Common.getEntryPath(entry.getKey());
+            for (var artifact : entry.artifactPaths()) {
+                var artifactPath = Paths.get(artifact);
+                var metadataXml = entry.metadataXml();
                 jarsWithoutMd.remove(artifactPath.toString());
                 pomsWithoutMd.remove(artifactPath.toString());
                 if (foundFiles.contains(artifactPath.toString())) {
@@ -1,17 +1,20 @@
 package org.fedoraproject.javapackages.validator.validators;
 
-import java.io.ByteArrayInputStream;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.jar.JarInputStream;
+import java.util.function.Function;
 
 import org.apache.commons.compress.archivers.cpio.CpioArchiveEntry;
 import org.fedoraproject.javapackages.validator.DefaultValidator;
 import org.fedoraproject.javapackages.validator.spi.Decorated;
 import org.fedoraproject.javapackages.validator.util.Common;
+import org.fedoraproject.javapackages.validator.util.JarFactsConsumer;
 import org.fedoraproject.javapackages.validator.util.JarValidator;
+import org.fedoraproject.javapackages.validator.util.PayloadFacts;
+import org.fedoraproject.javapackages.validator.util.PayloadNeeds;
 import org.fedoraproject.javapackages.validator.util.RpmJarConsumer;
 
 import io.kojan.javadeptools.rpm.RpmPackage;
@@ -73,39 +76,64 @@ public class NVRJarMetadataValidator extends DefaultValidator {
 
     private static List<Entry> ENTRIES = List.of(new RpmName(), new RpmEpoch(), new RpmVersion(), new RpmRelease());
 
-    private class RpmEntry implements RpmJarConsumer {
+    private class RpmEntry implements JarFactsConsumer {
         RpmPackage sourceRpm = null;
         List<RpmPackage> binaryRpms = new ArrayList<>();
 
+        @Override
+        public boolean isCancelled() {
+            return NVRJarMetadataValidator.this.isCancelled();
+        }
+
+        @Override
+        public PayloadFacts getPayloadFacts(RpmPackage rpm) throws Exception {
+            return NVRJarMetadataValidator.this.getPayloadFacts(rpm);
+        }
+
+        @Override
+        public boolean needsJarContent(RpmPackage rpm, PayloadFacts.Jar jar) {
+            return jar.manifest() == null;
+        }
+
+        @Override
+        public void acceptJarFacts(RpmPackage rpm, PayloadFacts.Jar jar) throws Exception {
+            checkAttributes(rpm, Common.getEntryPath(jar.name()), jar.manifest()::get);
+        }
+
         @Override
         public void acceptJarEntry(RpmPackage rpm, CpioArchiveEntry rpmEntry, byte[] content) throws Exception {
-            try (var is = new JarInputStream(new ByteArrayInputStream(content))) {
-                var mf = is.getManifest();
-                var attrs = mf.getMainAttributes();
-
-                for (var entry : ENTRIES) {
-                    var srpmValue = entry.valueOf(sourceRpm);
-                    var attrValue = attrs.getValue(entry.name());
-
-                    if (attrValue == null) {
-                        fail("{0}: {1}: Jar manifest attribute {2} is not present",
-                                Decorated.rpm(rpm),
-                                Decorated.custom(Common.getEntryPath(rpmEntry), JarValidator.DECORATION_JAR),
-                                Decorated.struct(entry.name()));
-                    } else if (srpmValue.equals(attrValue)) {
-                        pass("{0}: {1}: Jar manifest attribute {2} with value \"{3}\" matches the RPM attribute",
-                                Decorated.rpm(rpm),
-                                Decorated.custom(Common.getEntryPath(rpmEntry), JarValidator.DECORATION_JAR),
-                                Decorated.struct(entry.name()),
-                                Decorated.actual(attrValue));
-                    } else {
-                        fail("{0}: {1}: Jar manifest attribute {2} with value \"{3}\" does not match the RPM attribute value \"{4}\"",
-                                Decorated.rpm(rpm),
-                                Decorated.custom(Common.getEntryPath(rpmEntry), JarValidator.DECORATION_JAR),
-                                Decorated.struct(entry.name()),
-                                Decorated.actual(attrValue),
-                                Decorated.expected(srpmValue));
-                    }
+            var jarPath = Common.getEntryPath(rpmEntry);
+            // Only the manifest is read, the classes are not inflated
+            var manifest = getFact(rpm, rpmEntry.getName(), PayloadFacts.MANIFEST, () -> PayloadFacts.extractManifest(content));
+            if (manifest == null) {
+                throw new IllegalStateException("JAR file " + jarPath + " has no manifest");
+            }
+            checkAttributes(rpm, jarPath, manifest::get);
+        }
+
+        private void checkAttributes(RpmPackage rpm, Path jarPath, Function<String, String> attributes) {
+            for (var entry : ENTRIES) {
+                var srpmValue = entry.valueOf(sourceRpm);
+                var attrValue = attributes.apply(entry.name());
+
+                if (attrValue == null) {
+                    fail("{0}: {1}: Jar manifest attribute {2} is not present",
+                            Decorated.rpm(rpm),
+                            Decorated.custom(jarPath, JarValidator.DECORATION_JAR),
+                            Decorated.struct(entry.name()));
+                } else if (srpmValue.equals(attrValue)) {
+                    pass("{0}: {1}: Jar manifest attribute {2} with value \"{3}\" matches the RPM attribute",
+                            Decorated.rpm(rpm),
+                            Decorated.custom(jarPath, JarValidator.DECORATION_JAR),
+                            Decorated.struct(entry.name()),
+                            Decorated.actual(attrValue));
+                } else {
+                    fail("{0}: {1}: Jar manifest attribute {2} with value \"{3}\" does not match the RPM attribute value \"{4}\"",
+                            Decorated.rpm(rpm),
+                            Decorated.custom(jarPath, JarValidator.DECORATION_JAR),
+                            Decorated.struct(entry.name()),
+                            Decorated.actual(attrValue),
+                            Decorated.expected(srpmValue));
                 }
             }
         }
@@ -117,9 +145,16 @@ public class NVRJarMetadataValidator extends DefaultValidator {
         this.rpms = new TreeMap<>();
     }
 
+    @Override
+    public PayloadNeeds getPayloadNeeds() {
+        return RpmJarConsumer.JAR_CONTENT;
+    }
+
     @Override
     public void validate(Iterable<RpmPackage> rpms) throws Exception {
+        String previous = null;
         for (var rpm : rpms) {
+            String key;
             if (rpm.getInfo().isSourcePackage()) {
                 var filename = rpm.getPath().getFileName();
                 if (filename == null) {
@@ -127,16 +162,43 @@ public class NVRJarMetadataValidator extends DefaultValidator {
                             Decorated.rpm(rpm), Decorated.actual(rpm.getPath()));
                     return;
                 }
-                this.rpms.computeIfAbsent(filename.toString(), name -> new RpmEntry()).sourceRpm = rpm;
+                key = filename.toString();
             } else {
-                this.rpms.computeIfAbsent(rpm.getInfo().getSourceRPM(), name -> new RpmEntry()).binaryRpms.add(rpm);
+                key = rpm.getInfo().getSourceRPM();
+            }
+            // Packages of a source package are adjacent, a finished group is
+            // validated right away instead of being held until the end
+            if (isGroupedBySource() && previous != null && !previous.equals(key)) {
+                validateGroups();
+            }
+            previous = key;
+            var entry = this.rpms.computeIfAbsent(key, name -> new RpmEntry());
+            if (rpm.getInfo().isSourcePackage()) {
+                entry.sourceRpm = rpm;
+            } else {
+                entry.binaryRpms.add(rpm);
             }
         }
 
-        for (var entry : this.rpms.values()) {
-            for (var binary : entry.binaryRpms) {
-                entry.accept(binary);
+        validateGroups();
+    }
+
+    private void validateGroups() throws Exception {
+        for (var group : this.rpms.entrySet()) {
+            var entry = group.getValue();
+            var members = new ArrayList<RpmPackage>(entry.binaryRpms);
+            if (entry.sourceRpm != null) {
+                members.add(entry.sourceRpm);
             }
+            validateCached(group.getKey(), members, () -> {
+                for (var binary : entry.binaryRpms) {
+                    if (isCancelled()) {
+                        return;
+                    }
+                    entry.accept(binary);
+                }
+            });
         }
+        this.rpms.clear();
     }
 }
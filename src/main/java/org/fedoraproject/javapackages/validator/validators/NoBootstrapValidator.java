@@ -2,6 +2,7 @@ package org.fedoraproject.javapackages.validator.validators;
 
 import org.fedoraproject.javapackages.validator.spi.Decorated;
 import org.fedoraproject.javapackages.validator.util.ElementwiseValidator;
+import org.fedoraproject.javapackages.validator.util.PayloadNeeds;
 
 import io.kojan.javadeptools.rpm.RpmPackage;
 
@@ -11,6 +12,11 @@ public class NoBootstrapValidator extends ElementwiseValidator {
         return "/no-bootstrap";
     }
 
+    @Override
+    public PayloadNeeds getPayloadNeeds() {
+        return PayloadNeeds.HEADER;
+    }
+
     @Override
     public void validate(RpmPackage rpm) throws Exception {
         Decorated suffix = Decorated.actual("~bootstrap");
@@ -0,0 +1,92 @@
+package org.fedoraproject.javapackages.validator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.fedoraproject.javapackages.validator.util.RpmHeader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class AdmissionControllerTest {
+    @TempDir
+    Path workDir;
+
+    private RpmPackageList rpms(int count) throws Exception {
+        var rpms = new RpmPackageList();
+        for (int i = 0; i != count; ++i) {
+            rpms.add(RpmSummary.of(RpmHeader.read(new RpmFixture("foo" + i, "1", "1")
+                    .file("/usr/share/foo" + i, new byte[1000]).write(workDir))));
+        }
+        return rpms;
+    }
+
+    @Test
+    void testWait() throws Exception {
+        var rpms = rpms(2);
+        // Admits a single RPM file at once
+        var admission = new AdmissionController(rpms.getSummary(0).fileSize(), Long.MAX_VALUE);
+        try (var second = admission.open(true)) {
+            var first = admission.open(true);
+            first.admit(rpms).iterator().next();
+            var waiting = CompletableFuture.supplyAsync(() -> second.admit(rpms).iterator().next());
+            assertThrows(TimeoutException.class, () -> waiting.get(200, TimeUnit.MILLISECONDS));
+            first.close();
+            assertEquals("foo0", waiting.get(10, TimeUnit.SECONDS).getInfo().getName());
+        }
+        var statistics = admission.getStatistics();
+        assertEquals(2, statistics.admitted());
+        assertEquals(1, statistics.waits());
+        assertTrue(statistics.waitNanos() > 0);
+        assertEquals(rpms.getSummary(0).fileSize(), statistics.peakFileBytes());
+    }
+
+    @Test
+    void testNestedAndOversized() throws Exception {
+        var rpms = rpms(2);
+        var admission = new AdmissionController(1, 1);
+        try (var session = admission.open(true)) {
+            for (var outer : session.admit(rpms)) {
+                for (var inner : session.admit(rpms)) {
+                    assertTrue(inner.getInfo().getName().startsWith("foo"), outer.getPath().toString());
+                }
+            }
+            assertFalse(rpms.isHeld(0), "iterated packages are dropped");
+            // Left held by a test which did not iterate to the end
+            session.admit(rpms).iterator().next();
+            assertTrue(rpms.isHeld(0));
+        }
+        assertFalse(rpms.isHeld(0), "closed sessions drop their packages");
+        try (var session = admission.open(false)) {
+            // The released RPM files do not block the next test
+            assertEquals("foo0", session.admit(rpms).iterator().next().getInfo().getName());
+        }
+        assertEquals(0, admission.getStatistics().waits());
+        assertTrue(admission.getStatistics().peakPayloadBytes() >= 2000);
+    }
+
+    @Test
+    void testCancelled() throws Exception {
+        var rpms = rpms(3);
+        var admission = new AdmissionController(Long.MAX_VALUE, Long.MAX_VALUE);
+        var cancelled = new AtomicBoolean(false);
+        try (var session = admission.open(true, null, cancelled::get)) {
+            var iterator = session.admit(rpms).iterator();
+            assertEquals("foo0", iterator.next().getInfo().getName());
+            cancelled.set(true);
+            assertFalse(iterator.hasNext(), "cancelled iteration ends");
+            assertThrows(NoSuchElementException.class, iterator::next);
+            assertFalse(session.admit(rpms).iterator().hasNext(), "new iterations of a cancelled test are empty");
+        }
+        // The remaining RPM files are not admitted
+        assertEquals(1, admission.getStatistics().admitted());
+    }
+}
@@ -1,5 +1,6 @@
 package org.fedoraproject.javapackages.validator;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -40,6 +41,18 @@ public class ArgFileIteratorTest {
         assertFalse(it.hasNext());
     }
 
+    @Test
+    void testFilter() {
+        var it = ArgFileIterator.create(toPaths(
+                "src/test/resources/arg_file_iterator/dangling-symlink-1-1.noarch.rpm",
+                "src/test/resources/arg_file_iterator/dir/duplicate-file1-1-1.noarch.rpm"),
+                path -> path.getFileName().toString().startsWith("duplicate-"));
+        assertTrue(it.hasNext());
+        assertEquals("duplicate-file1-1-1.noarch.rpm", it.next().getPath().getFileName().toString());
+        assertFalse(it.hasNext());
+        assertEquals(1, it.getFiltered());
+    }
+
     @Test
     void testEmptyDir() {
         var it = ArgFileIterator.create(toPaths(
@@ -72,6 +85,19 @@ public class ArgFileIteratorTest {
         assertFalse(it.hasNext());
     }
 
+    @Test
+    void testDirAndDirSymlink() {
+        var it = ArgFileIterator.create(toPaths(
+                "src/test/resources/arg_file_iterator/dir",
+                "src/test/resources/arg_file_iterator/dir_symlink"));
+        assertTrue(it.hasNext());
+        it.next();
+        assertTrue(it.hasNext());
+        it.next();
+        assertFalse(it.hasNext());
+        assertEquals(2, it.getDuplicates());
+    }
+
     @Test
     void testDirDanglingSymlink() {
         var it = ArgFileIterator.create(toPaths(
@@ -0,0 +1,122 @@
+package org.fedoraproject.javapackages.validator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.fedoraproject.javapackages.validator.spi.Decorated;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class BatchTest {
+    @TempDir
+    Path workDir;
+
+    private List<Batch.Job> read(String... lines) {
+        var content = String.join("\n", lines).getBytes(StandardCharsets.UTF_8);
+        return Batch.readManifest(workDir.resolve("batch.yaml"), new ByteArrayInputStream(content));
+    }
+
+    @Test
+    void testManifest() throws Exception {
+        var jobs = read(
+                "args: [-x]",
+                "jobs:",
+                "  - name: ant",
+                "    files: [rpms/ant]",
+                "    tests:",
+                "      /first: [foo, bar]",
+                "      /second:",
+                "    output: results/ant",
+                "    tmt-tree: tests",
+                "  - name: maven",
+                "    args: [--max-failures, '1']",
+                "    tests: [/first]",
+                "    output: results/maven");
+        assertEquals(2, jobs.size());
+        assertEquals(new Batch.Job("ant", List.of("-x", "-f", workDir.resolve("rpms/ant").toString(),
+                "/first", "[", "foo", "bar", "]", "/second"), workDir.resolve("results/ant"), workDir.resolve("tests")),
+                jobs.get(0));
+        assertEquals(List.of("-x", "--max-failures", "1", "/first"), jobs.get(1).args());
+        assertNull(jobs.get(1).tmtTree());
+
+        assertThrows(RuntimeException.class, () -> read("jobs:", "  - name: ant"));
+        assertThrows(RuntimeException.class, () -> read("jobs:", "  - name: ant", "    output: out", "    tests: 1"));
+    }
+
+    @Test
+    void testRun() throws Exception {
+        var artifactsDir = Files.createDirectories(workDir.resolve("rpms"));
+        Files.copy(Paths.get("src/test/resources/arg_file_iterator/dangling-symlink-1-1.noarch.rpm"),
+                artifactsDir.resolve("dangling-symlink-1-1.noarch.rpm"));
+        Files.createDirectories(workDir.resolve("tree"));
+        TestFactory.validators.clear();
+        TestFactory.validators.add(new TestValidator("/first", (rpms, v) -> v.warn("first warning")));
+        TestFactory.validators.add(new TestValidator("/second", (rpms, v) -> v.pass("second {0}", Decorated.plain("passed"))));
+        Files.writeString(workDir.resolve("batch.yaml"), String.join("\n",
+                "args: [" + TestFactory.class.getCanonicalName() + "]",
+                "jobs:",
+                "  - name: tmt",
+                "    files: [rpms]",
+                "    tests: [/first]",
+                "    output: out/tmt",
+                "    tmt-tree: tree",
+                "  - name: plain",
+                "    files: [rpms]",
+                "    tests: [/second]",
+                "    output: out/plain"));
+
+        assertEquals(0, new Main().run(new String[] {"--batch", workDir.resolve("batch.yaml").toString()}));
+
+        var results = Files.readString(workDir.resolve("out/tmt/results.yaml"));
+        assertTrue(results.contains("/first"), "the tmt job ran its test");
+        assertFalse(results.contains("/second"), "the tmt job ran only its test");
+        assertTrue(Files.isRegularFile(workDir.resolve("out/tmt/results/first.html")));
+        var stdout = Files.readString(workDir.resolve("out/plain/stdout"));
+        assertTrue(stdout.contains("second passed"), "the output of the plain job is written to its directory");
+        assertFalse(stdout.contains("first warning"), "the plain job ran only its test");
+    }
+
+    @Test
+    void testFailedJobs() throws Exception {
+        var artifactsDir = Files.createDirectories(workDir.resolve("rpms"));
+        Files.copy(Paths.get("src/test/resources/arg_file_iterator/dangling-symlink-1-1.noarch.rpm"),
+                artifactsDir.resolve("dangling-symlink-1-1.noarch.rpm"));
+        Files.createDirectories(workDir.resolve("tree"));
+        TestFactory.validators.clear();
+        TestFactory.validators.add(new TestValidator("/second", (rpms, v) -> v.pass("second {0}", Decorated.plain("passed"))));
+        Files.writeString(workDir.resolve("batch.yaml"), String.join("\n",
+                "args: [" + TestFactory.class.getCanonicalName() + "]",
+                "jobs:",
+                "  - name: tmt",
+                "    files: [rpms]",
+                "    tests: [/missing]",
+                "    output: out/tmt",
+                "    tmt-tree: tree",
+                "  - name: failed",
+                "    files: [rpms]",
+                "    tests: [/missing]",
+                "    output: out/failed",
+                "  - name: plain",
+                "    files: [rpms]",
+                "    tests: [/second]",
+                "    output: out/plain"));
+
+        assertNotEquals(0, new Main().run(new String[] {"--batch", workDir.resolve("batch.yaml").toString()}));
+
+        var failed = Files.readString(workDir.resolve("out/failed/stdout"));
+        assertTrue(failed.contains("/missing"), "the exception of the failed job is written to its directory");
+        var stdout = Files.readString(workDir.resolve("out/plain/stdout"));
+        assertTrue(stdout.contains("second passed"), "the jobs after the failed ones ran");
+    }
+}
@@ -0,0 +1,96 @@
+package org.fedoraproject.javapackages.validator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class DirectoryWatcherTest {
+    @TempDir
+    Path workDir;
+
+    @TempDir
+    Path fixtureDir;
+
+    @Test
+    void testScan() throws Exception {
+        var dir = Files.createDirectories(workDir.resolve("dir"));
+        var fixture = new RpmFixture("foo", "1", "1").file("/usr/share/foo/data", new byte[1000]).write(fixtureDir);
+        var content = Files.readAllBytes(fixture);
+        var rpm = dir.resolve(fixture.getFileName());
+
+        var scan = DirectoryWatcher.scan(List.of(workDir));
+        assertTrue(scan.complete().isEmpty());
+        assertEquals(0, scan.incomplete());
+
+        // Only the lead was written
+        Files.write(rpm, Arrays.copyOf(content, 50));
+        scan = DirectoryWatcher.scan(List.of(workDir));
+        assertTrue(scan.complete().isEmpty());
+        assertEquals(1, scan.incomplete());
+
+        // The headers, but not the whole payload
+        Files.write(rpm, Arrays.copyOf(content, content.length - 1));
+        scan = DirectoryWatcher.scan(List.of(workDir));
+        assertTrue(scan.complete().isEmpty());
+        assertEquals(1, scan.incomplete());
+
+        Files.write(rpm, content);
+        scan = DirectoryWatcher.scan(List.of(workDir));
+        assertEquals(List.of(rpm), List.copyOf(scan.complete().keySet()));
+        assertEquals(0, scan.incomplete());
+
+        // Replaced by a rebuilt package
+        var previous = scan.complete();
+        var rebuilt = new RpmFixture("foo", "1", "1").file("/usr/share/foo/data", new byte[2000])
+                .write(Files.createDirectories(fixtureDir.resolve("rebuilt")));
+        Files.write(rpm, Files.readAllBytes(rebuilt));
+        scan = DirectoryWatcher.scan(List.of(workDir));
+        assertEquals(1, scan.complete().size());
+        assertNotEquals(previous, scan.complete());
+    }
+
+    @Test
+    void testAwait() throws Exception {
+        try (var watcher = new DirectoryWatcher(List.of(workDir))) {
+            if (watcher.isPolling()) {
+                assertFalse(watcher.await(10));
+                return;
+            }
+            assertFalse(watcher.await(10));
+            var dir = Files.createDirectories(workDir.resolve("dir"));
+            assertTrue(watcher.await(10000));
+            // Directories created later are watched as well
+            Files.write(dir.resolve("foo-1-1.noarch.rpm"), new byte[] {0});
+            assertTrue(watcher.await(10000));
+            assertFalse(watcher.await(10));
+        }
+    }
+
+    @Test
+    void testChanged() throws Exception {
+        var a = workDir.resolve("a.rpm");
+        var b = workDir.resolve("b.rpm");
+        var c = workDir.resolve("c.rpm");
+        var time = FileTime.fromMillis(1000);
+        var previous = Map.of(a, new DirectoryWatcher.FileState(10, time), b, new DirectoryWatcher.FileState(20, time));
+        var current = new TreeMap<Path, DirectoryWatcher.FileState>();
+        current.put(a, new DirectoryWatcher.FileState(10, time));
+        current.put(b, new DirectoryWatcher.FileState(20, FileTime.fromMillis(2000)));
+        current.put(c, new DirectoryWatcher.FileState(30, time));
+        assertEquals(List.of(b, c), DirectoryWatcher.changed(previous, current));
+        assertEquals(List.of(a, b, c), DirectoryWatcher.changed(Map.of(), current));
+        assertEquals(List.of(), DirectoryWatcher.changed(current, current));
+    }
+}
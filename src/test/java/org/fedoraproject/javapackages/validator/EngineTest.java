@@ -0,0 +1,87 @@
+package org.fedoraproject.javapackages.validator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.collections4.IterableUtils;
+import org.fedoraproject.javapackages.validator.spi.Decorated;
+import org.fedoraproject.javapackages.validator.spi.TestResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class EngineTest {
+    @TempDir
+    Path workDir;
+
+    private void copyRpm() throws Exception {
+        Files.copy(Paths.get("src/test/resources/arg_file_iterator/dangling-symlink-1-1.noarch.rpm"),
+                workDir.resolve("dangling-symlink-1-1.noarch.rpm"));
+    }
+
+    @Test
+    void testConcurrentRuns() throws Exception {
+        copyRpm();
+        // Both runs are inside their validators at the same time
+        var running = new CountDownLatch(2);
+        var debug = new ByteArrayOutputStream();
+        var first = new Engine(new Engine.Configuration().file(workDir).debugOutputStream(new PrintStream(debug, true, StandardCharsets.UTF_8))
+                .validator(new TestValidator("/first", (rpms, v) -> {
+                    running.countDown();
+                    running.await();
+                    v.pass("first {0}", Decorated.plain(IterableUtils.size(rpms)));
+                })));
+        var second = new Engine(new Engine.Configuration().file(workDir)
+                .validator(new TestValidator("/second", (rpms, v) -> {
+                    running.countDown();
+                    running.await();
+                    v.fail("second failed");
+                })));
+
+        var streamed = new ConcurrentLinkedQueue<String>();
+        var firstResults = CompletableFuture.supplyAsync(() -> {
+            try {
+                return first.run(result -> streamed.add(result.getTestName()));
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        var secondResults = second.run();
+
+        assertEquals(1, secondResults.size());
+        assertEquals("/second", secondResults.get(0).getTestName());
+        assertEquals(TestResult.fail, secondResults.get(0).getResult());
+        var results = firstResults.get(30, TimeUnit.SECONDS);
+        assertEquals(1, results.size());
+        assertEquals(TestResult.pass, results.get(0).getResult());
+        assertEquals("first 1", Main.decoratedObjects(results.get(0).iterator().next(), TextDecorator.NO_DECORATOR));
+        assertEquals(List.of("/first"), List.copyOf(streamed));
+        assertTrue(debug.toString(StandardCharsets.UTF_8).contains("Selected tests read"), "debug output of the first run");
+    }
+
+    @Test
+    void testSelection() throws Exception {
+        copyRpm();
+        var configuration = new Engine.Configuration().file(workDir)
+                .validator(new TestValidator("/first", (rpms, v) -> v.pass("first")))
+                .validator(new TestValidator("/second", (rpms, v) -> v.pass("second")))
+                .test("/second");
+        var results = new Engine(configuration).run();
+        assertEquals(1, results.size());
+        assertEquals("/second", results.get(0).getTestName());
+
+        assertThrows(RuntimeException.class, () -> new Engine(configuration.test("/missing")).run());
+    }
+}
@@ -0,0 +1,103 @@
+package org.fedoraproject.javapackages.validator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.kojan.javadeptools.rpm.RpmPackage;
+
+public class FactStoreTest {
+    private static final FactStore.Type<String> TEXT = new FactStore.Type<>("text", value -> 2L * value.length());
+
+    @TempDir
+    Path workDir;
+
+    @Test
+    void testSingleFlight() throws Exception {
+        var rpm = new RpmPackage(new RpmFixture("foo", "1", "1").write(workDir));
+        var store = new FactStore(1 << 20);
+        var computations = new AtomicInteger();
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+
+        var first = CompletableFuture.supplyAsync(() -> {
+            try {
+                return store.get(rpm, "./foo.jar", TEXT, () -> {
+                    computations.incrementAndGet();
+                    started.countDown();
+                    release.await();
+                    return "value";
+                });
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        started.await();
+        var second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return store.get(rpm, "./foo.jar", TEXT, () -> {
+                    computations.incrementAndGet();
+                    return "other";
+                });
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        release.countDown();
+
+        assertEquals("value", first.get(10, TimeUnit.SECONDS));
+        assertEquals("value", second.get(10, TimeUnit.SECONDS));
+        assertEquals(1, computations.get());
+        assertEquals(new FactStore.Statistics(1, 1, 0), store.getStatistics());
+    }
+
+    @Test
+    void testKeys() throws Exception {
+        var rpm = new RpmPackage(new RpmFixture("foo", "1", "1").write(workDir));
+        var store = new FactStore(1 << 20);
+        var other = new FactStore.Type<String>("other", String::length);
+        var value = store.get(rpm, "./a", TEXT, () -> new String("a"));
+        assertSame(value, store.get(rpm, "./a", TEXT, () -> "b"));
+        assertEquals("b", store.get(rpm, "./b", TEXT, () -> "b"));
+        assertEquals("c", store.get(rpm, "./a", other, () -> "c"));
+        store.put(rpm, "./a", TEXT, "d");
+        assertEquals("d", store.get(rpm, "./a", TEXT, () -> "e"));
+    }
+
+    @Test
+    void testEviction() throws Exception {
+        var rpm = new RpmPackage(new RpmFixture("foo", "1", "1").write(workDir));
+        // Holds about two values
+        var store = new FactStore(2 * (128 + 2000) + 1000);
+        var value = "x".repeat(1000);
+        store.get(rpm, "./a", TEXT, () -> value);
+        store.get(rpm, "./b", TEXT, () -> value);
+        // The least recently used value is evicted
+        store.get(rpm, "./a", TEXT, () -> value);
+        store.get(rpm, "./c", TEXT, () -> value);
+        assertEquals(1, store.getStatistics().evictions());
+        assertEquals("new", store.get(rpm, "./b", TEXT, () -> "new"));
+        assertEquals(value, store.get(rpm, "./c", TEXT, () -> "new"));
+    }
+
+    @Test
+    void testFailure() throws Exception {
+        var rpm = new RpmPackage(new RpmFixture("foo", "1", "1").write(workDir));
+        var store = new FactStore(1 << 20);
+        assertThrows(IOException.class, () -> store.get(rpm, "./a", TEXT, () -> {
+            throw new IOException("broken");
+        }));
+        // Failures are not kept
+        assertEquals("value", store.get(rpm, "./a", TEXT, () -> "value"));
+    }
+}
@@ -0,0 +1,61 @@
+package org.fedoraproject.javapackages.validator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import org.fedoraproject.javapackages.validator.spi.Decorated;
+import org.fedoraproject.javapackages.validator.spi.LogEntry;
+import org.fedoraproject.javapackages.validator.spi.LogEvent;
+import org.fedoraproject.javapackages.validator.spi.ResultBuilder;
+import org.fedoraproject.javapackages.validator.spi.TestResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class JsonlReporterTest {
+    @TempDir
+    Path workDir;
+
+    @Test
+    void testRoundTrip() throws Exception {
+        var path = workDir.resolve("results.jsonl");
+        try (var os = new PrintStream(Files.newOutputStream(path), false, StandardCharsets.UTF_8)) {
+            var reporter = new JsonlReporter(os, false);
+            reporter.entry("/a", LogEntry.fail("{0}: \"quoted\"\n{1}", Decorated.actual("x"), Decorated.plain(1)));
+            reporter.entry("/a", LogEntry.debug("hidden"));
+            var result = new ResultBuilder();
+            result.pass("passed");
+            var time = LocalDateTime.of(2024, 1, 1, 0, 0);
+            reporter.result(new NamedResult(result.build(), "/b", time, time), List.of("p1", "p2"));
+            var failed = new ResultBuilder();
+            failed.mergeResult(TestResult.fail);
+            reporter.result(new NamedResult(failed.build(), "/a"), null);
+            assertEquals(1, reporter.finish());
+        }
+
+        var lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        assertEquals(5, lines.size(), "debug entries are omitted");
+        var summary = (Map<?, ?>) Json.parse(lines.get(4));
+        assertEquals("summary", summary.get("type"));
+        assertEquals(1L, ((Map<?, ?>) summary.get("entries")).get("fail"));
+
+        assertTrue(JsonlReporter.isJsonl(path));
+        var parts = JsonlReporter.read(path);
+        assertEquals(2, parts.size());
+        assertEquals("/b", parts.get(0).testName());
+        assertEquals(List.of("p1", "p2"), parts.get(0).partial());
+        assertEquals(LocalDateTime.of(2024, 1, 1, 0, 0), parts.get(0).startTime());
+        var entry = parts.get(1).result().log().get(0);
+        assertEquals(LogEvent.fail, entry.kind());
+        assertEquals("{0}: \"quoted\"\n{1}", entry.pattern());
+        assertEquals("x", entry.objects()[0].getObject());
+        assertEquals(TestResult.fail, parts.get(1).result().result());
+    }
+}
@@ -1,20 +1,28 @@
 package org.fedoraproject.javapackages.validator;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.fedoraproject.javapackages.validator.spi.Decorated;
+import org.fedoraproject.javapackages.validator.util.ElementwiseValidator;
+import org.fedoraproject.javapackages.validator.util.PayloadNeeds;
+import org.fedoraproject.javapackages.validator.util.RpmFileName;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import io.kojan.javadeptools.rpm.RpmInfo;
+import io.kojan.javadeptools.rpm.RpmPackage;
+
 class MainTmtTest {
     @TempDir
     Path tmtTree;
@@ -116,6 +124,71 @@ class MainTmtTest {
         assertTrue(readResult("results.yaml").contains("result: warn"), "result is warn");
     }
 
+    @Test
+    void testHtmlPagination() throws Exception {
+        copyResources(artifactsDir, "arg_file_iterator/dangling-symlink-1-1.noarch.rpm");
+        args.add("--html-page-size");
+        args.add("10");
+        args.add("--html-gzip");
+        addValidator("/paged", (rpms, v) -> {
+            for (int i = 0; i != 25; ++i) {
+                v.warn("warning-{0}", Decorated.plain(i));
+            }
+        });
+
+        runMain(0);
+        expectResults( //
+                "results/paged.html", //
+                "results/paged.pages/warn-1.html", //
+                "results/paged.pages/warn-3.html", //
+                "results/paged.pages/warn-3.html.gz");
+        assertFalse(Files.exists(tmtTestData.resolve("results/paged.pages/warn-4.html")), "no empty page");
+
+        var index = readResult("results/paged.html");
+        assertTrue(index.contains("<td>25</td>"), "index contains the number of entries");
+        assertTrue(index.contains("paged.pages/warn-3.html"), "index links the last page");
+        var last = readResult("results/paged.pages/warn-3.html");
+        assertTrue(last.contains("warning-24"), "last page contains the last entry");
+        assertFalse(last.contains("warning-19"), "last page does not contain entries of other pages");
+        assertTrue(readResult("results/paged.log").contains("warning-0"), "text log is complete");
+    }
+
+    static class SourceValidator extends ElementwiseValidator {
+        int validated = 0;
+
+        SourceValidator() {
+            super(RpmFileName::isSourcePackage, RpmInfo::isSourcePackage);
+        }
+
+        @Override
+        public String getTestName() {
+            return "/source";
+        }
+
+        @Override
+        public void validate(RpmPackage rpm) throws Exception {
+            ++validated;
+        }
+    }
+
+    @Test
+    void testFileNameFilter() throws Exception {
+        // Opening the corrupted file would crash the run
+        Files.createFile(artifactsDir.resolve("broken-1-1.noarch.rpm"));
+        args.add(TestFactory.class.getCanonicalName());
+        var validator = new SourceValidator();
+        TestFactory.validators.add(validator);
+        runMain(0);
+        assertEquals(0, validator.validated);
+        assertFalse(Files.exists(tmtTestData.resolve("crash.log")), "binary RPM file is not opened");
+
+        Files.delete(tmtTestData.resolve("results.yaml"));
+        main = MainTmt.create(tmtTestData, tmtTree);
+        args.add("--verify-headers");
+        runMain(2);
+        assertTrue(Files.exists(tmtTestData.resolve("crash.log")), "all RPM files are opened");
+    }
+
     @Test
     void testCustomConfig() throws Exception {
         copyResources(artifactsDir, "arg_file_iterator/dangling-symlink-1-1.noarch.rpm");
@@ -209,6 +282,23 @@ class MainTmtTest {
                 "results.yaml");
     }
 
+    @Test
+    void testCompileDependenciesInMemory() throws Exception {
+        writeResource(tmtTree, "Fact.java", "package my; import org.apache.oro.text.regex.Pattern; class Fact {}");
+
+        writeResource(tmtTree, "javapackages-validator.properties", "dependencies=oro:oro:2.0.8");
+        args.add("-sp");
+        args.add(tmtTree.toString());
+        args.add("--class-cache");
+        args.add(tmtTestData.resolve("classes.cache").toString());
+        runMain(0);
+        assertTrue(readResult("results.yaml").contains("result: skip"), "result is skip");
+        expectResults( //
+                "classes.cache", //
+                "classes.cache.local-repo/oro/oro/2.0.8/oro-2.0.8.jar", //
+                "results.yaml");
+    }
+
     @Test
     void testCompileMalformedDependency() throws Exception {
         writeResource(tmtTree, "javapackages-validator.properties", "dependencies=foo");
@@ -242,6 +332,184 @@ class MainTmtTest {
                 "crash log contains ArtifactNotFoundException");
     }
 
+    @Test
+    void testFailFast() throws Exception {
+        copyResources(artifactsDir, "arg_file_iterator/dangling-symlink-1-1.noarch.rpm",
+                "arg_file_iterator/dir/duplicate-file1-1-1.noarch.rpm");
+        args.add("--fail-fast");
+        List<String> seen = new ArrayList<>();
+        addValidator("/fail-fast", (rpms, v) -> {
+            for (var rpm : rpms) {
+                seen.add(rpm.getPath().toString());
+                v.fail("failed-rpm");
+            }
+        });
+        runMain(0);
+        assertEquals(1, seen.size(), "validation stops after the first failure");
+        assertTrue(readResult("results.yaml").contains("result: fail"), "result is fail");
+        assertTrue(readResult("results/fail-fast.log").contains("stopped early"), "log mentions early stop");
+    }
+
+    @Test
+    void testMaxFailures() throws Exception {
+        copyResources(artifactsDir, "arg_file_iterator/dangling-symlink-1-1.noarch.rpm");
+        args.add("--max-failures");
+        args.add("2");
+        addValidator("/max-failures", (rpms, v) -> {
+            for (int i = 0; i != 5; ++i) {
+                v.fail("failure-{0}", Decorated.plain(i));
+            }
+        });
+        runMain(0);
+        var log = readResult("results/max-failures.log");
+        assertTrue(log.contains("failure-0"), "first failure is reported");
+        assertTrue(log.contains("failure-1"), "second failure is reported");
+        assertFalse(log.contains("failure-2"), "failures over the limit are not reported");
+        assertTrue(log.contains("3 more failures were not reported"), "log mentions suppressed failures");
+        assertTrue(readResult("results.yaml").contains("result: fail"), "result is fail");
+    }
+
+    static class CountingValidator extends ElementwiseValidator {
+        int validated = 0;
+
+        @Override
+        public String getTestName() {
+            return "/counting";
+        }
+
+        @Override
+        public void validate(RpmPackage rpm) throws Exception {
+            ++validated;
+            pass("{0}: validated", Decorated.rpm(rpm));
+        }
+    }
+
+    @Test
+    void testDelta() throws Exception {
+        copyResources(artifactsDir, "arg_file_iterator/dangling-symlink-1-1.noarch.rpm");
+        args.add("--delta");
+        args.add(tmtTree.resolve("delta").toString());
+        args.add(TestFactory.class.getCanonicalName());
+
+        var first = new CountingValidator();
+        TestFactory.validators.add(first);
+        runMain(0);
+        assertEquals(1, first.validated);
+
+        Files.delete(tmtTestData.resolve("results.yaml"));
+        main = MainTmt.create(tmtTestData, tmtTree);
+        TestFactory.validators.clear();
+        var second = new CountingValidator();
+        TestFactory.validators.add(second);
+        runMain(0);
+        assertEquals(0, second.validated, "unchanged RPM is not validated again");
+        assertTrue(readResult("results.yaml").contains("result: pass"), "cached result is pass");
+        assertTrue(readResult("results/counting.log").contains("validated"), "cached log is reported");
+    }
+
+    static class FactsValidator extends ElementwiseValidator {
+        int symlinks = -1;
+
+        @Override
+        public String getTestName() {
+            return "/facts";
+        }
+
+        @Override
+        public void validate(RpmPackage rpm) throws Exception {
+            symlinks = (int) getPayloadFacts(rpm).getFiles().stream().filter(file -> file.isSymbolicLink()).count();
+            pass("{0}: validated", Decorated.rpm(rpm));
+        }
+    }
+
+    @Test
+    void testCacheDir() throws Exception {
+        copyResources(artifactsDir, "arg_file_iterator/dangling-symlink-1-1.noarch.rpm");
+        var cacheDir = tmtTree.resolve("cache");
+        args.add("--cache-dir");
+        args.add(cacheDir.toString());
+        args.add(TestFactory.class.getCanonicalName());
+
+        var first = new FactsValidator();
+        TestFactory.validators.add(first);
+        runMain(0);
+        assertEquals(1, first.symlinks, "facts list the dangling symlink");
+        try (var stream = Files.list(cacheDir.resolve("payload"))) {
+            assertEquals(1, stream.filter(path -> path.toString().endsWith(".facts")).count(), "facts are stored");
+        }
+
+        Files.delete(tmtTestData.resolve("results.yaml"));
+        main = MainTmt.create(tmtTestData, tmtTree);
+        TestFactory.validators.clear();
+        var second = new FactsValidator();
+        TestFactory.validators.add(second);
+        runMain(0);
+        assertEquals(1, second.symlinks, "stored facts list the dangling symlink");
+    }
+
+    static class HeaderValidator extends ElementwiseValidator {
+        boolean facts = true;
+
+        @Override
+        public String getTestName() {
+            return "/header";
+        }
+
+        @Override
+        public PayloadNeeds getPayloadNeeds() {
+            return PayloadNeeds.HEADER;
+        }
+
+        @Override
+        public void validate(RpmPackage rpm) throws Exception {
+            facts = getPayloadFacts(rpm) != null;
+            pass("{0}: validated", Decorated.rpm(rpm));
+        }
+    }
+
+    @Test
+    void testHeaderOnly() throws Exception {
+        copyResources(artifactsDir, "arg_file_iterator/dangling-symlink-1-1.noarch.rpm");
+        var cacheDir = tmtTree.resolve("cache");
+        args.add("--cache-dir");
+        args.add(cacheDir.toString());
+        args.add(TestFactory.class.getCanonicalName());
+
+        var validator = new HeaderValidator();
+        TestFactory.validators.add(validator);
+        runMain(0);
+        assertFalse(validator.facts, "payload facts are not extracted");
+        assertFalse(Files.exists(cacheDir.resolve("payload")), "payload index is not created");
+    }
+
+    @Test
+    void testShardMerge() throws Exception {
+        copyResources(artifactsDir, "arg_file_iterator/dangling-symlink-1-1.noarch.rpm");
+        var shardOutput = tmtTree.resolve("shard-1.bin").toString();
+        args.add("--shard");
+        args.add("1/1");
+        args.add("--shard-output");
+        args.add(shardOutput);
+        args.add(TestFactory.class.getCanonicalName());
+
+        var sharded = new CountingValidator();
+        TestFactory.validators.add(sharded);
+        runMain(0);
+        assertEquals(1, sharded.validated);
+        assertTrue(Files.isRegularFile(Paths.get(shardOutput)), "shard results are written");
+
+        Files.delete(tmtTestData.resolve("results.yaml"));
+        main = MainTmt.create(tmtTestData, tmtTree);
+        TestFactory.validators.clear();
+        var merging = new CountingValidator();
+        TestFactory.validators.add(merging);
+        args = new ArrayList<>(List.of("-x", "--merge", shardOutput, TestFactory.class.getCanonicalName()));
+        runMain(0);
+        assertEquals(0, merging.validated, "merge does not validate RPM files");
+        assertTrue(readResult("results.yaml").contains("result: pass"), "merged result is pass");
+        assertTrue(readResult("results/counting.log").contains("validated"), "merged log is reported");
+    }
+
     @Test
     void testNameSlash() throws Exception {
         copyResources(artifactsDir, "arg_file_iterator/dangling-symlink-1-1.noarch.rpm");
@@ -256,4 +524,55 @@ class MainTmtTest {
                 "results/.html", //
                 "results.yaml");
     }
+
+    public static class IndexedValidator extends ElementwiseValidator {
+        int validated = 0;
+
+        public IndexedValidator() {
+        }
+
+        @Override
+        public String getTestName() {
+            return "/indexed";
+        }
+
+        @Override
+        public void validate(RpmPackage rpm) throws Exception {
+            ++validated;
+            pass("{0}: validated", Decorated.rpm(rpm));
+        }
+    }
+
+    @Test
+    void testTestIndex() throws Exception {
+        copyResources(artifactsDir, "arg_file_iterator/dangling-symlink-1-1.noarch.rpm");
+        writeResource(Files.createDirectories(tmtTree.resolve("src")), "Foo.java", "package dummy; class Foo {}");
+        var outputDir = tmtTree.resolve("classes");
+        args.add("-sp");
+        args.add(tmtTree.resolve("src").toString());
+        args.add("-d");
+        args.add(outputDir.toString());
+        args.add(TestFactory.class.getCanonicalName());
+        args.add("/indexed");
+
+        var first = new IndexedValidator();
+        TestFactory.validators.add(first);
+        runMain(0);
+        assertEquals(1, first.validated);
+        var index = tmtTree.resolve("classes.tests");
+        assertTrue(Files.isRegularFile(index), "test index is written");
+        // Full discovery rewrites the index
+        var indexMtime = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(index, indexMtime);
+
+        Files.delete(tmtTestData.resolve("results.yaml"));
+        main = MainTmt.create(tmtTestData, tmtTree);
+        TestFactory.validators.clear();
+        var second = new IndexedValidator();
+        TestFactory.validators.add(second);
+        runMain(0);
+        assertEquals(indexMtime, Files.getLastModifiedTime(index), "test index is used");
+        assertEquals(1, second.validated, "validator from the index is obtained from its factory");
+        assertTrue(readResult("results.yaml").contains("result: pass"), "result is pass");
+    }
 }
@@ -0,0 +1,44 @@
+package org.fedoraproject.javapackages.validator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ResourceLimitsTest {
+    @TempDir
+    Path workDir;
+
+    @Test
+    void testCgroupV2() throws Exception {
+        Files.writeString(workDir.resolve("memory.max"), "16777216\n");
+        Files.writeString(workDir.resolve("cpu.max"), "150000 100000\n");
+        var limits = ResourceLimits.detect(workDir);
+        assertEquals(Math.min(16777216, Runtime.getRuntime().maxMemory()), limits.memory());
+        assertEquals(Math.min(2, Runtime.getRuntime().availableProcessors()), limits.cpus());
+        assertEquals(limits.memory() / 2, limits.payloadBudget());
+    }
+
+    @Test
+    void testCgroupV1() throws Exception {
+        Files.writeString(Files.createDirectory(workDir.resolve("memory")).resolve("memory.limit_in_bytes"), "9223372036854771712\n");
+        var cpu = Files.createDirectory(workDir.resolve("cpu"));
+        Files.writeString(cpu.resolve("cpu.cfs_quota_us"), "50000\n");
+        Files.writeString(cpu.resolve("cpu.cfs_period_us"), "100000\n");
+        var limits = ResourceLimits.detect(workDir);
+        assertEquals(Runtime.getRuntime().maxMemory(), limits.memory());
+        assertEquals(1, limits.cpus());
+    }
+
+    @Test
+    void testUnlimited() throws Exception {
+        Files.writeString(workDir.resolve("memory.max"), "max\n");
+        Files.writeString(workDir.resolve("cpu.max"), "max 100000\n");
+        var limits = ResourceLimits.detect(workDir);
+        assertEquals(Runtime.getRuntime().maxMemory(), limits.memory());
+        assertEquals(Runtime.getRuntime().availableProcessors(), limits.cpus());
+    }
+}
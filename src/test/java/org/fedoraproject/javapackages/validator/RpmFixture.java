@@ -0,0 +1,802 @@
+package org.fedoraproject.javapackages.validator;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.compress.archivers.cpio.CpioArchiveEntry;
+import org.apache.commons.compress.archivers.cpio.CpioArchiveOutputStream;
+import org.apache.commons.compress.archivers.cpio.CpioConstants;
+import org.apache.commons.compress.compressors.xz.XZCompressorOutputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorOutputStream;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZOutputStream;
+
+/**
+ * Generator of synthetic RPM files for tests and benchmarks. The RPM files are
+ * written in pure Java without rpmbuild and contain generated JAR files, POM
+ * files, Maven metadata, symlinks and arbitrary other files. The output
+ * depends only on the parameters, therefore the same fixture is generated on
+ * every run.
+ * <p>
+ * The files are stored with a fixed modification time and owner, file digests
+ * and the header and payload digests of the signature header are valid, the
+ * RPM files are not signed.
+ */
+public class RpmFixture {
+    public static enum Compression {
+        gzip, xz, zstd
+    }
+
+    /**
+     * Parameters of a generated JAR file. Classes are minimal valid class
+     * files of the given bytecode version.
+     */
+    public static class Jar {
+        private int classes = 1;
+        private int bytecodeMajor = 55;
+        private int resourceBytes = 0;
+        private String moduleName = null;
+        private String automaticModuleName = null;
+        private boolean nvrAttributes = false;
+
+        public Jar classes(int classes) {
+            this.classes = classes;
+            return this;
+        }
+
+        public Jar bytecodeMajor(int bytecodeMajor) {
+            this.bytecodeMajor = bytecodeMajor;
+            return this;
+        }
+
+        /**
+         * @param resourceBytes The size of an incompressible resource added to
+         * the JAR file to make it larger.
+         */
+        public Jar resourceBytes(int resourceBytes) {
+            this.resourceBytes = resourceBytes;
+            return this;
+        }
+
+        /**
+         * @param moduleName The name of the module declared by the generated
+         * {@code module-info.class}.
+         */
+        public Jar moduleName(String moduleName) {
+            this.moduleName = moduleName;
+            return this;
+        }
+
+        public Jar automaticModuleName(String automaticModuleName) {
+            this.automaticModuleName = automaticModuleName;
+            return this;
+        }
+
+        /**
+         * @param nvrAttributes Whether the manifest contains the name, epoch,
+         * version and release of the source RPM.
+         */
+        public Jar nvrAttributes(boolean nvrAttributes) {
+            this.nvrAttributes = nvrAttributes;
+            return this;
+        }
+    }
+
+    /**
+     * Parameters of a generated repository.
+     * @param packages The number of source packages, each of which produces
+     * one source and one binary RPM file.
+     * @param jarsPerPackage The number of JAR files, with POM files and Maven
+     * metadata, in every binary RPM file.
+     * @param classesPerJar The average number of classes in a JAR file.
+     * @param filesPerPackage The number of additional data files in every
+     * binary RPM file.
+     * @param compression The payload compression.
+     * @param seed The seed from which the sizes are derived.
+     */
+    public static record Scale(int packages, int jarsPerPackage, int classesPerJar, int filesPerPackage,
+            Compression compression, long seed) {
+    }
+
+    private static final int MTIME = 1700000000;
+    private static final LocalDateTime JAR_TIME = LocalDateTime.of(2023, 11, 14, 22, 13, 20);
+
+    private static final int TYPE_INT16 = 3;
+    private static final int TYPE_INT32 = 4;
+    private static final int TYPE_STRING = 6;
+    private static final int TYPE_BIN = 7;
+    private static final int TYPE_STRING_ARRAY = 8;
+    private static final int TYPE_I18NSTRING = 9;
+
+    private static final int RPMTAG_HEADERSIGNATURES = 62;
+    private static final int RPMTAG_HEADERIMMUTABLE = 63;
+
+    private static final int RPMSIGTAG_SHA256 = 273;
+    private static final int RPMSIGTAG_SIZE = 1000;
+    private static final int RPMSIGTAG_MD5 = 1004;
+
+    private static record Content(long mode, byte[] data, String linkTarget) {
+    }
+
+    private static record Artifact(String groupId, String artifactId, String path) {
+    }
+
+    private final String name;
+    private final String version;
+    private final String release;
+    private Integer epoch = null;
+    private String arch = "noarch";
+    private boolean source = false;
+    private String sourceRpm = null;
+    private Compression compression = Compression.gzip;
+    private int blockSize = 0;
+    private final Map<String, Content> files = new TreeMap<>();
+    private final List<Artifact> artifacts = new ArrayList<>();
+
+    public RpmFixture(String name, String version, String release) {
+        this.name = name;
+        this.version = version;
+        this.release = release;
+        this.sourceRpm = name + "-" + version + "-" + release + ".src.rpm";
+    }
+
+    public RpmFixture epoch(int epoch) {
+        this.epoch = epoch;
+        return this;
+    }
+
+    public RpmFixture arch(String arch) {
+        this.arch = arch;
+        return this;
+    }
+
+    /**
+     * Make the fixture a source RPM.
+     */
+    public RpmFixture source() {
+        this.source = true;
+        return this;
+    }
+
+    public RpmFixture sourceRpm(String sourceRpm) {
+        this.sourceRpm = sourceRpm;
+        return this;
+    }
+
+    public RpmFixture compression(Compression compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    /**
+     * @param blockSize The uncompressed size of independently compressed
+     * blocks of xz payloads or frames of zstd payloads, as written by
+     * multithreaded compressors. By default the payload is a single block.
+     */
+    public RpmFixture blockSize(int blockSize) {
+        this.blockSize = blockSize;
+        return this;
+    }
+
+    public String getFileName() {
+        return name + "-" + version + "-" + release + "." + (source ? "src" : arch) + ".rpm";
+    }
+
+    /**
+     * @param path The absolute path of the file.
+     * @param content The content of the file.
+     */
+    public RpmFixture file(String path, byte[] content) {
+        files.put(path, new Content(CpioConstants.C_ISREG | 0644, content, null));
+        return this;
+    }
+
+    public RpmFixture directory(String path) {
+        files.put(path, new Content(CpioConstants.C_ISDIR | 0755, new byte[0], null));
+        return this;
+    }
+
+    public RpmFixture symlink(String path, String target) {
+        files.put(path, new Content(CpioConstants.C_ISLNK | 0777, target.getBytes(StandardCharsets.UTF_8), target));
+        return this;
+    }
+
+    public RpmFixture jar(String path, Jar jar) {
+        return file(path, jarContent(jar));
+    }
+
+    public RpmFixture pom(String path, String groupId, String artifactId) {
+        return file(path, ("""
+                <?xml version="1.0" encoding="UTF-8"?>
+                <project xmlns="http://maven.apache.org/POM/4.0.0">
+                  <modelVersion>4.0.0</modelVersion>
+                  <groupId>%s</groupId>
+                  <artifactId>%s</artifactId>
+                  <version>%s</version>
+                </project>
+                """).formatted(groupId, artifactId, version).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Add an artifact to the Maven metadata file of the package, which is
+     * generated if at least one artifact is added.
+     * @param path The path of the artifact file.
+     */
+    public RpmFixture mavenArtifact(String groupId, String artifactId, String path) {
+        artifacts.add(new Artifact(groupId, artifactId, path));
+        return this;
+    }
+
+    private byte[] mavenMetadata() {
+        var result = new StringBuilder();
+        result.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        result.append("<metadata xmlns=\"http://fedorahosted.org/xmvn/METADATA/3.2.0\">\n");
+        result.append("  <artifacts>\n");
+        for (var artifact : artifacts) {
+            result.append("    <artifact>\n");
+            result.append("      <groupId>").append(artifact.groupId()).append("</groupId>\n");
+            result.append("      <artifactId>").append(artifact.artifactId()).append("</artifactId>\n");
+            result.append("      <version>").append(version).append("</version>\n");
+            result.append("      <path>").append(artifact.path()).append("</path>\n");
+            result.append("    </artifact>\n");
+        }
+        result.append("  </artifacts>\n");
+        result.append("</metadata>\n");
+        return result.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void writeShort(ByteArrayOutputStream os, int value) {
+        os.write(value >>> 8);
+        os.write(value);
+    }
+
+    private static void writeInt(ByteArrayOutputStream os, int value) {
+        writeShort(os, value >>> 16);
+        writeShort(os, value);
+    }
+
+    private static byte[] classFile(int major, String className) {
+        var os = new ByteArrayOutputStream();
+        writeInt(os, 0xCAFEBABE);
+        writeShort(os, 0);
+        writeShort(os, major);
+        writeShort(os, 5);
+        os.write(1);
+        os.writeBytes(utf8(className));
+        os.write(7);
+        writeShort(os, 1);
+        os.write(1);
+        os.writeBytes(utf8("java/lang/Object"));
+        os.write(7);
+        writeShort(os, 3);
+        // public super, this class, super class
+        writeShort(os, 0x21);
+        writeShort(os, 2);
+        writeShort(os, 4);
+        // interfaces, fields, methods, attributes
+        writeInt(os, 0);
+        writeInt(os, 0);
+        return os.toByteArray();
+    }
+
+    private static byte[] moduleInfo(int major, String moduleName) {
+        var os = new ByteArrayOutputStream();
+        writeInt(os, 0xCAFEBABE);
+        writeShort(os, 0);
+        writeShort(os, Math.max(major, 53));
+        writeShort(os, 8);
+        os.write(1);
+        os.writeBytes(utf8("module-info"));
+        os.write(7);
+        writeShort(os, 1);
+        os.write(1);
+        os.writeBytes(utf8("Module"));
+        os.write(1);
+        os.writeBytes(utf8(moduleName));
+        os.write(19);
+        writeShort(os, 4);
+        os.write(1);
+        os.writeBytes(utf8("java.base"));
+        os.write(19);
+        writeShort(os, 6);
+        // module access, this class, no super class, interfaces, fields, methods
+        writeShort(os, 0x8000);
+        writeShort(os, 2);
+        writeShort(os, 0);
+        writeShort(os, 0);
+        writeShort(os, 0);
+        writeShort(os, 0);
+        // The Module attribute requiring java.base
+        writeShort(os, 1);
+        writeShort(os, 3);
+        writeInt(os, 22);
+        writeShort(os, 5);
+        writeShort(os, 0);
+        writeShort(os, 0);
+        writeShort(os, 1);
+        writeShort(os, 7);
+        writeShort(os, 0x8000);
+        writeShort(os, 0);
+        writeShort(os, 0);
+        writeShort(os, 0);
+        writeShort(os, 0);
+        writeShort(os, 0);
+        return os.toByteArray();
+    }
+
+    private static byte[] utf8(String value) {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        var result = new byte[bytes.length + 2];
+        result[0] = (byte) (bytes.length >>> 8);
+        result[1] = (byte) bytes.length;
+        System.arraycopy(bytes, 0, result, 2, bytes.length);
+        return result;
+    }
+
+    private static void putEntry(ZipOutputStream os, String name, byte[] content) throws IOException {
+        var entry = new ZipEntry(name);
+        entry.setTimeLocal(JAR_TIME);
+        os.putNextEntry(entry);
+        os.write(content);
+        os.closeEntry();
+    }
+
+    private byte[] jarContent(Jar jar) {
+        var manifest = new StringBuilder();
+        manifest.append("Manifest-Version: 1.0\r\n");
+        if (jar.automaticModuleName != null) {
+            manifest.append("Automatic-Module-Name: ").append(jar.automaticModuleName).append("\r\n");
+        }
+        if (jar.nvrAttributes) {
+            manifest.append("Rpm-Name: ").append(name).append("\r\n");
+            manifest.append("Rpm-Epoch: ").append(epoch != null ? epoch.toString() : "").append("\r\n");
+            manifest.append("Rpm-Version: ").append(version).append("\r\n");
+            manifest.append("Rpm-Release: ").append(release).append("\r\n");
+        }
+        manifest.append("\r\n");
+
+        var bos = new ByteArrayOutputStream();
+        try (var os = new ZipOutputStream(bos)) {
+            putEntry(os, "META-INF/", new byte[0]);
+            putEntry(os, "META-INF/MANIFEST.MF", manifest.toString().getBytes(StandardCharsets.UTF_8));
+            if (jar.moduleName != null) {
+                putEntry(os, "module-info.class", moduleInfo(jar.bytecodeMajor, jar.moduleName));
+            }
+            var packageName = "org/fixture/" + name.replaceAll("[^A-Za-z0-9]", "_") + "/";
+            for (int i = 0; i != jar.classes; ++i) {
+                var className = packageName + "C" + i;
+                putEntry(os, className + ".class", classFile(jar.bytecodeMajor, className));
+            }
+            if (jar.resourceBytes != 0) {
+                var resource = new byte[jar.resourceBytes];
+                new SplittableRandom(jar.resourceBytes).nextBytes(resource);
+                putEntry(os, packageName + "resource.bin", resource);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * Header structure of RPM, the index entries are written in the order in
+     * which they are added and must be added in the ascending order of tags.
+     */
+    private static class Header {
+        private static record Entry(int tag, int type, int count, byte[] data) {
+        }
+
+        private final List<Entry> entries = new ArrayList<>();
+
+        void add(int tag, int type, int count, byte[] data) {
+            entries.add(new Entry(tag, type, count, data));
+        }
+
+        void addString(int tag, String value) {
+            add(tag, TYPE_STRING, 1, (value + "\0").getBytes(StandardCharsets.UTF_8));
+        }
+
+        void addI18nString(int tag, String value) {
+            add(tag, TYPE_I18NSTRING, 1, (value + "\0").getBytes(StandardCharsets.UTF_8));
+        }
+
+        void addStrings(int tag, List<String> values) {
+            var os = new ByteArrayOutputStream();
+            for (var value : values) {
+                os.writeBytes((value + "\0").getBytes(StandardCharsets.UTF_8));
+            }
+            add(tag, TYPE_STRING_ARRAY, values.size(), os.toByteArray());
+        }
+
+        void addInts(int tag, int... values) {
+            var os = new ByteArrayOutputStream();
+            for (var value : values) {
+                writeInt(os, value);
+            }
+            add(tag, TYPE_INT32, values.length, os.toByteArray());
+        }
+
+        void addShorts(int tag, int... values) {
+            var os = new ByteArrayOutputStream();
+            for (var value : values) {
+                writeShort(os, value);
+            }
+            add(tag, TYPE_INT16, values.length, os.toByteArray());
+        }
+
+        private static int alignment(int type) {
+            return switch (type) {
+                case TYPE_INT16 -> 2;
+                case TYPE_INT32 -> 4;
+                default -> 1;
+            };
+        }
+
+        /**
+         * @param regionTag The tag of the region containing all entries.
+         * @return The serialized header.
+         */
+        byte[] toBytes(int regionTag) {
+            var index = new ByteArrayOutputStream();
+            var data = new ByteArrayOutputStream();
+            int count = entries.size() + 1;
+
+            for (var entry : entries) {
+                while (data.size() % alignment(entry.type()) != 0) {
+                    data.write(0);
+                }
+                writeInt(index, entry.tag());
+                writeInt(index, entry.type());
+                writeInt(index, data.size());
+                writeInt(index, entry.count());
+                data.writeBytes(entry.data());
+            }
+
+            var result = new ByteArrayOutputStream();
+            writeInt(result, 0x8EADE801);
+            writeInt(result, 0);
+            writeInt(result, count);
+            writeInt(result, data.size() + 16);
+            // The region entry is the first one, its trailer is the last data
+            writeInt(result, regionTag);
+            writeInt(result, TYPE_BIN);
+            writeInt(result, data.size());
+            writeInt(result, 16);
+            result.writeBytes(index.toByteArray());
+            result.writeBytes(data.toByteArray());
+            writeInt(result, regionTag);
+            writeInt(result, TYPE_BIN);
+            writeInt(result, -count * 16);
+            writeInt(result, 16);
+            return result.toByteArray();
+        }
+    }
+
+    private static MessageDigest digest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Compresses the written data in blocks of fixed uncompressed size. Blocks
+     * of xz payloads are blocks of a single stream, RPM does not read
+     * concatenated xz streams, blocks of zstd payloads are separate frames.
+     */
+    private static class BlockOutputStream extends OutputStream {
+        private final OutputStream os;
+        private final Compression compression;
+        private final int blockSize;
+        private OutputStream block;
+        private int written = 0;
+
+        BlockOutputStream(OutputStream os, Compression compression, int blockSize) throws IOException {
+            this.os = os;
+            this.compression = compression;
+            this.blockSize = blockSize;
+            this.block = compression == Compression.xz
+                    ? new XZOutputStream(CloseShieldOutputStream.wrap(os), new LZMA2Options())
+                    : new ZstdCompressorOutputStream(CloseShieldOutputStream.wrap(os));
+        }
+
+        private void endBlock() throws IOException {
+            if (compression == Compression.xz) {
+                ((XZOutputStream) block).endBlock();
+            } else {
+                block.close();
+                block = new ZstdCompressorOutputStream(CloseShieldOutputStream.wrap(os));
+            }
+            written = 0;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int off, int len) throws IOException {
+            while (len > 0) {
+                if (written == blockSize) {
+                    endBlock();
+                }
+                int count = Math.min(len, blockSize - written);
+                block.write(buffer, off, count);
+                written += count;
+                off += count;
+                len -= count;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            block.close();
+            os.close();
+        }
+    }
+
+    private OutputStream compress(OutputStream os) throws IOException {
+        if (blockSize > 0 && compression != Compression.gzip) {
+            return new BlockOutputStream(os, compression, blockSize);
+        }
+        return switch (compression) {
+            case gzip -> new GZIPOutputStream(os, 65536);
+            case xz -> new XZCompressorOutputStream(os);
+            case zstd -> new ZstdCompressorOutputStream(os);
+        };
+    }
+
+    private byte[] header(Map<String, Content> payload) {
+        var evr = (epoch != null ? epoch + ":" : "") + version + "-" + release;
+        var paths = new ArrayList<>(payload.keySet());
+        var contents = new ArrayList<>(payload.values());
+        int fileCount = paths.size();
+
+        var dirNames = new LinkedHashMap<String, Integer>();
+        var dirIndexes = new int[fileCount];
+        var baseNames = new ArrayList<String>(fileCount);
+        var sizes = new int[fileCount];
+        var modes = new int[fileCount];
+        var digests = new ArrayList<String>(fileCount);
+        var linkTos = new ArrayList<String>(fileCount);
+        var zeros = new int[fileCount];
+        var ones = new int[fileCount];
+        var inodes = new int[fileCount];
+        var mtimes = new int[fileCount];
+        var owners = new ArrayList<String>(fileCount);
+        var langs = new ArrayList<String>(fileCount);
+        long totalSize = 0;
+        var sha256 = digest("SHA-256");
+        for (int i = 0; i != fileCount; ++i) {
+            var path = paths.get(i);
+            var content = contents.get(i);
+            var slash = path.lastIndexOf('/');
+            dirIndexes[i] = dirNames.computeIfAbsent(path.substring(0, slash + 1), dir -> dirNames.size());
+            baseNames.add(path.substring(slash + 1));
+            var type = content.mode() & CpioConstants.S_IFMT;
+            sizes[i] = type == CpioConstants.C_ISDIR ? 4096 : content.data().length;
+            totalSize += sizes[i];
+            modes[i] = (int) content.mode();
+            digests.add(type == CpioConstants.C_ISREG ? HexFormat.of().formatHex(sha256.digest(content.data())) : "");
+            linkTos.add(content.linkTarget() != null ? content.linkTarget() : "");
+            ones[i] = 1;
+            inodes[i] = i + 1;
+            mtimes[i] = MTIME;
+            owners.add("root");
+            langs.add("");
+        }
+
+        // Tags must be added in ascending order, file tags are omitted for
+        // packages without files
+        var header = new Header();
+        header.addString(1000, name);
+        header.addString(1001, version);
+        header.addString(1002, release);
+        if (epoch != null) {
+            header.addInts(1003, epoch);
+        }
+        header.addI18nString(1004, "Synthetic package " + name);
+        header.addI18nString(1005, "Synthetic package " + name + " generated for tests.");
+        header.addInts(1006, MTIME);
+        header.addString(1007, "localhost");
+        header.addInts(1009, (int) totalSize);
+        header.addString(1014, "MIT");
+        header.addI18nString(1016, "Unspecified");
+        header.addString(1021, "linux");
+        header.addString(1022, arch);
+        if (fileCount != 0) {
+            header.addInts(1028, sizes);
+            header.addShorts(1030, modes);
+            header.addShorts(1033, zeros);
+            header.addInts(1034, mtimes);
+            header.addStrings(1035, digests);
+            header.addStrings(1036, linkTos);
+            header.addInts(1037, zeros);
+            header.addStrings(1039, owners);
+            header.addStrings(1040, owners);
+        }
+        if (!source) {
+            header.addString(1044, sourceRpm);
+        }
+        header.addStrings(1047, List.of(name));
+        header.addString(1064, "4.19.1");
+        if (fileCount != 0) {
+            header.addInts(1095, ones);
+            header.addInts(1096, inodes);
+            header.addStrings(1097, langs);
+        }
+        if (source) {
+            header.addInts(1106, 1);
+        }
+        header.addInts(1112, 8);
+        header.addStrings(1113, List.of(evr));
+        if (fileCount != 0) {
+            header.addInts(1116, dirIndexes);
+            header.addStrings(1117, baseNames);
+            header.addStrings(1118, new ArrayList<>(dirNames.keySet()));
+        }
+        header.addString(1124, "cpio");
+        header.addString(1125, compression.name());
+        header.addString(1126, switch (compression) {
+            case gzip -> "9";
+            case xz -> "6";
+            case zstd -> "3";
+        });
+        if (fileCount != 0) {
+            header.addInts(5011, 8);
+        }
+        return header.toBytes(RPMTAG_HEADERIMMUTABLE);
+    }
+
+    private byte[] lead() {
+        var os = new ByteArrayOutputStream();
+        writeInt(os, 0xEDABEEDB);
+        os.write(3);
+        os.write(0);
+        writeShort(os, source ? 1 : 0);
+        writeShort(os, 1);
+        var leadName = new byte[66];
+        var nvr = (name + "-" + version + "-" + release).getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(nvr, 0, leadName, 0, Math.min(nvr.length, leadName.length - 1));
+        os.writeBytes(leadName);
+        writeShort(os, 1);
+        writeShort(os, 5);
+        os.writeBytes(new byte[16]);
+        return os.toByteArray();
+    }
+
+    /**
+     * Write the RPM file.
+     * @param directory The directory to write the RPM file to.
+     * @return The path of the written RPM file.
+     * @throws IOException If writing fails.
+     */
+    public Path write(Path directory) throws IOException {
+        var payload = new TreeMap<>(files);
+        if (!artifacts.isEmpty()) {
+            payload.put("/usr/share/maven-metadata/" + name + ".xml",
+                    new Content(CpioConstants.C_ISREG | 0644, mavenMetadata(), null));
+        }
+
+        var result = directory.resolve(getFileName());
+        // The compressed payload is kept in a temporary file, large fixtures
+        // would not fit in memory
+        var payloadFile = Files.createTempFile(directory, getFileName(), ".payload");
+        try {
+            try (var cpio = new CpioArchiveOutputStream(compress(new BufferedOutputStream(Files.newOutputStream(payloadFile))),
+                    CpioConstants.FORMAT_NEW, CpioConstants.BLOCK_SIZE, StandardCharsets.UTF_8.name())) {
+                int inode = 0;
+                for (var file : payload.entrySet()) {
+                    var content = file.getValue();
+                    var entry = new CpioArchiveEntry(CpioConstants.FORMAT_NEW, "." + file.getKey());
+                    entry.setMode(content.mode());
+                    entry.setInode(++inode);
+                    entry.setNumberOfLinks((content.mode() & CpioConstants.S_IFMT) == CpioConstants.C_ISDIR ? 2 : 1);
+                    entry.setTime(MTIME);
+                    entry.setDeviceMin(1);
+                    entry.setSize(content.data().length);
+                    cpio.putArchiveEntry(entry);
+                    cpio.write(content.data());
+                    cpio.closeArchiveEntry();
+                }
+            }
+
+            var header = header(payload);
+            // The MD5 digest covers the header followed by the payload
+            var md5 = digest("MD5");
+            md5.update(header);
+            try (var is = Files.newInputStream(payloadFile)) {
+                var buffer = new byte[65536];
+                for (int read; (read = is.read(buffer)) != -1;) {
+                    md5.update(buffer, 0, read);
+                }
+            }
+
+            var signature = new Header();
+            signature.addString(RPMSIGTAG_SHA256, HexFormat.of().formatHex(digest("SHA-256").digest(header)));
+            signature.addInts(RPMSIGTAG_SIZE, (int) (header.length + Files.size(payloadFile)));
+            signature.add(RPMSIGTAG_MD5, TYPE_BIN, 16, md5.digest());
+            var signatureBytes = signature.toBytes(RPMTAG_HEADERSIGNATURES);
+
+            try (var os = new BufferedOutputStream(Files.newOutputStream(result))) {
+                os.write(lead());
+                os.write(signatureBytes);
+                os.write(new byte[(8 - signatureBytes.length % 8) % 8]);
+                os.write(header);
+                Files.copy(payloadFile, os);
+            }
+        } finally {
+            Files.deleteIfExists(payloadFile);
+        }
+
+        return result;
+    }
+
+    /**
+     * Generate a repository of RPM files. Every package consists of a source
+     * RPM and a binary RPM with JAR files in {@code /usr/share/java}, their
+     * POM files, Maven metadata, compatibility symlinks and data files.
+     * @param directory The directory to write the RPM files to.
+     * @param scale The parameters of the repository.
+     * @return The paths of the written RPM files.
+     * @throws IOException If writing fails.
+     */
+    public static List<Path> generateRepository(Path directory, Scale scale) throws IOException {
+        var random = new SplittableRandom(scale.seed());
+        var result = new ArrayList<Path>(2 * scale.packages());
+        for (int i = 0; i != scale.packages(); ++i) {
+            var name = "fixture%05d".formatted(i);
+            var source = new RpmFixture(name, "1." + i, "1").source().compression(scale.compression());
+            source.file("/" + name + ".spec", ("Name: " + name + "\n").getBytes(StandardCharsets.UTF_8));
+            result.add(source.write(directory));
+
+            var binary = new RpmFixture(name, "1." + i, "1").compression(scale.compression());
+            binary.directory("/usr/share/java/" + name);
+            for (int j = 0; j != scale.jarsPerPackage(); ++j) {
+                var artifactId = name + "-" + j;
+                var jarPath = "/usr/share/java/" + name + "/" + artifactId + ".jar";
+                var pomPath = "/usr/share/maven-poms/" + name + "/" + artifactId + ".pom";
+                var classes = scale.classesPerJar() > 0 ? 1 + random.nextInt(2 * scale.classesPerJar()) : 0;
+                binary.jar(jarPath, new Jar()
+                        .classes(classes)
+                        .bytecodeMajor(52 + random.nextInt(4))
+                        .moduleName(j % 2 == 0 ? "org.fixture." + name + ".m" + j : null)
+                        .automaticModuleName(j % 2 == 0 ? null : "org.fixture." + name + ".a" + j)
+                        .nvrAttributes(true));
+                binary.pom(pomPath, "org.fixture", artifactId);
+                binary.mavenArtifact("org.fixture", artifactId, jarPath);
+                binary.mavenArtifact("org.fixture", artifactId, pomPath);
+                binary.symlink("/usr/share/java/" + artifactId + ".jar", name + "/" + artifactId + ".jar");
+            }
+            for (int j = 0; j != scale.filesPerPackage(); ++j) {
+                var data = new byte[random.nextInt(256)];
+                random.nextBytes(data);
+                binary.file("/usr/share/" + name + "/data/f%06d".formatted(j), data);
+            }
+            result.add(binary.write(directory));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,108 @@
+package org.fedoraproject.javapackages.validator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.fedoraproject.javapackages.validator.util.Common;
+import org.fedoraproject.javapackages.validator.util.PayloadFacts;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.kojan.javadeptools.rpm.RpmPackage;
+
+public class RpmFixtureTest {
+    @TempDir
+    Path workDir;
+
+    @Test
+    void testBinaryRpm() throws Exception {
+        var path = new RpmFixture("foo", "1.2", "3")
+                .epoch(1)
+                .jar("/usr/share/java/foo/foo.jar", new RpmFixture.Jar().classes(3).bytecodeMajor(61).moduleName("org.foo"))
+                .symlink("/usr/share/java/foo.jar", "foo/foo.jar")
+                .pom("/usr/share/maven-poms/foo/foo.pom", "org.foo", "foo")
+                .mavenArtifact("org.foo", "foo", "/usr/share/java/foo/foo.jar")
+                .write(workDir);
+        assertEquals("foo-1.2-3.noarch.rpm", path.getFileName().toString());
+
+        var rpm = new RpmPackage(path);
+        assertEquals("foo", rpm.getInfo().getName());
+        assertEquals("1.2", rpm.getInfo().getVersion());
+        assertEquals("3", rpm.getInfo().getRelease());
+        assertEquals(Optional.of(1), rpm.getInfo().getEpoch());
+        assertEquals("foo-1.2-3.src.rpm", rpm.getInfo().getSourceRPM());
+        assertFalse(rpm.getInfo().isSourcePackage());
+
+        var names = new ArrayList<String>();
+        Common.forEachEntry(rpm, entry -> names.add(entry.getName()));
+        assertEquals(List.of(
+                "./usr/share/java/foo.jar",
+                "./usr/share/java/foo/foo.jar",
+                "./usr/share/maven-metadata/foo.xml",
+                "./usr/share/maven-poms/foo/foo.pom"), names);
+
+        var facts = PayloadFacts.extract(rpm);
+        assertEquals("foo/foo.jar", facts.getFiles().get(0).symlinkTarget());
+        var jar = facts.getJars().get(0);
+        assertTrue(jar.complete());
+        assertEquals(List.of(Map.entry("module-info.class", "org.foo")), jar.moduleNames());
+        assertEquals(61, jar.classVersions().getMaxMajor());
+        assertEquals(List.of("/usr/share/java/foo/foo.jar"), facts.getMetadata().get(0).artifactPaths());
+    }
+
+    @Test
+    void testSourceRpm() throws Exception {
+        var path = new RpmFixture("foo", "1", "1").source().file("/foo.spec", new byte[] {'\n'}).write(workDir);
+        assertEquals("foo-1-1.src.rpm", path.getFileName().toString());
+        assertTrue(new RpmPackage(path).getInfo().isSourcePackage());
+    }
+
+    @Test
+    void testCompressions() throws Exception {
+        for (var compression : RpmFixture.Compression.values()) {
+            var dir = Files.createDirectory(workDir.resolve(compression.name()));
+            var path = new RpmFixture("foo", "1", "1").compression(compression).file("/foo", new byte[] {1, 2, 3}).write(dir);
+            var names = new ArrayList<String>();
+            Common.forEachEntry(new RpmPackage(path), entry -> names.add(entry.getName()));
+            assertEquals(List.of("./foo"), names, compression.name());
+        }
+    }
+
+    @Test
+    void testDeterministic() throws Exception {
+        var scale = new RpmFixture.Scale(2, 2, 10, 10, RpmFixture.Compression.gzip, 42);
+        var first = RpmFixture.generateRepository(Files.createDirectory(workDir.resolve("first")), scale);
+        var second = RpmFixture.generateRepository(Files.createDirectory(workDir.resolve("second")), scale);
+        assertEquals(4, first.size());
+        for (int i = 0; i != first.size(); ++i) {
+            assertArrayEquals(Files.readAllBytes(first.get(i)), Files.readAllBytes(second.get(i)));
+        }
+    }
+
+    /**
+     * Scale test of the whole validation, the number of packages can be
+     * raised with system property {@code fixture.packages}.
+     */
+    @Test
+    void testDefaultValidators() throws Exception {
+        var rpms = Files.createDirectory(workDir.resolve("rpms"));
+        var tmtTestData = Files.createDirectory(workDir.resolve("data"));
+        var packages = Integer.getInteger("fixture.packages", 4);
+        RpmFixture.generateRepository(rpms, new RpmFixture.Scale(packages, 3, 20, 100, RpmFixture.Compression.gzip, 1));
+
+        int rc = MainTmt.create(tmtTestData, workDir).run(new String[] {"-f", rpms.toString(),
+                "org.fedoraproject.javapackages.validator.validators.DefaultValidatorFactory"});
+        assertTrue(rc != 2, "validation does not crash");
+        assertFalse(Files.exists(tmtTestData.resolve("crash.log")));
+        assertTrue(Files.isRegularFile(tmtTestData.resolve("results.yaml")));
+    }
+}
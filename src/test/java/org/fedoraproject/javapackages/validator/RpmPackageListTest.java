@@ -0,0 +1,54 @@
+package org.fedoraproject.javapackages.validator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.kojan.javadeptools.rpm.RpmPackage;
+
+public class RpmPackageListTest {
+    @TempDir
+    Path workDir;
+
+    @Test
+    void testSummaries() throws Exception {
+        var rpms = new RpmPackageList();
+        rpms.add(new RpmPackage(new RpmFixture("foo", "1", "1").source().write(workDir)));
+        rpms.add(new RpmPackage(new RpmFixture("foo", "1", "1").write(workDir)));
+        rpms.add(new RpmPackage(new RpmFixture("foo-javadoc", "1", "1").sourceRpm("foo-1-1.src.rpm").write(workDir)));
+        rpms.add(new RpmPackage(new RpmFixture("bar", "1", "1").write(workDir)));
+
+        assertEquals(4, rpms.size());
+        assertEquals("foo-1-1.src.rpm", rpms.getSummary(0).groupKey());
+        assertSame(rpms.getSummary(1).groupKey(), rpms.getSummary(2).groupKey(), "group keys are interned");
+        assertEquals("foo-javadoc", rpms.get(2).getInfo().getName());
+
+        rpms.retainSummaries(rpm -> rpm.groupKey().startsWith("foo-"));
+        assertEquals(3, rpms.size());
+        assertEquals(rpms.getSummary(2).path(), rpms.get(2).getPath());
+    }
+
+    @Test
+    void testAcquire() throws Exception {
+        var rpms = new RpmPackageList();
+        rpms.add(new RpmPackage(new RpmFixture("foo", "1", "1").write(workDir)));
+        assertFalse(rpms.isHeld(0));
+
+        var first = rpms.acquire(0);
+        assertSame(first, rpms.acquire(0), "holders share the package");
+        assertSame(first, rpms.get(0));
+        rpms.release(0);
+        assertTrue(rpms.isHeld(0));
+        rpms.release(0);
+        assertFalse(rpms.isHeld(0), "the package is dropped with its last holder");
+        assertNotSame(first, rpms.get(0));
+        assertFalse(rpms.isHeld(0), "packages which are not held are not retained");
+    }
+}
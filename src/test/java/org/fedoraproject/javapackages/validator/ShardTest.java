@@ -0,0 +1,40 @@
+package org.fedoraproject.javapackages.validator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Test;
+
+class ShardTest {
+    private static long countContaining(int count, RpmSummary rpm) {
+        long result = 0;
+        for (int index = 1; index <= count; ++index) {
+            if (new Shard(index, count).contains(rpm)) {
+                ++result;
+            }
+        }
+        return result;
+    }
+
+    @Test
+    void testGroupKey() {
+        var rpm1 = new RpmSummary(Paths.get("/rpms/foo-1-1.noarch.rpm"), "foo", "noarch", false, "foo-1-1.src.rpm", 0, 0);
+        var rpm2 = new RpmSummary(Paths.get("/rpms/foo-bar-1-1.noarch.rpm"), "foo-bar", "noarch", false, "foo-1-1.src.rpm", 0, 0);
+        for (int count = 1; count <= 5; ++count) {
+            assertEquals(1, countContaining(count, rpm1));
+            for (int index = 1; index <= count; ++index) {
+                var shard = new Shard(index, count);
+                assertEquals(shard.contains(rpm1), shard.contains(rpm2), "same source package is in the same shard");
+            }
+        }
+    }
+
+    @Test
+    void testNullGroupKey() {
+        var rpm = new RpmSummary(Paths.get("/rpms/foo-1-1.noarch.rpm"), "foo", "noarch", false, null, 0, 0);
+        for (int count = 1; count <= 5; ++count) {
+            assertEquals(1, countContaining(count, rpm), "RPM file without a group key is in exactly one shard");
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.fedoraproject.javapackages.validator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.fedoraproject.javapackages.validator.util.RpmHeader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SourceGroupsTest {
+    @TempDir
+    Path workDir;
+
+    private RpmPackageList rpms() throws Exception {
+        var rpms = new RpmPackageList();
+        rpms.add(RpmSummary.of(RpmHeader.read(new RpmFixture("b", "1", "1").write(workDir))));
+        rpms.add(RpmSummary.of(RpmHeader.read(new RpmFixture("a-core", "1", "1").sourceRpm("a-1-1.src.rpm").write(workDir))));
+        rpms.add(RpmSummary.of(RpmHeader.read(new RpmFixture("a-extra", "1", "1").sourceRpm("a-1-1.src.rpm").write(workDir))));
+        rpms.sortSummaries((lhs, rhs) -> lhs.groupKey().compareTo(rhs.groupKey()));
+        return rpms;
+    }
+
+    @Test
+    void testGroups() throws Exception {
+        var rpms = rpms();
+        var groups = new SourceGroups(rpms);
+        assertEquals(2, groups.size());
+        assertEquals("a-1-1.src.rpm", rpms.getSummary(0).groupKey());
+        assertEquals("b-1-1.src.rpm", rpms.getSummary(2).groupKey());
+    }
+
+    @Test
+    void testBarrier() throws Exception {
+        var rpms = rpms();
+        var groups = new SourceGroups(rpms);
+        var admission = new AdmissionController(Long.MAX_VALUE, Long.MAX_VALUE);
+        try (var first = admission.open(false, groups); var second = admission.open(false, groups)) {
+            var firstIterator = first.admit(rpms).iterator();
+            var secondIterator = second.admit(rpms).iterator();
+            firstIterator.next();
+            firstIterator.next();
+            // The second group is read only after all tests finished the first
+            var waiting = CompletableFuture.supplyAsync(firstIterator::next);
+            assertThrows(TimeoutException.class, () -> waiting.get(200, TimeUnit.MILLISECONDS));
+            secondIterator.next();
+            secondIterator.next();
+            assertFalse(waiting.isDone());
+            assertEquals(rpms.get(2).getPath(), secondIterator.next().getPath());
+            assertEquals(rpms.get(2).getPath(), waiting.get(10, TimeUnit.SECONDS).getPath());
+            assertFalse(firstIterator.hasNext());
+            assertFalse(secondIterator.hasNext());
+        }
+        try (var late = admission.open(false, groups)) {
+            // A test starting after the others finished does not wait
+            int count = 0;
+            for (var rpm : late.admit(rpms)) {
+                ++count;
+            }
+            assertEquals(3, count);
+        }
+    }
+
+    @Test
+    void testClose() throws Exception {
+        var rpms = rpms();
+        var groups = new SourceGroups(rpms);
+        var admission = new AdmissionController(Long.MAX_VALUE, Long.MAX_VALUE);
+        try (var first = admission.open(false, groups)) {
+            var firstIterator = first.admit(rpms).iterator();
+            try (var second = admission.open(false, groups)) {
+                second.admit(rpms).iterator().next();
+            }
+            // The closed test no longer holds the others at the barrier
+            for (int i = 0; i != 3; ++i) {
+                CompletableFuture.supplyAsync(firstIterator::next).get(10, TimeUnit.SECONDS);
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.fedoraproject.javapackages.validator.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.fedoraproject.javapackages.validator.util.BytecodeVersionJarValidator.Version;
+import org.junit.jupiter.api.Test;
+
+public class ClassVersionHistogramTest {
+    @Test
+    void testCounts() {
+        var histogram = new ClassVersionHistogram();
+        assertTrue(histogram.isEmpty());
+        // More distinct versions than the initial capacity
+        for (short major = 65; major >= 50; --major) {
+            histogram.add(major, (short) 0);
+        }
+        histogram.add((short) 55, (short) 0, 10);
+        histogram.add((short) 55, (short) 3);
+
+        assertFalse(histogram.isEmpty());
+        assertEquals(17, histogram.getVersions().size());
+        assertEquals(List.of(new Version((short) 50, (short) 0), new Version((short) 51, (short) 0)),
+                histogram.getVersions().subList(0, 2));
+        assertEquals(new Version((short) 55, (short) 3), histogram.getVersions().get(6));
+        assertEquals(11, histogram.getCount(new Version((short) 55, (short) 0)));
+        assertEquals(1, histogram.getCount(new Version((short) 55, (short) 3)));
+        assertEquals(0, histogram.getCount(new Version((short) 49, (short) 0)));
+        assertEquals(50, histogram.getMinMajor());
+        assertEquals(65, histogram.getMaxMajor());
+    }
+}
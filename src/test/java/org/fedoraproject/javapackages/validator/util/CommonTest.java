@@ -0,0 +1,83 @@
+package org.fedoraproject.javapackages.validator.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.fedoraproject.javapackages.validator.RpmFixture;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.kojan.javadeptools.rpm.RpmPackage;
+
+public class CommonTest {
+    @TempDir
+    Path workDir;
+
+    private RpmPackage fixture() throws Exception {
+        var fixture = new RpmFixture("foo", "1", "1").directory("/usr/share/foo");
+        for (int i = 0; i != 100; ++i) {
+            fixture.file("/usr/share/foo/f" + i, new byte[i]);
+            fixture.symlink("/usr/share/foo/l" + i, "f" + i);
+        }
+        return new RpmPackage(fixture.write(Files.createDirectories(workDir.resolve("rpms"))));
+    }
+
+    private static boolean isEmpty(Path directory) throws Exception {
+        try (var files = Files.list(directory)) {
+            return files.findAny().isEmpty();
+        }
+    }
+
+    @Test
+    void testForEachEntrySortedSpilled() throws Exception {
+        var rpm = fixture();
+        var expected = new ArrayList<String>();
+        Common.forEachEntry(rpm, entry -> expected.add(entry.getName() + ":" + entry.getSymlinkTarget()));
+        expected.sort(null);
+
+        var runs = Files.createDirectories(workDir.resolve("runs"));
+        var actual = new ArrayList<String>();
+        Common.forEachEntrySorted(rpm, entry -> {
+            actual.add(entry.getName() + ":" + entry.getSymlinkTarget());
+            try (var files = Files.list(runs)) {
+                assertEquals((expected.size() + 6) / 7, files.count(), "runs are spilled");
+            }
+        }, 7, runs);
+
+        assertTrue(expected.size() > 200);
+        assertEquals(expected, actual);
+        assertTrue(isEmpty(runs), "spilled runs are deleted");
+    }
+
+    @Test
+    void testForEachEntrySortedInMemory() throws Exception {
+        var rpm = fixture();
+        var runs = Files.createDirectories(workDir.resolve("runs"));
+        var actual = new ArrayList<String>();
+        Common.forEachEntrySorted(rpm, entry -> actual.add(entry.getName()), 1000, runs);
+        var expected = new ArrayList<>(actual);
+        expected.sort(null);
+        assertTrue(actual.size() > 200);
+        assertEquals(expected, actual);
+        assertTrue(isEmpty(runs), "nothing is spilled");
+    }
+
+    @Test
+    void testForEachEntrySortedCleanupOnFailure() throws Exception {
+        var rpm = fixture();
+        var runs = Files.createDirectories(workDir.resolve("runs"));
+        var seen = new ArrayList<String>();
+        assertThrows(IllegalStateException.class, () -> Common.forEachEntrySorted(rpm, entry -> {
+            seen.add(entry.getName());
+            throw new IllegalStateException("consumer failure");
+        }, 7, runs));
+        assertEquals(List.of(seen.get(0)), seen);
+        assertTrue(isEmpty(runs), "spilled runs are deleted after a failure");
+    }
+}
@@ -0,0 +1,77 @@
+package org.fedoraproject.javapackages.validator.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import org.apache.commons.compress.archivers.cpio.CpioArchiveInputStream;
+import org.fedoraproject.javapackages.validator.RpmFixture;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.kojan.javadeptools.rpm.RpmArchiveInputStream;
+
+public class PayloadDecoderTest {
+    @TempDir
+    Path workDir;
+
+    private static Map<String, String> read(CpioArchiveInputStream is) throws IOException {
+        try (is) {
+            var result = new LinkedHashMap<String, String>();
+            for (var entry = is.getNextEntry(); entry != null; entry = is.getNextEntry()) {
+                result.put(entry.getName(), new String(is.readAllBytes(), StandardCharsets.ISO_8859_1));
+            }
+            return result;
+        }
+    }
+
+    private Path fixture(RpmFixture.Compression compression, int blockSize) throws IOException {
+        var random = new SplittableRandom(1);
+        var fixture = new RpmFixture("foo", "1", "1").compression(compression).blockSize(blockSize)
+                .jar("/usr/share/java/foo.jar", new RpmFixture.Jar().classes(50).resourceBytes(20000));
+        for (int i = 0; i != 100; ++i) {
+            var content = new byte[random.nextInt(3000)];
+            random.nextBytes(content);
+            fixture.file("/usr/share/foo/f" + i, content);
+        }
+        return fixture.write(Files.createDirectories(workDir.resolve(compression + "-" + blockSize)));
+    }
+
+    @Test
+    void testMultiBlock() throws Exception {
+        for (var compression : new RpmFixture.Compression[] {RpmFixture.Compression.xz, RpmFixture.Compression.zstd}) {
+            var expected = read(new RpmArchiveInputStream(fixture(compression, 0)));
+            var path = fixture(compression, 4096);
+            assertEquals(expected, read(new RpmArchiveInputStream(path)), compression.name());
+            assertEquals(expected, read(PayloadDecoder.open(path)), compression.name());
+        }
+    }
+
+    @Test
+    void testSingleBlock() throws Exception {
+        for (var compression : RpmFixture.Compression.values()) {
+            var path = fixture(compression, 0);
+            assertEquals(read(new RpmArchiveInputStream(path)), read(PayloadDecoder.open(path)), compression.name());
+        }
+    }
+
+    @Test
+    void testPartialRead() throws Exception {
+        try (var is = PayloadDecoder.open(fixture(RpmFixture.Compression.zstd, 1024))) {
+            assertEquals("./usr/share/foo/f0", is.getNextEntry().getName());
+        }
+    }
+
+    @Test
+    void testInvalid() throws Exception {
+        var empty = Files.createFile(workDir.resolve("empty.rpm"));
+        assertThrows(IOException.class, () -> PayloadDecoder.open(empty));
+    }
+}
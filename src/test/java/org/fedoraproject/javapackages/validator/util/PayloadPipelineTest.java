@@ -0,0 +1,133 @@
+package org.fedoraproject.javapackages.validator.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.fedoraproject.javapackages.validator.RpmFixture;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class PayloadPipelineTest {
+    private static final int FILES = 20;
+    private static final int FILE_SIZE = 1000;
+
+    @TempDir
+    Path workDir;
+
+    private Path fixture() throws Exception {
+        var fixture = new RpmFixture("foo", "1", "1");
+        for (int i = 0; i != FILES; ++i) {
+            var content = new byte[FILE_SIZE];
+            content[0] = (byte) i;
+            fixture.file("/usr/share/foo/f" + i, content);
+        }
+        return fixture.write(workDir);
+    }
+
+    private static List<String> entryNames(Path path) throws Exception {
+        var result = new ArrayList<String>();
+        try (var is = PayloadDecoder.open(path)) {
+            for (var entry = is.getNextEntry(); entry != null; entry = is.getNextEntry()) {
+                result.add(entry.getName());
+            }
+        }
+        return result;
+    }
+
+    @Test
+    void testOrder() throws Exception {
+        var path = fixture();
+        var names = new ArrayList<String>();
+        try (var pipeline = new PayloadPipeline(path, entry -> true, entry -> entry.isRegularFile())) {
+            for (PayloadPipeline.Item item; (item = pipeline.next()) != null;) {
+                names.add(item.entry().getName());
+                if (item.content() != null) {
+                    assertEquals(FILE_SIZE, item.content().length);
+                }
+            }
+            assertNull(pipeline.next(), "the end is reported again");
+        }
+        assertEquals(entryNames(path), names);
+    }
+
+    @Test
+    void testContent() throws Exception {
+        var path = fixture();
+        try (var pipeline = new PayloadPipeline(path, entry -> entry.getName().endsWith("/f3"), entry -> true)) {
+            var item = pipeline.next();
+            assertEquals("./usr/share/foo/f3", item.entry().getName());
+            var expected = new byte[FILE_SIZE];
+            expected[0] = 3;
+            assertArrayEquals(expected, item.content());
+            assertNull(pipeline.next());
+        }
+    }
+
+    @Test
+    void testBudget() throws Exception {
+        var path = fixture();
+        // Fits two entries with their content
+        long budget = 2 * (FILE_SIZE + 512);
+        try (var pipeline = new PayloadPipeline(path, entry -> entry.isRegularFile(), entry -> true, budget)) {
+            int count = 0;
+            for (PayloadPipeline.Item item; (item = pipeline.next()) != null;) {
+                assertTrue(PayloadPipeline.cost(item.entry(), true) <= budget);
+                // Gives the reader time to read ahead as far as it may
+                Thread.sleep(10);
+                ++count;
+            }
+            assertEquals(FILES, count);
+            assertTrue(pipeline.getPeakInFlight() <= budget, "peak " + pipeline.getPeakInFlight());
+        }
+    }
+
+    @Test
+    void testOversizedEntry() throws Exception {
+        var path = fixture();
+        try (var pipeline = new PayloadPipeline(path, entry -> entry.isRegularFile(), entry -> true, 1)) {
+            int count = 0;
+            while (pipeline.next() != null) {
+                ++count;
+            }
+            assertEquals(FILES, count, "entries larger than the budget are passed alone");
+            assertEquals(FILE_SIZE + 512, pipeline.getPeakInFlight());
+        }
+    }
+
+    @Test
+    void testEarlyClose() throws Exception {
+        var path = fixture();
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            // The reader waits for the budget when it is closed
+            var pipeline = new PayloadPipeline(path, entry -> entry.isRegularFile(), entry -> true, 1);
+            assertEquals("./usr/share/foo/f0", pipeline.next().entry().getName());
+            pipeline.close();
+        });
+    }
+
+    @Test
+    void testReaderException() throws Exception {
+        var path = fixture();
+        try (var pipeline = new PayloadPipeline(path, entry -> {
+            // Entries are stored sorted by their paths
+            if (entry.getName().endsWith("/f10")) {
+                throw new IllegalStateException("include failed");
+            }
+            return entry.isRegularFile();
+        }, entry -> false)) {
+            assertEquals("./usr/share/foo/f0", pipeline.next().entry().getName());
+            assertEquals("./usr/share/foo/f1", pipeline.next().entry().getName());
+            var ex = assertThrows(IllegalStateException.class, pipeline::next);
+            assertEquals("include failed", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.fedoraproject.javapackages.validator.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Optional;
+
+import org.fedoraproject.javapackages.validator.RpmFixture;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.kojan.javadeptools.rpm.RpmPackage;
+
+public class RpmHeaderTest {
+    @TempDir
+    Path workDir;
+
+    @Test
+    void testBinaryRpm() throws Exception {
+        var path = new RpmFixture("foo-javadoc", "1.2", "3").epoch(1).sourceRpm("foo-1.2-3.src.rpm")
+                .file("/usr/share/foo", new byte[] {1}).write(workDir);
+        var header = RpmHeader.read(path);
+        assertEquals("foo-javadoc", header.getName());
+        assertEquals("1.2", header.getVersion());
+        assertEquals("3", header.getRelease());
+        assertEquals(Optional.of(1), header.getEpoch());
+        assertEquals("noarch", header.getArch());
+        assertEquals("foo-1.2-3.src.rpm", header.getSourceRPM());
+        assertEquals("foo", header.getSourceName());
+        assertFalse(header.isSourcePackage());
+    }
+
+    @Test
+    void testSourceRpm() throws Exception {
+        var path = new RpmFixture("foo", "1", "1").source().file("/foo.spec", new byte[] {'\n'}).write(workDir);
+        var header = RpmHeader.read(path);
+        assertTrue(header.isSourcePackage());
+        assertNull(header.getSourceRPM());
+        assertEquals("foo", header.getSourceName());
+        assertEquals(Optional.empty(), header.getEpoch());
+    }
+
+    @Test
+    void testMatchesRpmLibrary() throws Exception {
+        var path = Paths.get("src/test/resources/arg_file_iterator/dangling-symlink-1-1.noarch.rpm");
+        var header = RpmHeader.read(path);
+        var info = new RpmPackage(path).getInfo();
+        assertEquals(info.getName(), header.getName());
+        assertEquals(info.getVersion(), header.getVersion());
+        assertEquals(info.getRelease(), header.getRelease());
+        assertEquals(info.getArch(), header.getArch());
+        assertEquals(info.getSourceRPM(), header.getSourceRPM());
+        assertEquals(info.isSourcePackage(), header.isSourcePackage());
+        assertEquals(info.getEpoch(), header.getEpoch());
+    }
+
+    @Test
+    void testInvalid() throws Exception {
+        var empty = Files.createFile(workDir.resolve("empty.rpm"));
+        var ex = assertThrows(IOException.class, () -> RpmHeader.read(empty));
+        assertTrue(ex.getMessage().startsWith("Unable to open RPM file"));
+
+        var valid = Files.readAllBytes(new RpmFixture("foo", "1", "1").write(workDir));
+        var truncated = Files.write(workDir.resolve("truncated.rpm"), Arrays.copyOf(valid, 200));
+        assertThrows(IOException.class, () -> RpmHeader.read(truncated));
+    }
+
+    @Test
+    void testIncomplete() throws Exception {
+        var path = new RpmFixture("foo", "1", "1").file("/usr/share/foo/data", new byte[1000]).write(workDir);
+        assertTrue(RpmHeader.read(path).isComplete());
+
+        var valid = Files.readAllBytes(path);
+        var partial = Files.write(workDir.resolve("partial.rpm"), Arrays.copyOf(valid, valid.length - 1));
+        assertFalse(RpmHeader.read(partial).isComplete());
+    }
+}
@@ -0,0 +1,88 @@
+package org.fedoraproject.javapackages.validator.validators;
+
+import static org.fedoraproject.javapackages.validator.TestCommon.assertPass;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.fedoraproject.javapackages.validator.RpmFixture;
+import org.fedoraproject.javapackages.validator.TestCommon;
+import org.fedoraproject.javapackages.validator.spi.LogEntry;
+import org.fedoraproject.javapackages.validator.spi.LogEvent;
+import org.fedoraproject.javapackages.validator.spi.Result;
+import org.fedoraproject.javapackages.validator.spi.TestResult;
+import org.fedoraproject.javapackages.validator.util.BytecodeVersionJarValidator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.kojan.javadeptools.rpm.RpmPackage;
+
+public class BytecodeVersionValidatorTest {
+    @TempDir
+    Path workDir;
+
+    private Path rpm() throws Exception {
+        return new RpmFixture("foo", "1", "1")
+                .jar("/usr/share/java/foo.jar", new RpmFixture.Jar().classes(3).bytecodeMajor(55))
+                .write(workDir);
+    }
+
+    private static List<LogEntry> entries(Result result, LogEvent kind) {
+        var entries = new ArrayList<LogEntry>();
+        for (var entry : result) {
+            if (kind.equals(entry.kind())) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    @Test
+    public void testHistogramByDefault() throws Exception {
+        var result = new BytecodeVersionValidator().validate(TestCommon.fromPaths(rpm()), null);
+        assertEquals(TestResult.info, result.getResult());
+        var infos = entries(result, LogEvent.info);
+        // One entry per version instead of one per class
+        assertEquals(1, infos.size());
+        assertEquals("55.0", infos.get(0).objects()[2].getObject().toString());
+        assertEquals(3, infos.get(0).objects()[3].getObject());
+    }
+
+    @Test
+    public void testWithinLimits() throws Exception {
+        var result = new BytecodeVersionValidator().validate(TestCommon.fromPaths(rpm()), List.of("52:61"));
+        assertPass(result);
+    }
+
+    @Test
+    public void testOutsideLimits() throws Exception {
+        var result = new BytecodeVersionValidator().validate(TestCommon.fromPaths(rpm()), List.of("61"));
+        assertEquals(TestResult.fail, result.getResult());
+        // Each class violating the limits is reported
+        assertEquals(3, entries(result, LogEvent.fail).size());
+    }
+
+    @Test
+    public void testClassDetailOnlySubclass() throws Exception {
+        var classes = new ArrayList<Path>();
+        var validator = new BytecodeVersionJarValidator() {
+            @Override
+            public String getTestName() {
+                return "/class-detail";
+            }
+
+            @Override
+            public void validate(RpmPackage rpm, Path jarPath, Map<Path, Version> classVersions) {
+                classes.addAll(classVersions.keySet());
+                pass("checked");
+            }
+        };
+        validator.validate(TestCommon.fromPaths(rpm()), null);
+        assertEquals(3, classes.size());
+        assertTrue(classes.stream().allMatch(path -> path.toString().endsWith(".class")));
+    }
+}
@@ -2,23 +2,33 @@ package org.fedoraproject.javapackages.validator.validators;
 
 import static org.fedoraproject.javapackages.validator.TestCommon.assertFailOne;
 import static org.fedoraproject.javapackages.validator.TestCommon.assertPass;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
+import org.fedoraproject.javapackages.validator.RpmFixture;
 import org.fedoraproject.javapackages.validator.TestCommon;
+import org.fedoraproject.javapackages.validator.spi.TestResult;
 import org.fedoraproject.javapackages.validator.util.DuplicateFileValidator.DefaultDuplicateFileValidator;
+import org.fedoraproject.javapackages.validator.util.DuplicateFileValidator.ProviderPackage;
 import org.junit.jupiter.api.Test;
-
-import io.kojan.javadeptools.rpm.RpmInfo;
+import org.junit.jupiter.api.io.TempDir;
 
 public class DuplicateFileValidatorTest {
     private static final Path DUPLICATE_FILE1_RPM = TestCommon.RPM_PATH_PREFIX.resolve(Paths.get("noarch/duplicate-file1-1-1.noarch.rpm"));
     private static final Path DUPLICATE_FILE2_RPM = TestCommon.RPM_PATH_PREFIX.resolve(Paths.get("noarch/duplicate-file2-1-1.noarch.rpm"));
     private static final Path DUPLICATE_FILE3_RPM = TestCommon.RPM_PATH_PREFIX.resolve(Paths.get("noarch/duplicate-file3-1-1.noarch.rpm"));
 
+    @TempDir
+    Path workDir;
+
     @Test
     void testIllegalDuplicateFile() throws Exception {
         var validator = new DefaultDuplicateFileValidator() {
@@ -27,7 +37,7 @@ public class DuplicateFileValidatorTest {
                 return null;
             }
             @Override
-            public boolean allowedDuplicateFile(Path path, Collection<? extends RpmInfo> providerRpms) throws IOException {
+            public boolean allowedDuplicateFile(Path path, Collection<ProviderPackage> providerRpms) throws IOException {
                 return false;
             }
         };
@@ -43,7 +53,7 @@ public class DuplicateFileValidatorTest {
                 return null;
             }
             @Override
-            public boolean allowedDuplicateFile(Path path, Collection<? extends RpmInfo> providerRpms) throws IOException {
+            public boolean allowedDuplicateFile(Path path, Collection<ProviderPackage> providerRpms) throws IOException {
                 return true;
             }
         };
@@ -59,11 +69,111 @@ public class DuplicateFileValidatorTest {
                 return null;
             }
             @Override
-            public boolean allowedDuplicateFile(Path path, Collection<? extends RpmInfo> providerRpms) throws IOException {
+            public boolean allowedDuplicateFile(Path path, Collection<ProviderPackage> providerRpms) throws IOException {
                 return false;
             }
         };
         validator.validate(TestCommon.fromPaths(DUPLICATE_FILE1_RPM, DUPLICATE_FILE3_RPM));
         assertFailOne(validator.build());
     }
+
+    @Test
+    void testMergePartials() throws Exception {
+        var partials = new ArrayList<List<String>>();
+        for (var path : List.of(DUPLICATE_FILE1_RPM, DUPLICATE_FILE2_RPM)) {
+            var shard = new DefaultDuplicateFileValidator() {
+                @Override
+                public String getTestName() {
+                    return null;
+                }
+                @Override
+                public boolean allowedDuplicateFile(Path path, Collection<ProviderPackage> providerRpms) throws IOException {
+                    return false;
+                }
+            };
+            shard.setPartial(true);
+            shard.validate(TestCommon.fromPaths(path));
+            partials.add(shard.exportPartial());
+        }
+
+        var providerNames = new ArrayList<String>();
+        var validator = new DefaultDuplicateFileValidator() {
+            @Override
+            public String getTestName() {
+                return null;
+            }
+            @Override
+            public boolean allowedDuplicateFile(Path path, Collection<ProviderPackage> providerRpms) throws IOException {
+                for (var rpm : providerRpms) {
+                    providerNames.add(rpm.name() + "." + rpm.arch());
+                }
+                return false;
+            }
+        };
+        assertFailOne(validator.mergePartials(partials));
+        assertEquals(List.of("duplicate-file1.noarch", "duplicate-file2.noarch"), providerNames);
+    }
+
+    @Test
+    void testMergePartialsSharedPrefixes() throws Exception {
+        var partials = new ArrayList<List<String>>();
+        for (var name : List.of("first", "second")) {
+            var rpmPath = new RpmFixture(name, "1", "1")
+                    .file("/usr/share/common/a", new byte[] {1})
+                    .file("/usr/share/common/b", new byte[] {2})
+                    .file("/usr/share/" + name + "/c", new byte[] {3})
+                    .write(workDir);
+            var shard = new DefaultDuplicateFileValidator() {
+                @Override
+                public String getTestName() {
+                    return null;
+                }
+                @Override
+                public boolean allowedDuplicateFile(Path path, Collection<ProviderPackage> providerRpms) throws IOException {
+                    return false;
+                }
+            };
+            shard.setPartial(true);
+            shard.validate(TestCommon.fromPaths(rpmPath));
+            var partial = shard.exportPartial();
+            assertTrue(partial.contains("file\t18\tb".translateEscapes()), "the shared directory is not repeated");
+            partials.add(partial);
+        }
+
+        var duplicates = new ArrayList<Path>();
+        var validator = new DefaultDuplicateFileValidator() {
+            @Override
+            public String getTestName() {
+                return null;
+            }
+            @Override
+            public boolean allowedDuplicateFile(Path path, Collection<ProviderPackage> providerRpms) throws IOException {
+                duplicates.add(path);
+                return false;
+            }
+        };
+        validator.mergePartials(partials);
+        assertEquals(List.of(Paths.get("/usr/share/common/a"), Paths.get("/usr/share/common/b")), duplicates);
+    }
+
+    @Test
+    void testRepeatedEntryName() throws Exception {
+        // Both payload entries name the same file path
+        var rpmPath = new RpmFixture("repeated", "1", "1")
+                .file("/usr/share/repeated/file", new byte[] {1})
+                .file("/usr/share/repeated//file", new byte[] {2})
+                .write(workDir);
+        var validator = new DefaultDuplicateFileValidator() {
+            @Override
+            public String getTestName() {
+                return null;
+            }
+            @Override
+            public boolean allowedDuplicateFile(Path path, Collection<ProviderPackage> providerRpms) throws IOException {
+                return false;
+            }
+        };
+        validator.validate(TestCommon.fromPaths(rpmPath));
+        assertNotEquals(TestResult.fail, validator.build().getResult(), "a package does not duplicate its own file");
+    }
 }